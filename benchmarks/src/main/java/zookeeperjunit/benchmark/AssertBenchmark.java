@@ -0,0 +1,92 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+import zookeeperjunit.ZooKeeperAssert;
+
+/**
+ * Measures the throughput of {@link ZooKeeperAssert#assertExists(String)}. <br>
+ * The <i>connect</i> mode opens and closes a new connection per assertion, which is how the assertions used to work, used as baseline.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssertBenchmark implements ZooKeeperAssert {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+
+	@Param({ "session", "connect" })
+	public String mode;
+
+	private ZKInstance instance;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		instance = ZKFactory.apply().withInMemoryStorage().create();
+		instance.start().result(duration);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public void assertExists() {
+		if ("connect".equals(mode)) {
+			try (CloseableZooKeeper zookeeper = connection()) {
+				assertSuccess(true, zookeeper.exists("/zookeeper"));
+			}
+			return;
+		}
+		assertExists("/zookeeper");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZooKeeperAssert#instance()
+	 */
+	@Override
+	public ZKInstance instance() {
+		return instance;
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKCheckpoint;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+
+/**
+ * Measures the time to restore a checkpoint of a large tree. <br>
+ * Restores are made back-to-back, i.e. each restore also has to wait for the spare copy of the previous one to be prepared. <br>
+ * This makes it the worst case, in a test suite the spare copy is prepared while the test is running.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckpointBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+
+	/** The number of children per parent node in the seeded tree. */
+	private static final int fanOut = 1000;
+
+	@Param({ "10000", "100000" })
+	public int nodeCount;
+
+	private ZKInstance instance;
+	private ZKCheckpoint checkpoint;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		instance = ZKFactory.apply().withInMemoryStorage().create();
+		instance.start().result(duration);
+		try (CloseableZooKeeper zookeeper = instance.connect().get()) {
+			seed(zookeeper);
+		}
+		checkpoint = instance.checkpoint().get();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public Try<Unit> restore() {
+		return instance.restore(checkpoint);
+	}
+
+	/**
+	 * Seeds the tree using pipelined creates to keep the setup time down.
+	 */
+	private void seed(CloseableZooKeeper zookeeper) throws Throwable {
+		Stream<Entry<String, byte[]>> nodes = IntStream.range(0, nodeCount).mapToObj(i -> new SimpleEntry<>("/seed/parent-" + (i / fanOut) + "/child-" + i, new byte[64]));
+		zookeeper.createAll(nodes, 1000).get();
+	}
+}
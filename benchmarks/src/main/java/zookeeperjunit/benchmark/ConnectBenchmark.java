@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+
+/**
+ * Measures the latency of establishing (and closing) connections towards an instance. <br>
+ * The bulk connect establishes {@link #sessions} connections concurrently, kept below the default max of 50 client connections.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+
+	@Param({ "40" })
+	public int sessions;
+
+	private ZKInstance instance;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		instance = ZKFactory.apply().withInMemoryStorage().create();
+		instance.start().result(duration);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public long connect() throws Throwable {
+		try (CloseableZooKeeper zookeeper = instance.connect().get()) {
+			return zookeeper.getSessionId();
+		}
+	}
+
+	@Benchmark
+	public int connectBulk() throws Throwable {
+		List<CloseableZooKeeper> connections = instance.connect(sessions).get();
+		connections.forEach(CloseableZooKeeper::close);
+		return connections.size();
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+import zookeeperjunit.ZKProxy;
+
+/**
+ * Measures the time to seed a tree of {@link #nodeCount} nodes spread over parents of 1000 children each. <br>
+ * The <i>sequential</i> implementation is the classic exists-then-create with one synchronous request per operation, used as baseline. <br>
+ * The client is connected via a {@link ZKProxy} adding {@link #latency} milliseconds in each direction, showing the effect of round trips on a real
+ * network.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CreateAllBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+	private static final String root = "/create-benchmark";
+
+	@Param({ "createAll", "sequential" })
+	public String implementation;
+
+	@Param({ "10000", "100000" })
+	public int nodeCount;
+
+	@Param({ "0" })
+	public int latency;
+
+	private ZKInstance instance;
+	private ZKProxy proxy;
+	private CloseableZooKeeper zookeeper;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		instance = ZKFactory.apply().withInMemoryStorage().create();
+		instance.start().result(duration);
+		proxy = ZKProxy.apply(instance).withLatency(Duration.ofMillis(latency));
+		proxy.start().get();
+		zookeeper = proxy.connect().get();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		zookeeper.close();
+		proxy.close();
+		instance.destroy().result(duration);
+	}
+
+	@TearDown(Level.Invocation)
+	public void delete() throws Throwable {
+		zookeeper.deleteRecursively(root).get();
+	}
+
+	@Benchmark
+	public Try<Unit> create() throws Exception {
+		if ("sequential".equals(implementation)) {
+			for (int i = 0; i < nodeCount; i++) {
+				createSequentially(zookeeper, path(i), new byte[64]);
+			}
+			return null;
+		}
+		Stream<Entry<String, byte[]>> nodes = IntStream.range(0, nodeCount).mapToObj(i -> new SimpleEntry<>(path(i), new byte[64]));
+		return zookeeper.createAll(nodes, 1000);
+	}
+
+	private static String path(int index) {
+		return root + "/parent-" + (index / 1000) + "/child-" + index;
+	}
+
+	private static void createSequentially(ZooKeeper zookeeper, String path, byte[] data) throws KeeperException, InterruptedException {
+		if (zookeeper.exists(path, false) != null) {
+			return;
+		}
+		try {
+			zookeeper.create(path, data, OPEN_ACL_UNSAFE, PERSISTENT);
+		} catch (KeeperException.NoNodeException ex) {
+			createSequentially(zookeeper, path.substring(0, path.lastIndexOf('/')), new byte[0]);
+			zookeeper.create(path, data, OPEN_ACL_UNSAFE, PERSISTENT);
+		}
+	}
+}
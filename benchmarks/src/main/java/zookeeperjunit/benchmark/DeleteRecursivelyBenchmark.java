@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+
+/**
+ * Measures the time to recursively delete a tree of {@link #nodeCount} nodes. <br>
+ * The <i>wide</i> tree is a single parent with all nodes as children, the <i>deep</i> tree is a binary tree. <br>
+ * The <i>sequential</i> implementation is the classic depth first recursion with one synchronous request per operation, used as baseline.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DeleteRecursivelyBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+	private static final String root = "/delete-benchmark";
+
+	@Param({ "wide", "deep" })
+	public String shape;
+
+	@Param({ "pipelined", "sequential" })
+	public String implementation;
+
+	@Param({ "1000", "16383" })
+	public int nodeCount;
+
+	private ZKInstance instance;
+	private CloseableZooKeeper zookeeper;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		instance = ZKFactory.apply().withInMemoryStorage().create();
+		instance.start().result(duration);
+		zookeeper = instance.connect().get();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		zookeeper.close();
+		instance.destroy().result(duration);
+	}
+
+	@Setup(Level.Invocation)
+	public void seed() throws Throwable {
+		Stream<Entry<String, byte[]>> nodes = IntStream.range(0, nodeCount).mapToObj(i -> new SimpleEntry<>(path(i), new byte[0]));
+		zookeeper.createAll(nodes, 1000).get();
+	}
+
+	@Benchmark
+	public Try<Unit> deleteRecursively() throws Exception {
+		if ("sequential".equals(implementation)) {
+			deleteSequentially(zookeeper, root);
+			return null;
+		}
+		return zookeeper.deleteRecursively(root);
+	}
+
+	/**
+	 * The path of the node with the provided index. <br>
+	 * Index 0 is the root of the tree.
+	 */
+	private String path(int index) {
+		if (index == 0) {
+			return root;
+		}
+		if ("wide".equals(shape)) {
+			return root + "/node-" + index;
+		}
+		// binary tree, the parent of node n is (n-1)/2
+		return path((index - 1) / 2) + "/node-" + index;
+	}
+
+	private static void deleteSequentially(ZooKeeper zookeeper, String path) throws KeeperException, InterruptedException {
+		for (String child : zookeeper.getChildren(path, false)) {
+			deleteSequentially(zookeeper, path + "/" + child);
+		}
+		zookeeper.delete(path, -1);
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+import zookeeperjunit.ZKTree;
+
+/**
+ * Measures the time to export a tree of {@link #nodeCount} nodes spread over parents of 1000 children each. <br>
+ * The <i>previous</i> implementation exports the tree given a previous export, i.e. no data is fetched as nothing has changed. <br>
+ * The <i>sequential</i> implementation is a classic recursive traversal with synchronous requests, used as baseline.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+	private static final String root = "/export-benchmark";
+
+	@Param({ "export", "previous", "sequential" })
+	public String implementation;
+
+	@Param({ "50000" })
+	public int nodeCount;
+
+	private ZKInstance instance;
+	private CloseableZooKeeper zookeeper;
+	private ZKTree previous;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		instance = ZKFactory.apply().withInMemoryStorage().create();
+		instance.start().result(duration);
+		zookeeper = instance.connect().get();
+		zookeeper.createAll(IntStream.range(0, nodeCount).mapToObj(i -> new SimpleEntry<>(root + "/parent-" + (i / 1000) + "/child-" + i, new byte[64])), 1000)
+				.get();
+		previous = zookeeper.export(root).get();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		zookeeper.close();
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public int export() throws Throwable {
+		if ("sequential".equals(implementation)) {
+			return exportSequentially(zookeeper, root);
+		}
+		ZKTree tree = "previous".equals(implementation) ? zookeeper.export(root, previous).get() : zookeeper.export(root).get();
+		return tree.size();
+	}
+
+	private static int exportSequentially(ZooKeeper zookeeper, String path) throws KeeperException, InterruptedException {
+		zookeeper.getData(path, false, null);
+		int count = 1;
+		for (String child : zookeeper.getChildren(path, false)) {
+			count += exportSequentially(zookeeper, path + "/" + child);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+import zookeeperjunit.ZKProxy;
+
+/**
+ * Measures the time to write and read a value of {@link #size} megabytes. <br>
+ * The <i>chunked</i> implementation uses putLarge/getLarge with pipelined chunk requests. <br>
+ * The <i>sequential</i> implementation is a hand-rolled splitter writing/reading one 512kB chunk node at a time with synchronous requests, used as baseline. <br>
+ * The client is connected via a {@link ZKProxy} adding {@link #latency} milliseconds in each direction, showing the effect of round trips on a real
+ * network. <br>
+ * The instance uses disc storage as the transactions of in-memory storage are kept on the heap until the next snapshot.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LargeValueBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+	private static final String root = "/large-value-benchmark";
+	private static final int chunkSize = 512 * 1024;
+
+	@Param({ "chunked", "sequential" })
+	public String implementation;
+
+	@Param({ "1", "10", "100" })
+	public int size;
+
+	@Param({ "0" })
+	public int latency;
+
+	private ZKInstance instance;
+	private ZKProxy proxy;
+	private CloseableZooKeeper zookeeper;
+	private byte[] data;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		instance = ZKFactory.apply().create();
+		instance.start().result(duration);
+		proxy = ZKProxy.apply(instance).withLatency(Duration.ofMillis(latency));
+		proxy.start().get();
+		zookeeper = proxy.connect().get();
+		data = new byte[size * 1024 * 1024];
+		ThreadLocalRandom.current().nextBytes(data);
+		// the value to read, also replaced by each write
+		zookeeper.putLarge(root + "/chunked", new ByteArrayInputStream(data)).get();
+		zookeeper.createRecursive(root + "/sequential", new byte[0]).get();
+		for (int i = 0; i * chunkSize < data.length; i++) {
+			zookeeper.create(root + "/sequential/" + i, chunk(i), OPEN_ACL_UNSAFE, PERSISTENT);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		zookeeper.close();
+		proxy.close();
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public Object write() throws Throwable {
+		if ("sequential".equals(implementation)) {
+			for (int i = 0; i * chunkSize < data.length; i++) {
+				zookeeper.setData(root + "/sequential/" + i, chunk(i), -1);
+			}
+			return null;
+		}
+		return zookeeper.putLarge(root + "/chunked", new ByteArrayInputStream(data)).get();
+	}
+
+	@Benchmark
+	public long read() throws Throwable {
+		if ("sequential".equals(implementation)) {
+			long bytes = 0;
+			for (int i = 0; i * chunkSize < data.length; i++) {
+				bytes += zookeeper.getData(root + "/sequential/" + i, false, null).length;
+			}
+			return bytes;
+		}
+		try (InputStream stream = zookeeper.getLarge(root + "/chunked").get()) {
+			return consume(stream);
+		}
+	}
+
+	private byte[] chunk(int index) {
+		return Arrays.copyOfRange(data, index * chunkSize, Math.min(data.length, (index + 1) * chunkSize));
+	}
+
+	private static long consume(InputStream stream) throws IOException {
+		byte[] buffer = new byte[64 * 1024];
+		long bytes = 0;
+		for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+			bytes += read;
+		}
+		return bytes;
+	}
+}
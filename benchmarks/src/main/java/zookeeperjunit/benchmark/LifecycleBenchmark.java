@@ -0,0 +1,106 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javascalautils.Unit;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+
+/**
+ * Measures the latency of each of the life-cycle operations of an instance. <br>
+ * Each operation is measured in isolation, e.g. <i>stop</i> is measured on an instance that was started before the measurement.
+ *
+ * @author Peter Nerg
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class LifecycleBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+
+	/**
+	 * An instance that is created, but not started, before each invocation.
+	 */
+	@State(Scope.Benchmark)
+	public static class Created {
+		@Param({ "disc", "memory" })
+		public String storage;
+
+		ZKInstance instance;
+
+		@Setup(Level.Invocation)
+		public void setup() throws Throwable {
+			ZKFactory factory = ZKFactory.apply();
+			if ("memory".equals(storage)) {
+				factory.withInMemoryStorage();
+			}
+			instance = factory.create();
+		}
+
+		@TearDown(Level.Invocation)
+		public void tearDown() throws Throwable {
+			instance.destroy().result(duration);
+		}
+	}
+
+	/**
+	 * An instance that is created and started before each invocation.
+	 */
+	@State(Scope.Benchmark)
+	public static class Started extends Created {
+		@Override
+		@Setup(Level.Invocation)
+		public void setup() throws Throwable {
+			super.setup();
+			instance.start().result(duration);
+		}
+	}
+
+	@Benchmark
+	public Unit start(Created state) throws Throwable {
+		return state.instance.start().result(duration);
+	}
+
+	@Benchmark
+	public Unit stop(Started state) throws Throwable {
+		return state.instance.stop().result(duration);
+	}
+
+	@Benchmark
+	public Unit destroy(Started state) throws Throwable {
+		return state.instance.destroy().result(duration);
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javascalautils.Try;
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+
+/**
+ * Measures the throughput of the synchronous read operations of {@link CloseableZooKeeper}. <br>
+ * The node read has {@link #children} children and carries {@link #payloadSize} bytes of data.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+	private static final String path = "/read-benchmark";
+
+	@Param({ "0", "1000" })
+	public int children;
+
+	@Param({ "128", "65536" })
+	public int payloadSize;
+
+	private ZKInstance instance;
+	private CloseableZooKeeper zookeeper;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		instance = ZKFactory.apply().withInMemoryStorage().create();
+		instance.start().result(duration);
+		zookeeper = instance.connect().get();
+		zookeeper.createRecursive(path, new byte[payloadSize]).get();
+		zookeeper.createAll(IntStream.range(0, children).mapToObj(i -> new SimpleEntry<>(path + "/child-" + i, new byte[0])), 1000).get();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		zookeeper.close();
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public Try<byte[]> getData() {
+		return zookeeper.getData(path);
+	}
+
+	@Benchmark
+	public Try<Boolean> exists() {
+		return zookeeper.exists(path);
+	}
+
+	@Benchmark
+	public Try<Long> getChildren() {
+		return zookeeper.getChildren(path).map(Stream::count);
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+
+/**
+ * Measures the end-to-end startup latency of an instance, i.e. from invoking {@link ZKInstance#start()} until a client is connected.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+
+	@Param({ "disc", "memory" })
+	public String storage;
+
+	private ZKInstance instance;
+
+	@Setup(Level.Invocation)
+	public void setup() {
+		ZKFactory factory = ZKFactory.apply();
+		if ("memory".equals(storage)) {
+			factory.withInMemoryStorage();
+		}
+		instance = factory.create();
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws Throwable {
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public long startAndConnect() throws Throwable {
+		instance.start().result(duration);
+		try (CloseableZooKeeper zookeeper = instance.connect().get()) {
+			return zookeeper.getSessionId();
+		}
+	}
+}
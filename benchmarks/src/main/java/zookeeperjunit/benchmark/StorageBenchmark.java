@@ -0,0 +1,92 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.data.Stat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+
+/**
+ * Compares the write throughput of disc backed storage against in-memory storage.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+	private static final String path = "/storage-benchmark";
+
+	@Param({ "disc", "memory" })
+	public String storage;
+
+	@Param({ "128" })
+	public int payloadSize;
+
+	private ZKInstance instance;
+	private CloseableZooKeeper zookeeper;
+	private byte[] payload;
+
+	@Setup(Level.Trial)
+	public void setup() throws Throwable {
+		ZKFactory factory = ZKFactory.apply();
+		if ("memory".equals(storage)) {
+			factory.withInMemoryStorage();
+		}
+		instance = factory.create();
+		instance.start().result(duration);
+		zookeeper = instance.connect().get();
+		zookeeper.create(path, new byte[0], OPEN_ACL_UNSAFE, PERSISTENT);
+		payload = new byte[payloadSize];
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Throwable {
+		zookeeper.close();
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public Stat setData() throws Exception {
+		return zookeeper.setData(path, payload, -1);
+	}
+}
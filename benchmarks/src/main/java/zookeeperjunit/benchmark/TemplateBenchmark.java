@@ -0,0 +1,112 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javascalautils.Unit;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+import zookeeperjunit.ZKTemplate;
+
+/**
+ * Measures the time to start an instance {@link ZKFactory#fromTemplate(ZKTemplate) created from a template} of {@link #nodes} nodes. <br>
+ * With <tt>0</tt> nodes no template is used at all, i.e. the baseline of starting an empty instance.
+ *
+ * @author Peter Nerg
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class TemplateBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(30);
+
+	@Param({ "0", "100000" })
+	public int nodes;
+
+	@Param({ "disc", "memory" })
+	public String storage;
+
+	private ZKTemplate template;
+	private ZKInstance instance;
+
+	@Setup(Level.Trial)
+	public void setupTemplate() throws Throwable {
+		if (nodes == 0) {
+			return;
+		}
+		Path file = Files.createTempFile(new File("target").toPath(), "template", ".properties");
+		// 100 parents with an even share of children each
+		Files.write(file, IntStream.range(0, nodes).mapToObj(i -> "/template/parent-" + (i % 100) + "/node-" + i + "=some data").collect(Collectors.toList()));
+		template = ZKTemplate.of(file).get();
+		Files.delete(file);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownTemplate() {
+		if (template != null) {
+			template.destroy();
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setup() throws InterruptedException {
+		// the time spent by the tests using the previous instance, during which the template prepares the next copy of the data
+		Thread.sleep(1000);
+		ZKFactory factory = ZKFactory.apply();
+		if ("memory".equals(storage)) {
+			factory.withInMemoryStorage();
+		}
+		if (template != null) {
+			factory.fromTemplate(template);
+		}
+		instance = factory.create();
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws Throwable {
+		instance.destroy().result(duration);
+	}
+
+	@Benchmark
+	public Unit start() throws Throwable {
+		return instance.start().result(duration);
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javascalautils.Try;
+import zookeeperjunit.CloseableZooKeeper;
+import zookeeperjunit.ZKFactory;
+import zookeeperjunit.ZKInstance;
+import zookeeperjunit.ZKTransport;
+
+/**
+ * Compares the throughput of the server {@link ZKTransport transports} with many concurrent sessions. <br>
+ * Each benchmark thread uses its own session, the number of sessions is changed using the <tt>-t</tt> option of JMH.
+ *
+ * @author Peter Nerg
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class TransportBenchmark {
+
+	private static final Duration duration = Duration.ofSeconds(10);
+	private static final String path = "/transport-benchmark";
+
+	@State(Scope.Benchmark)
+	public static class Server {
+		@Param({ "NIO", "NETTY" })
+		public ZKTransport transport;
+
+		@Param({ "128", "65536" })
+		public int payloadSize;
+
+		private ZKInstance instance;
+
+		@Setup(Level.Trial)
+		public void setup() throws Throwable {
+			instance = ZKFactory.apply().withInMemoryStorage().withTransport(transport).withMaxClientConnections(1000).create();
+			instance.start().result(duration);
+			try (CloseableZooKeeper zookeeper = instance.connect().get()) {
+				zookeeper.createRecursive(path, new byte[payloadSize]).get();
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws Throwable {
+			instance.destroy().result(duration);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Session {
+		private CloseableZooKeeper zookeeper;
+		private byte[] data;
+
+		@Setup(Level.Trial)
+		public void setup(Server server) throws Throwable {
+			zookeeper = server.instance.connect().get();
+			data = new byte[server.payloadSize];
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			zookeeper.close();
+		}
+	}
+
+	@Benchmark
+	public Try<byte[]> getData(Session session) {
+		return session.zookeeper.getData(path);
+	}
+
+	@Benchmark
+	public Stat setData(Session session) throws KeeperException, InterruptedException {
+		return session.zookeeper.setData(path, session.data, -1);
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.TryCompanion.Success;
+import static javascalautils.TryCompanion.Try;
+import static javascalautils.concurrent.FutureCompanion.Future;
+import static org.apache.zookeeper.CreateMode.PERSISTENT_SEQUENTIAL;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.server.ServerCnxn;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import javascalautils.Failure;
+import javascalautils.Option;
+import javascalautils.Try;
+import javascalautils.Unit;
+
+/**
+ * Base class for the ZKInstance implementations. <br>
+ * Provides the client side operations that are common for all types of instances.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+abstract class AbstractZKInstance implements ZKInstance {
+
+	/** The parent path to all leased namespaces. */
+	static final String LEASE_ROOT = "/zookeeper-junit/leases";
+
+	/** The max time to wait for a connection to be established. */
+	private static final Duration connectTimeout = Duration.ofSeconds(5);
+
+	/** The max time to wait for each of multiple connections, the connections are made concurrently but the server processes them one by one. */
+	private static final Duration bulkConnectTimeout = Duration.ofSeconds(30);
+
+	/** The max time to wait for expired sessions to be removed by the server. */
+	private static final Duration expireTimeout = Duration.ofSeconds(10);
+
+	/** The interval to check if expired sessions have been removed. */
+	private static final long pollInterval = 100_000;
+
+	/** The session used internally by the instance, created on demand. */
+	private Option<CloseableZooKeeper> session = None();
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#connectString()
+	 */
+	@Override
+	public Option<String> connectString() {
+		return port().map(port -> "127.0.0.1:" + port);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#connect()
+	 */
+	@Override
+	public Try<CloseableZooKeeper> connect() {
+		// Tries to connect to the server in case it is running
+		// If not running then we return a Failure(IllegalStateException)
+		return connectString().map(connectString -> {
+			// attempt to connect
+			return Try(() -> CloseableZooKeeper.blockingConnect(connectString, connectTimeout));
+		}).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#connect(int)
+	 */
+	@Override
+	public Try<List<CloseableZooKeeper>> connect(int sessions) {
+		return connectString().map(connectString -> {
+			return Try(() -> CloseableZooKeeper.connect(connectString, sessions, bulkConnectTimeout).result(bulkConnectTimeout.plusSeconds(1)));
+		}).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#lease()
+	 */
+	@Override
+	public Try<ZKLease> lease() {
+		return connectString().map(connectString -> {
+			return session().flatMap(zk -> Try(() -> new ZKLease(connectString, createLeasePath(zk), this::release)));
+		}).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#session()
+	 */
+	@Override
+	public synchronized Try<CloseableZooKeeper> session() {
+		if (session.exists(zk -> zk.getState().isAlive() && !isExpired(zk.getSessionId()))) {
+			return Success(session.get());
+		}
+		// the client of an expired session would keep reconnecting until learning it's expired
+		session.forEach(CloseableZooKeeper::abandon);
+		Try<CloseableZooKeeper> connect = connect();
+		session = connect.asOption();
+		return connect;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#seed(java.nio.file.Path)
+	 */
+	@Override
+	public Try<ZKSeedReport> seed(Path file) {
+		return connectString().map(connectString -> session().flatMap(zk -> zk.seed(file)))
+				.getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#stats()
+	 */
+	@Override
+	public Try<ZKStats> stats() {
+		return server().map(server -> Try(() -> ZKStats.of(server)))
+				.getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#resetStats()
+	 */
+	@Override
+	public Try<Unit> resetStats() {
+		return server().map(server -> Try(() -> {
+			server.serverStats().reset();
+			for (ServerCnxn cnxn : server.getServerCnxnFactory().getConnections()) {
+				cnxn.resetStats();
+			}
+		})).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#expireSession(long)
+	 */
+	@Override
+	public Try<Unit> expireSession(long sessionId) {
+		return server().map(server -> Try(() -> {
+			if (!server.getZKDatabase().getSessionWithTimeOuts().containsKey(sessionId)) {
+				throw new IllegalArgumentException("No such session [0x" + Long.toHexString(sessionId) + "]");
+			}
+			expire(server, Collections.singletonList(sessionId));
+		})).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#expireAllSessions()
+	 */
+	@Override
+	public Try<Integer> expireAllSessions() {
+		return server().map(server -> Try(() -> {
+			List<Long> sessions = new ArrayList<>(server.getZKDatabase().getSessionWithTimeOuts().keySet());
+			expire(server, sessions);
+			return sessions.size();
+		})).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#dropConnections()
+	 */
+	@Override
+	public Try<Unit> dropConnections() {
+		return server().map(server -> Try(() -> server.getServerCnxnFactory().closeAll()))
+				.getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	/**
+	 * The ZooKeeper server currently serving clients on this instance.
+	 *
+	 * @return The server, None if not running
+	 */
+	abstract Option<ZooKeeperServer> server();
+
+	/**
+	 * Checks if the provided session is known to be expired, i.e. the running server no longer has the session. <br>
+	 * Sessions may expire without the client yet knowing it, e.g. when a {@link ZKClock} is advanced.
+	 *
+	 * @param sessionId
+	 *            The id of the session
+	 * @return If the session is expired
+	 */
+	private boolean isExpired(long sessionId) {
+		return server().exists(server -> !server.getZKDatabase().getSessionWithTimeOuts().containsKey(sessionId));
+	}
+
+	/**
+	 * Closes the provided sessions and waits for the server to remove them. <br>
+	 * Closing a session is a transaction processed by the server asynchronously, for a test to be deterministic the session must be gone once this returns.
+	 *
+	 * @param server
+	 *            The server
+	 * @param sessions
+	 *            The ids of the sessions
+	 * @throws TimeoutException
+	 *             If the sessions are not removed within {@link #expireTimeout}
+	 */
+	private static void expire(ZooKeeperServer server, List<Long> sessions) throws TimeoutException {
+		sessions.forEach(server::closeSession);
+		long deadline = System.nanoTime() + expireTimeout.toNanos();
+		// all sessions, the sessions of the data tree are only the ones owning ephemeral nodes
+		Map<Long, Integer> remaining = server.getZKDatabase().getSessionWithTimeOuts();
+		while (sessions.stream().anyMatch(remaining::containsKey)) {
+			if (System.nanoTime() > deadline) {
+				throw new TimeoutException("The sessions were not expired within [" + expireTimeout + "]");
+			}
+			LockSupport.parkNanos(pollInterval);
+		}
+	}
+
+	/**
+	 * Closes the session used internally by this instance. <br>
+	 * Shall be invoked when the instance is stopped.
+	 */
+	synchronized void closeSession() {
+		session.forEach(CloseableZooKeeper::close);
+		session = None();
+	}
+
+	/**
+	 * Asynchronously deletes the provided leased namespace.
+	 *
+	 * @param path
+	 *            The path of the namespace
+	 */
+	private void release(String path) {
+		// fire and forget, should the instance not be running the data is anyways of no interest
+		Future(() -> session().flatMap(zk -> zk.deleteRecursively(path)));
+	}
+
+	/**
+	 * Creates a new unique path for a lease. <br>
+	 * The parent paths are only created in case they're missing to keep the common case to a single round trip.
+	 *
+	 * @param zk
+	 *            The connection to use
+	 * @return The created path
+	 */
+	private static String createLeasePath(CloseableZooKeeper zk) throws Throwable {
+		try {
+			return zk.create(LEASE_ROOT + "/lease-", new byte[0], OPEN_ACL_UNSAFE, PERSISTENT_SEQUENTIAL);
+		} catch (KeeperException.NoNodeException ex) {
+			zk.createRecursive(LEASE_ROOT, new byte[0]).get();
+			return zk.create(LEASE_ROOT + "/lease-", new byte[0], OPEN_ACL_UNSAFE, PERSISTENT_SEQUENTIAL);
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.TryCompanion.Try;
+import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.ZooKeeper;
+
+import javascalautils.Option;
+import javascalautils.Try;
+import javascalautils.Unit;
+
+/**
+ * Creates a set of persistent nodes including any missing parent nodes. <br>
+ * All creates are issued asynchronously, the number of outstanding requests is bounded by a configurable window. <br>
+ * ZooKeeper processes the requests of a session in order, hence a parent is always created before its children without having to wait for it. <br>
+ * The paths known to exist are kept in a bounded cache so a missing parent is only created once, nodes that already exist are left untouched. <br>
+ * A node may be listed after one of its children, i.e. after it has been created as an empty parent. <br>
+ * The data of such a node is set once its own entry arrives, provided the parent was created by this operation. <br>
+ * Such parents are tracked in the same bounded cache, a node listed after more than {@value #maxKnownPaths} other paths
+ * have been used since its last child is treated as already existing.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class BulkCreate {
+
+	/** The max number of paths kept in the cache of known paths. */
+	static final int maxKnownPaths = 10000;
+
+	private static final byte[] empty = new byte[0];
+
+	private final ZooKeeper zooKeeper;
+	private final RequestPipeline pipeline;
+
+	/**
+	 * The paths that are known to exist or that have been requested to be created, in least recently used order. <br>
+	 * Parents created with empty data by this operation that have not (yet) been listed on their own map to their {@link ImplicitParent}.
+	 */
+	private final Map<String, Option<ImplicitParent>> knownPaths = new LinkedHashMap<String, Option<ImplicitParent>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, Option<ImplicitParent>> eldest) {
+			return size() > maxKnownPaths;
+		}
+	};
+
+	BulkCreate(ZooKeeper zooKeeper, int maxInFlight) {
+		this.zooKeeper = zooKeeper;
+		this.pipeline = new RequestPipeline(maxInFlight);
+		knownPaths.put("/", None());
+	}
+
+	/**
+	 * Creates all the provided nodes including any missing parent nodes. <br>
+	 * Nodes that already exist are ignored, a node listed after one of its children gets its data set. <br>
+	 * In case of multiple failures the first is returned with the others added as {@link Throwable#getSuppressed() suppressed}.
+	 *
+	 * @param zooKeeper
+	 *            The connection to use
+	 * @param nodes
+	 *            The paths and data of the nodes to create
+	 * @param maxInFlight
+	 *            The max number of outstanding requests
+	 * @return The result of the operation
+	 */
+	static Try<Unit> apply(ZooKeeper zooKeeper, Stream<Entry<String, byte[]>> nodes, int maxInFlight) {
+		return new BulkCreate(zooKeeper, maxInFlight).execute(nodes);
+	}
+
+	/**
+	 * Creates all the provided nodes including any missing parent nodes.
+	 *
+	 * @param nodes
+	 *            The paths and data of the nodes to create
+	 * @return The result of the operation
+	 */
+	Try<Unit> execute(Stream<Entry<String, byte[]>> nodes) {
+		return Try(() -> {
+			Iterator<Entry<String, byte[]>> iterator = nodes.iterator();
+			while (iterator.hasNext()) {
+				Entry<String, byte[]> node = iterator.next();
+				createParents(node.getKey());
+				Option<ImplicitParent> known = knownPaths.get(node.getKey());
+				if (known != null && known.isDefined()) {
+					knownPaths.put(node.getKey(), None());
+					known.get().listed(node.getKey(), node.getValue());
+				} else {
+					create(node.getKey(), node.getValue(), None());
+				}
+			}
+			pipeline.await();
+			pipeline.throwFailures();
+		});
+	}
+
+	/**
+	 * The number of paths currently in the cache of known paths.
+	 *
+	 * @return The number of paths
+	 */
+	int knownPathCount() {
+		return knownPaths.size();
+	}
+
+	/**
+	 * Creates all parents of the path not known to exist, starting with the top most.
+	 *
+	 * @param path
+	 *            The path
+	 */
+	private void createParents(String path) throws InterruptedException {
+		int pos = path.lastIndexOf('/');
+		if (pos < 1) {
+			return;
+		}
+		String parent = path.substring(0, pos);
+		// get (not containsKey) to mark the path as recently used
+		if (knownPaths.get(parent) != null) {
+			return;
+		}
+		createParents(parent);
+		create(parent, empty, Some(new ImplicitParent()));
+	}
+
+	private void create(String path, byte[] data, Option<ImplicitParent> implicitParent) throws InterruptedException {
+		knownPaths.put(path, implicitParent);
+		pipeline.acquire();
+		zooKeeper.create(path, data, OPEN_ACL_UNSAFE, PERSISTENT, (rc, p, ctx, name) -> {
+			if (rc != Code.OK.intValue() && rc != Code.NODEEXISTS.intValue()) {
+				pipeline.failure(rc, p);
+			}
+			implicitParent.forEach(parent -> parent.created(p, rc == Code.OK.intValue()));
+			pipeline.release();
+		}, null);
+	}
+
+	private void setData(String path, byte[] data, Runnable onCompletion) {
+		zooKeeper.setData(path, data, -1, (rc, p, ctx, stat) -> {
+			if (rc != Code.OK.intValue()) {
+				pipeline.failure(rc, p);
+			}
+			onCompletion.run();
+		}, null);
+	}
+
+	/**
+	 * A parent created with empty data by this operation. <br>
+	 * Should the parent be listed later on, its data is set once it's known that the create succeeded. <br>
+	 * A parent that already existed is left untouched.
+	 */
+	private final class ImplicitParent {
+		private boolean completed = false;
+		private boolean created = false;
+		private byte[] data;
+
+		/**
+		 * Invoked on the event thread when the create of the parent is completed.
+		 */
+		private synchronized void created(String path, boolean created) {
+			this.completed = true;
+			this.created = created;
+			if (created && data != null) {
+				pipeline.track(1);
+				setData(path, data, pipeline::completed);
+			}
+		}
+
+		/**
+		 * Invoked by the submitting thread when the parent is listed on its own.
+		 */
+		private void listed(String path, byte[] data) throws InterruptedException {
+			synchronized (this) {
+				if (!completed) {
+					this.data = data;
+					return;
+				}
+				if (!created) {
+					return;
+				}
+			}
+			pipeline.acquire();
+			setData(path, data, pipeline::release);
+		}
+	}
+}
@@ -15,23 +15,44 @@
  */
 package zookeeperjunit;
 
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
 import static javascalautils.TryCompanion.Try;
-import static javascalautils.concurrent.FutureCompanion.Future;
+import static javascalautils.concurrent.PromiseCompanion.Promise;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.concurrent.CountDownLatch;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
 import org.apache.zookeeper.Watcher;
-import org.apache.zookeeper.Watcher.Event.KeeperState;
 import org.apache.zookeeper.ZooKeeper;
 
+import javascalautils.Option;
 import javascalautils.Try;
 import javascalautils.Unit;
 import javascalautils.concurrent.Future;
+import javascalautils.concurrent.Promise;
 
 /**
  * Extends the standard {@link ZooKeeper} connection class with the {@link Closeable} interface. <br>
@@ -41,28 +62,110 @@ import javascalautils.concurrent.Future;
  * @since 1.1
  */
 public final class CloseableZooKeeper extends ZooKeeper implements Closeable {
+	/** The default max number of outstanding requests for the bulk operations. */
+	private static final int defaultMaxInFlight = 1000;
+
+	/** The default number of events kept by a watch recorder. */
+	private static final int defaultWatchCapacity = 65536;
+
+	/** The session timeout requested by the client, the server in turn negotiates the actual timeout. */
+	private static final int sessionTimeout = 10000;
+
+	/** The time waited on top of a connect timeout for the connect Future to be completed. */
+	private static final Duration timeoutGrace = Duration.ofSeconds(1);
+
+	/** Timer used to fail connection attempts that exceed their timeout. */
+	private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "zookeeper-junit-connect-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Closes the clients of failed connection attempts, closing may block and must not be done on the timer or event thread. */
+	private static final ExecutorService closer = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "zookeeper-junit-connect-closer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** The watchers used when awaiting conditions, reused per path so repeated waits do not pile up registered watchers. */
+	private final WatchAwait.Watchers awaitWatchers = new WatchAwait.Watchers();
+
 	CloseableZooKeeper(String connectString, int sessionTimeout, Watcher watcher) throws IOException {
 		super(connectString, sessionTimeout, watcher);
 	}
 
 	/**
-	 * Creates a ZooKeeper connection.
+	 * Asynchronously creates a ZooKeeper connection. <br>
+	 * The returned Future is completed directly from the connection state callback, no thread is blocked waiting for the connection. <br>
+	 * The Future fails fast should authentication fail or the session expire. <br>
+	 * Should the connection not be established within the timeout the Future fails with a {@link TimeoutException}. <br>
+	 * In case of failure the client is closed, i.e. no client threads are left behind.
 	 * 
 	 * @param connectString
 	 *            The connect string
+	 * @param timeout
+	 *            The max time to wait for the connection to be established
 	 * @return A Future which will be completed once the connections is properly made and we're connected.
+	 * @since 1.3
 	 */
-	static Future<CloseableZooKeeper> connect(String connectString) {
-		return Future(() -> {
-			CountDownLatch latch = new CountDownLatch(1);
-			CloseableZooKeeper zk = new CloseableZooKeeper(connectString, 10000, event -> {
-				if (event.getState() == KeeperState.SyncConnected) {
-					latch.countDown();
+	public static Future<CloseableZooKeeper> connect(String connectString, Duration timeout) {
+		Promise<Unit> connected = Promise();
+		CloseableZooKeeper zk;
+		try {
+			zk = new CloseableZooKeeper(connectString, sessionTimeout, event -> {
+				switch (event.getState()) {
+				case SyncConnected:
+					connected.trySuccess(Unit.Instance);
+					break;
+				case AuthFailed:
+					connected.tryFailure(KeeperException.create(Code.AUTHFAILED));
+					break;
+				case Expired:
+					connected.tryFailure(KeeperException.create(Code.SESSIONEXPIRED));
+					break;
+				default:
+					// the client itself keeps trying to connect
 				}
 			});
-			latch.await(); // this blocks indefinitely
-			return zk;
-		});
+		} catch (IOException | IllegalArgumentException ex) {
+			return Future.failed(ex);
+		}
+		ScheduledFuture<?> timeoutTask = timer.schedule(() -> {
+			connected.tryFailure(new TimeoutException("Failed to connect to [" + connectString + "] within [" + timeout + "]"));
+		}, timeout.toMillis(), TimeUnit.MILLISECONDS);
+		Promise<CloseableZooKeeper> result = Promise();
+		Future<Unit> future = connected.future();
+		future.onComplete(r -> timeoutTask.cancel(false));
+		future.onSuccess(u -> result.success(zk));
+		// the Future is failed only once the client is closed
+		future.onFailure(ex -> closer.execute(() -> {
+			zk.close();
+			result.failure(ex);
+		}));
+		return result.future();
+	}
+
+	/**
+	 * Asynchronously creates multiple ZooKeeper connections concurrently. <br>
+	 * Should any of the connections fail then the Future fails and all connections are closed.
+	 * 
+	 * @param connectString
+	 *            The connect string
+	 * @param sessions
+	 *            The number of connections/sessions to create
+	 * @param timeout
+	 *            The max time to wait for each connection to be established
+	 * @return A Future which will be completed once all connections are made.
+	 * @since 1.3
+	 */
+	public static Future<List<CloseableZooKeeper>> connect(String connectString, int sessions, Duration timeout) {
+		Util.assertLargerThanZero(sessions);
+		List<Future<CloseableZooKeeper>> connects = IntStream.range(0, sessions).mapToObj(i -> connect(connectString, timeout)).collect(Collectors.toList());
+		Future<List<CloseableZooKeeper>> all = Future.sequence(connects.stream()).map(stream -> stream.collect(Collectors.toList()));
+		// close also the connections that are completed after the failure
+		all.onFailure(ex -> connects.forEach(connect -> connect.onSuccess(CloseableZooKeeper::close)));
+		return all;
 	}
 
 	/**
@@ -79,12 +182,15 @@ public final class CloseableZooKeeper extends ZooKeeper implements Closeable {
 	 *             Any other issue
 	 */
 	static CloseableZooKeeper blockingConnect(String connectString, Duration duration) throws TimeoutException, Throwable {
-		return connect(connectString).result(duration);
+		// the Future itself fails once the duration is exceeded, the grace is only to let it do so and close the client
+		return connect(connectString, duration).result(duration.plus(timeoutGrace));
 	}
 
 	/**
 	 * Recursively deletes the specified node and all of it's children. <br>
-	 * Will fail if the node/path does not exist or ZK is down.
+	 * The tree is enumerated and deleted using pipelined asynchronous requests, the nodes are deleted in batches using <tt>multi</tt> requests. <br>
+	 * Will fail if the node/path does not exist or ZK is down. <br>
+	 * Any failure to delete a child node is reported, in case of multiple failures the first is returned with the others added as {@link Throwable#getSuppressed() suppressed}.
 	 * 
 	 * @param path
 	 *            The path
@@ -92,16 +198,263 @@ public final class CloseableZooKeeper extends ZooKeeper implements Closeable {
 	 * @since 1.1
 	 */
 	public Try<Unit> deleteRecursively(String path) {
-		Try<Stream<String>> children = getChildren(path);
-		children.forEach(stream -> {
-			stream.forEach(child -> {
-				String joinedZNode = path.equals("/") ? path + child : path + "/" + child;
-				deleteRecursively(joinedZNode);
-			});
+		return RecursiveDelete.apply(this, path);
+	}
+
+	/**
+	 * Creates a persistent node including any missing parent nodes. <br>
+	 * The parents are created with empty data, should the node already exist it is left untouched. <br>
+	 * All creates are pipelined meaning the operation only takes a single round trip regardless of the number of missing parents.
+	 * 
+	 * @param path
+	 *            The path
+	 * @param data
+	 *            The data of the node
+	 * @return The result of the operation
+	 * @since 1.3
+	 */
+	public Try<Unit> createRecursive(String path, byte[] data) {
+		return createAll(Stream.of(new SimpleImmutableEntry<>(path, data)), 1);
+	}
+
+	/**
+	 * Creates all the provided persistent nodes including any missing parent nodes. <br>
+	 * Same as {@link #createAll(Stream, int)} with a window of 1000 outstanding requests.
+	 * 
+	 * @param nodes
+	 *            The paths and data of the nodes to create
+	 * @return The result of the operation
+	 * @since 1.3
+	 */
+	public Try<Unit> createAll(Map<String, byte[]> nodes) {
+		return createAll(nodes.entrySet().stream(), defaultMaxInFlight);
+	}
+
+	/**
+	 * Creates all the provided persistent nodes including any missing parent nodes. <br>
+	 * The creates are issued asynchronously while the stream is consumed, only waiting in case the window of outstanding requests is full. <br>
+	 * Missing parents are created once with empty data, nodes that already existed before the operation are left untouched. <br>
+	 * The nodes may be provided in any order, a node provided after one of its children gets its data set on the parent created for the child. <br>
+	 * The heap used is bounded regardless of the number of nodes, hence a node provided after more than 10000 other paths since its last child is treated as already existing. <br>
+	 * Any failure is reported, in case of multiple failures the first is returned with the others added as {@link Throwable#getSuppressed() suppressed}.
+	 * 
+	 * @param nodes
+	 *            The paths and data of the nodes to create
+	 * @param maxInFlight
+	 *            The max number of outstanding requests
+	 * @return The result of the operation
+	 * @since 1.3
+	 */
+	public Try<Unit> createAll(Stream<Entry<String, byte[]>> nodes, int maxInFlight) {
+		return BulkCreate.apply(this, nodes, maxInFlight);
+	}
+
+	/**
+	 * Creates all the nodes described in the provided file. <br>
+	 * The file is streamed line by line into {@link #createAll(Stream, int)}, the heap used is bounded regardless of the size of the file. <br>
+	 * The file has one node per line in the format <tt>path=data</tt> with the data as UTF-8 text, a line without <tt>=</tt> yields a node with empty data.
+	 * Blank lines and lines starting with <tt>#</tt> are ignored. <br>
+	 * The lines may be in any order, a node listed after one of its children still gets its data. <br>
+	 * Missing parents are created with empty data, nodes that already existed before seeding are left untouched.
+	 * 
+	 * @param file
+	 *            The file describing the tree
+	 * @return The result of the operation, a Success with the number of nodes and the elapsed time
+	 * @since 1.3
+	 */
+	public Try<ZKSeedReport> seed(Path file) {
+		return Try(() -> {
+			long start = System.nanoTime();
+			AtomicLong nodeCount = new AtomicLong();
+			try (Stream<Entry<String, byte[]>> nodes = SeedFile.read(file)) {
+				createAll(nodes.peek(node -> nodeCount.incrementAndGet()), defaultMaxInFlight).get();
+			}
+			return new ZKSeedReport(nodeCount.get(), Duration.ofNanos(System.nanoTime() - start));
 		});
-		// the flatMap/delete only executes if the getChildren is a Success
-		// i.e. no point in deleting a path that doesn't exist or ZK is down
-		return children.flatMap(s -> delete(path));
+	}
+
+	/**
+	 * Writes a value of any size to the provided path. <br>
+	 * The data is split into chunks of 512kB stored as children of the node, the node itself holds a manifest of the chunks. 
+	 * The chunks are written using pipelined asynchronous requests and then committed with a single <tt>multi</tt> request replacing the previous value,
+	 * readers see either the previous or the new value. <br>
+	 * The stream is consumed chunk by chunk, the heap used is bounded regardless of the size of the value. <br>
+	 * The node including any missing parents is created if it does not exist, use {@link #deleteRecursively(String)} to delete the value. <br>
+	 * Will fail if the value is concurrently written by someone else or ZK is down, the previous value is then retained.
+	 * 
+	 * @param path
+	 *            The path
+	 * @param data
+	 *            The data, consumed but not closed
+	 * @return The result of the operation
+	 * @since 1.3
+	 */
+	public Try<Unit> putLarge(String path, InputStream data) {
+		return LargeValue.put(this, path, data);
+	}
+
+	/**
+	 * Reads a value written using {@link #putLarge(String, InputStream)}. <br>
+	 * The chunks are fetched in parallel ahead of the reader of the stream, each chunk is handed out as received without assembling the value in memory. <br>
+	 * Will fail if the node does not exist, does not hold a value written by {@link #putLarge(String, InputStream)} or ZK is down. <br>
+	 * Should the value be replaced while being read the stream fails with an {@link IOException}.
+	 * 
+	 * @param path
+	 *            The path
+	 * @return The result of the operation, a Success with the stream
+	 * @since 1.3
+	 */
+	public Try<InputStream> getLarge(String path) {
+		return LargeValue.get(this, path);
+	}
+
+	/**
+	 * Exports the provided path and all of its children into memory. <br>
+	 * The tree is traversed level by level fetching the children and data of all nodes of a level using pipelined asynchronous requests. <br>
+	 * Will fail if the path does not exist or ZK is down.
+	 * 
+	 * @param path
+	 *            The path
+	 * @return The result of the operation, a Success with the tree
+	 * @since 1.3
+	 */
+	public Try<ZKTree> export(String path) {
+		return export(path, None());
+	}
+
+	/**
+	 * Exports the provided path and all of its children into memory, re-using the data of a previous export of the same path. <br>
+	 * The data of nodes that have not been modified (same <tt>mzxid</tt>) since the previous export is taken from the previous export instead of
+	 * being fetched from the server. <br>
+	 * The data is only re-used if the previous export was made of the same path using this connection (session), as a zxid is only meaningful
+	 * within the same server. Given any other tree all data is fetched.
+	 * 
+	 * @param path
+	 *            The path
+	 * @param previous
+	 *            A previous export of the same path using this connection
+	 * @return The result of the operation, a Success with the tree
+	 * @since 1.3
+	 */
+	public Try<ZKTree> export(String path, ZKTree previous) {
+		return export(path, Some(previous));
+	}
+
+	/**
+	 * Streams the provided path and all of its children to the provided consumer. <br>
+	 * The nodes are passed level by level, sorted on path within each level, only a single level is kept in memory at any time. <br>
+	 * The consumer is invoked by the calling thread. <br>
+	 * Will fail if the path does not exist or ZK is down.
+	 * 
+	 * @param path
+	 *            The path
+	 * @param consumer
+	 *            Receives the nodes
+	 * @return The result of the operation
+	 * @since 1.3
+	 */
+	public Try<Unit> export(String path, Consumer<ZKNode> consumer) {
+		return TreeExport.apply(this, path, None(), consumer);
+	}
+
+	private Try<ZKTree> export(String path, Option<ZKTree> previous) {
+		SortedMap<String, ZKNode> nodes = new TreeMap<>();
+		String origin = "0x" + Long.toHexString(getSessionId()) + ":" + path;
+		// a tree exported from another session/path may have nodes with the same mzxid but different data
+		Option<ZKTree> reusable = previous.filter(tree -> tree.origin().exists(origin::equals));
+		return TreeExport.apply(this, path, reusable, node -> nodes.put(node.path(), node)).map(u -> new ZKTree(nodes, Some(origin)));
+	}
+
+	/**
+	 * Waits for the provided path to exist. <br>
+	 * The wait is driven by watches, it ends as soon as the node is created without polling the server.
+	 * 
+	 * @param path
+	 *            The path
+	 * @param timeout
+	 *            The max time to wait
+	 * @return Success once the node exists, Failure(TimeoutException) if not created in time
+	 * @since 1.3
+	 */
+	public Try<Unit> awaitExists(String path, Duration timeout) {
+		return WatchAwait.apply(this, awaitWatchers, path, "exists " + path, timeout, WatchAwait.exists(path));
+	}
+
+	/**
+	 * Waits for the provided path to not exist. <br>
+	 * The wait is driven by watches, it ends as soon as the node is deleted without polling the server.
+	 * 
+	 * @param path
+	 *            The path
+	 * @param timeout
+	 *            The max time to wait
+	 * @return Success once the node does not exist, Failure(TimeoutException) if not deleted in time
+	 * @since 1.3
+	 */
+	public Try<Unit> awaitNotExists(String path, Duration timeout) {
+		return WatchAwait.apply(this, awaitWatchers, path, "not exists " + path, timeout, WatchAwait.notExists(path));
+	}
+
+	/**
+	 * Waits for the provided path to exist with the provided data. <br>
+	 * The wait is driven by watches, it ends as soon as the node is created/set with the data without polling the server.
+	 * 
+	 * @param path
+	 *            The path
+	 * @param data
+	 *            The expected data
+	 * @param timeout
+	 *            The max time to wait
+	 * @return Success once the node has the data, Failure(TimeoutException) if not set in time
+	 * @since 1.3
+	 */
+	public Try<Unit> awaitData(String path, byte[] data, Duration timeout) {
+		return WatchAwait.apply(this, awaitWatchers, path, "data of " + path, timeout, WatchAwait.data(path, data));
+	}
+
+	/**
+	 * Waits for the provided path to exist with the provided number of children. <br>
+	 * The wait is driven by watches, it ends as soon as the children are created/deleted without polling the server.
+	 * 
+	 * @param path
+	 *            The path
+	 * @param count
+	 *            The expected number of children
+	 * @param timeout
+	 *            The max time to wait
+	 * @return Success once the node has the number of children, Failure(TimeoutException) if not met in time
+	 * @since 1.3
+	 */
+	public Try<Unit> awaitChildCount(String path, int count, Duration timeout) {
+		return WatchAwait.apply(this, awaitWatchers, path, count + " children of " + path, timeout, WatchAwait.childCount(path, count));
+	}
+
+	/**
+	 * Starts recording all watch events on the provided path and all of its children. <br>
+	 * Same as {@link #recordWatches(String, int)} keeping the latest 65536 events.
+	 * 
+	 * @param path
+	 *            The root of the subtree
+	 * @return The result of the operation, a Success with the recorder
+	 * @since 1.3
+	 */
+	public Try<ZKWatchRecorder> recordWatches(String path) {
+		return recordWatches(path, defaultWatchCapacity);
+	}
+
+	/**
+	 * Starts recording all watch events on the provided path and all of its children. <br>
+	 * Returns once watches are set on all existing nodes, the path need not exist. See {@link ZKWatchRecorder} for details.
+	 * 
+	 * @param path
+	 *            The root of the subtree
+	 * @param capacity
+	 *            The number of events to keep, rounded up to the nearest power of two
+	 * @return The result of the operation, a Success with the recorder
+	 * @since 1.3
+	 */
+	public Try<ZKWatchRecorder> recordWatches(String path, int capacity) {
+		return ZKWatchRecorder.apply(this, path, capacity);
 	}
 
 	/**
@@ -166,4 +519,12 @@ public final class CloseableZooKeeper extends ZooKeeper implements Closeable {
 	public void close() {
 		Try(() -> super.close());
 	}
+
+	/**
+	 * Stops the client without asking the server to close the session. <br>
+	 * Intended for sessions known to be gone from the server, a {@link #close()} would block until the client has reconnected only to learn the session is expired.
+	 */
+	void abandon() {
+		cnxn.disconnect();
+	}
 }
@@ -0,0 +1,228 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jute.BinaryInputArchive;
+import org.apache.jute.BinaryOutputArchive;
+import org.apache.jute.Record;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.server.DataTree;
+import org.apache.zookeeper.server.Request;
+import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+import org.apache.zookeeper.server.util.SerializeUtils;
+import org.apache.zookeeper.txn.TxnHeader;
+
+/**
+ * A transaction log and snapshot storage that never touches the disc. <br>
+ * Transactions are kept as objects in a list and snapshots as a serialized byte array, there is no appending to files nor any fsync. <br>
+ * The data survives a {@link #close()} meaning that the same instance can be handed to a new ZooKeeper server to restore the previous state.
+ * The only file system footprint is the empty <i>version-2</i> directory created by the super class.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class InMemoryTxnSnapLog extends FileTxnSnapLog {
+
+	/** The latest snapshot, <code>null</code> if no snapshot has been taken. */
+	private byte[] snapshot;
+
+	/** The zxid the latest snapshot represents. */
+	private long snapshotZxid;
+
+	/** All transactions appended since the latest snapshot. */
+	private final List<Txn> txnLog = new ArrayList<>();
+
+	/**
+	 * Creates the storage.
+	 *
+	 * @param dir
+	 *            The directory reported as data/snap directory to the ZooKeeper server
+	 * @throws IOException
+	 *             If the directory could not be created
+	 */
+	InMemoryTxnSnapLog(File dir) throws IOException {
+		super(dir, dir);
+	}
+
+	/**
+	 * Seeds the storage with a snapshot, used to start from a {@link ZKTemplate template}. <br>
+	 * The snapshot array is never modified, a later {@link #save(DataTree, ConcurrentHashMap) save} replaces it with a new array.
+	 *
+	 * @param snapshot
+	 *            The serialized snapshot
+	 * @param zxid
+	 *            The zxid the snapshot represents
+	 */
+	synchronized void seed(byte[] snapshot, long zxid) {
+		this.snapshot = snapshot;
+		this.snapshotZxid = zxid;
+		txnLog.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.persistence.FileTxnSnapLog#restore(org.apache.zookeeper.server.DataTree, java.util.Map,
+	 * org.apache.zookeeper.server.persistence.FileTxnSnapLog.PlayBackListener)
+	 */
+	@Override
+	public synchronized long restore(DataTree dt, Map<Long, Integer> sessions, PlayBackListener listener) throws IOException {
+		if (snapshot != null) {
+			SerializeUtils.deserializeSnapshot(dt, BinaryInputArchive.getArchive(new ByteArrayInputStream(snapshot)), sessions);
+			dt.lastProcessedZxid = snapshotZxid;
+		}
+		for (Txn txn : txnLog) {
+			if (txn.header.getZxid() <= dt.lastProcessedZxid) {
+				continue;
+			}
+			try {
+				processTransaction(txn.header, dt, sessions, txn.record);
+			} catch (KeeperException.NoNodeException ex) {
+				throw new IOException("Failed to process transaction type: " + txn.header.getType() + " error: " + ex.getMessage(), ex);
+			}
+			dt.lastProcessedZxid = txn.header.getZxid();
+			listener.onTxnLoaded(txn.header, txn.record);
+		}
+		return dt.lastProcessedZxid;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.persistence.FileTxnSnapLog#save(org.apache.zookeeper.server.DataTree, java.util.concurrent.ConcurrentHashMap)
+	 */
+	@Override
+	public synchronized void save(DataTree dataTree, ConcurrentHashMap<Long, Integer> sessionsWithTimeouts) throws IOException {
+		// the tree may be modified while serialized (fuzzy snapshot), hence the zxid is read before
+		// transactions after this zxid are kept and re-played on top of the snapshot
+		long lastZxid = dataTree.lastProcessedZxid;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SerializeUtils.serializeSnapshot(dataTree, BinaryOutputArchive.getArchive(out), sessionsWithTimeouts);
+		snapshot = out.toByteArray();
+		snapshotZxid = lastZxid;
+		txnLog.removeIf(txn -> txn.header.getZxid() <= lastZxid);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.persistence.FileTxnSnapLog#append(org.apache.zookeeper.server.Request)
+	 */
+	@Override
+	public synchronized boolean append(Request si) throws IOException {
+		// read requests have no header, they are not part of the log
+		if (si.hdr == null) {
+			return false;
+		}
+		txnLog.add(new Txn(si.hdr, si.txn));
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.persistence.FileTxnSnapLog#getLastLoggedZxid()
+	 */
+	@Override
+	public synchronized long getLastLoggedZxid() {
+		return txnLog.isEmpty() ? snapshotZxid : txnLog.get(txnLog.size() - 1).header.getZxid();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.persistence.FileTxnSnapLog#truncateLog(long)
+	 */
+	@Override
+	public synchronized boolean truncateLog(long zxid) throws IOException {
+		txnLog.removeIf(txn -> txn.header.getZxid() > zxid);
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.persistence.FileTxnSnapLog#findMostRecentSnapshot()
+	 */
+	@Override
+	public File findMostRecentSnapshot() throws IOException {
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.persistence.FileTxnSnapLog#findNRecentSnapshots(int)
+	 */
+	@Override
+	public List<File> findNRecentSnapshots(int n) throws IOException {
+		return Collections.emptyList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.persistence.FileTxnSnapLog#getSnapshotLogs(long)
+	 */
+	@Override
+	public File[] getSnapshotLogs(long zxid) {
+		return new File[0];
+	}
+
+	/**
+	 * Nothing to flush, it's all in memory.
+	 */
+	@Override
+	public void commit() throws IOException {
+	}
+
+	/**
+	 * Nothing to roll, it's all in memory.
+	 */
+	@Override
+	public void rollLog() throws IOException {
+	}
+
+	/**
+	 * Does nothing as the data is to be retained for a later restart of the server.
+	 */
+	@Override
+	public void close() throws IOException {
+	}
+
+	/**
+	 * A single logged transaction.
+	 */
+	private static final class Txn {
+		private final TxnHeader header;
+		private final Record record;
+
+		private Txn(TxnHeader header, Record record) {
+			this.header = header;
+			this.record = record;
+		}
+	}
+}
@@ -0,0 +1,376 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.TryCompanion.Try;
+import static javascalautils.concurrent.PromiseCompanion.Promise;
+import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.Stat;
+
+import javascalautils.Option;
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.concurrent.Promise;
+
+/**
+ * Stores values larger than a single node can hold by splitting them into chunks stored as children of the node. <br>
+ * The node itself holds a manifest with the generation, number of chunks and size of the value. 
+ * Each write creates its chunks as a new generation <tt>path/generation-index</tt> using pipelined asynchronous requests and then
+ * commits the value with a single <tt>multi</tt> request replacing the manifest and deleting the chunks of the previous generation. <br>
+ * Readers hence see either the previous or the new value, never a mix. <br>
+ * The value is read by fetching the chunks in parallel into a stream, each chunk is handed out as received without assembling the value in memory. <br>
+ * The number of outstanding chunks is bounded to {@link #maxInFlight} for both reads and writes, i.e. the heap used is bounded regardless of the size
+ * of the value.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class LargeValue {
+
+	/** The size of each chunk, well below the default jute.maxbuffer (1MB) that caps the size of a single request/response. */
+	static final int chunkSize = 512 * 1024;
+
+	/** The max number of outstanding chunk requests. */
+	private static final int maxInFlight = 8;
+
+	/** The max time to wait for a single chunk to be read. */
+	private static final Duration readTimeout = Duration.ofSeconds(30);
+
+	private static final byte[] empty = new byte[0];
+
+	/**
+	 * Inhibitive constructor.
+	 */
+	private LargeValue() {
+	}
+
+	/**
+	 * Writes the data of the stream as the value of the provided path. <br>
+	 * The node including any missing parents is created if it does not exist. <br>
+	 * Should the write fail the chunks written so far are deleted and the previous value is retained, a concurrent write of the same path 
+	 * fails the write with {@link org.apache.zookeeper.KeeperException.BadVersionException}.
+	 *
+	 * @param zooKeeper
+	 *            The connection to use
+	 * @param path
+	 *            The path
+	 * @param data
+	 *            The data, consumed but not closed
+	 * @return The result of the operation
+	 */
+	static Try<Unit> put(ZooKeeper zooKeeper, String path, InputStream data) {
+		return Try(() -> {
+			Stat stat = new Stat();
+			Option<Manifest> previous = Manifest.parse(getOrCreate(zooKeeper, path, stat));
+			Manifest manifest = writeChunks(zooKeeper, path, data);
+			List<Op> commit = new ArrayList<>();
+			commit.add(Op.setData(path, manifest.toBytes(), stat.getVersion()));
+			previous.forEach(m -> m.chunkPaths(path).forEach(chunk -> commit.add(Op.delete(chunk, -1))));
+			try {
+				zooKeeper.multi(commit);
+			} catch (KeeperException ex) {
+				deleteChunks(zooKeeper, manifest.chunkPaths(path));
+				throw ex;
+			}
+		});
+	}
+
+	/**
+	 * Opens a stream reading the value of the provided path. <br>
+	 * Will fail if the path does not exist, does not hold a value written by {@link #put(ZooKeeper, String, InputStream)} or ZK is down. <br>
+	 * Should the value be replaced while being read the stream fails with an {@link IOException}.
+	 *
+	 * @param zooKeeper
+	 *            The connection to use
+	 * @param path
+	 *            The path
+	 * @return The result of the operation, a Success with the stream
+	 */
+	static Try<InputStream> get(ZooKeeper zooKeeper, String path) {
+		return Try(() -> {
+			Option<Manifest> manifest = Manifest.parse(zooKeeper.getData(path, false, null));
+			if (manifest.isEmpty()) {
+				throw new IllegalArgumentException("The node [" + path + "] does not hold a large value");
+			}
+			return new ChunkInputStream(zooKeeper, path, manifest.get());
+		});
+	}
+
+	/**
+	 * Gets the data of the provided path, creating the node with empty data if it does not exist.
+	 *
+	 * @return The data of the node
+	 */
+	private static byte[] getOrCreate(ZooKeeper zooKeeper, String path, Stat stat) throws Throwable {
+		try {
+			return zooKeeper.getData(path, false, stat);
+		} catch (KeeperException.NoNodeException ex) {
+			BulkCreate.apply(zooKeeper, Stream.of(new SimpleImmutableEntry<>(path, empty)), 1).get();
+			return zooKeeper.getData(path, false, stat);
+		}
+	}
+
+	/**
+	 * Writes the data of the stream as chunks of a new generation.
+	 *
+	 * @return The manifest of the written chunks
+	 */
+	private static Manifest writeChunks(ZooKeeper zooKeeper, String path, InputStream data) throws Exception {
+		String generation = UUID.randomUUID().toString();
+		RequestPipeline pipeline = new RequestPipeline(maxInFlight);
+		int chunks = 0;
+		long size = 0;
+		try {
+			for (byte[] chunk = readChunk(data); chunk.length > 0; chunk = readChunk(data)) {
+				pipeline.acquire();
+				zooKeeper.create(chunkPath(path, generation, chunks), chunk, OPEN_ACL_UNSAFE, PERSISTENT, (rc, p, ctx, name) -> {
+					if (rc != Code.OK.intValue()) {
+						pipeline.failure(rc, p);
+					}
+					pipeline.release();
+				}, null);
+				chunks++;
+				size += chunk.length;
+			}
+			pipeline.await();
+			pipeline.throwFailures();
+		} catch (Exception ex) {
+			// all issued creates must be completed before cleaning up
+			pipeline.await();
+			deleteChunks(zooKeeper, new Manifest(generation, chunks, size).chunkPaths(path));
+			throw ex;
+		}
+		return new Manifest(generation, chunks, size);
+	}
+
+	/**
+	 * Reads the next chunk from the stream.
+	 *
+	 * @return The chunk, an empty array once the stream is consumed
+	 */
+	private static byte[] readChunk(InputStream data) throws IOException {
+		byte[] chunk = new byte[chunkSize];
+		int length = 0;
+		for (int read = 0; read >= 0 && length < chunkSize; read = data.read(chunk, length, chunkSize - length)) {
+			length += read;
+		}
+		// the array is sent as is, only the last chunk is ever shorter
+		return length == chunkSize ? chunk : Arrays.copyOf(chunk, length);
+	}
+
+	/**
+	 * Best effort delete of the provided chunks, failures are ignored as this is only invoked to clean up after a failed write.
+	 */
+	private static void deleteChunks(ZooKeeper zooKeeper, Stream<String> chunks) {
+		Try(() -> {
+			RequestPipeline pipeline = new RequestPipeline(maxInFlight);
+			for (String chunk : (Iterable<String>) chunks::iterator) {
+				pipeline.acquire();
+				zooKeeper.delete(chunk, -1, (rc, p, ctx) -> pipeline.release(), null);
+			}
+			pipeline.await();
+		});
+	}
+
+	private static String chunkPath(String path, String generation, int index) {
+		return path + "/" + generation + "-" + index;
+	}
+
+	/**
+	 * The manifest of a value, stored as the data of the node.
+	 */
+	private static final class Manifest {
+		/** Identifies the data of a node as a manifest, "ZKLV". */
+		private static final int magic = 0x5a4b4c56;
+
+		private final String generation;
+		private final int chunks;
+		private final long size;
+
+		private Manifest(String generation, int chunks, long size) {
+			this.generation = generation;
+			this.chunks = chunks;
+			this.size = size;
+		}
+
+		private static Option<Manifest> parse(byte[] data) {
+			if (data == null || data.length < 16 || ByteBuffer.wrap(data).getInt() != magic) {
+				return None();
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(data, 4, data.length - 4);
+			int chunks = buffer.getInt();
+			long size = buffer.getLong();
+			return Some(new Manifest(new String(data, 16, data.length - 16, StandardCharsets.UTF_8), chunks, size));
+		}
+
+		private byte[] toBytes() {
+			byte[] generationBytes = generation.getBytes(StandardCharsets.UTF_8);
+			return ByteBuffer.allocate(16 + generationBytes.length).putInt(magic).putInt(chunks).putLong(size).put(generationBytes).array();
+		}
+
+		private Stream<String> chunkPaths(String path) {
+			return IntStream.range(0, chunks).mapToObj(index -> chunkPath(path, generation, index));
+		}
+	}
+
+	/**
+	 * Streams the chunks of a value. <br>
+	 * Up to {@link #maxInFlight} chunks are requested ahead of the reader, each consumed chunk triggers the request of the next.
+	 */
+	private static final class ChunkInputStream extends InputStream {
+		private final ZooKeeper zooKeeper;
+		private final String path;
+		private final Manifest manifest;
+		private final Queue<Promise<byte[]>> requested = new ArrayDeque<>();
+		private int nextRequest = 0;
+		private byte[] chunk = empty;
+		private int position = 0;
+		private long bytesRead = 0;
+
+		private ChunkInputStream(ZooKeeper zooKeeper, String path, Manifest manifest) {
+			this.zooKeeper = zooKeeper;
+			this.path = path;
+			this.manifest = manifest;
+			while (nextRequest < Math.min(maxInFlight, manifest.chunks)) {
+				requestNext();
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.InputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			return nextChunk() ? chunk[position++] & 0xff : -1;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			if (!nextChunk()) {
+				return -1;
+			}
+			int count = Math.min(length, chunk.length - position);
+			System.arraycopy(chunk, position, buffer, offset, count);
+			position += count;
+			return count;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.InputStream#available()
+		 */
+		@Override
+		public int available() {
+			return chunk.length - position;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.InputStream#close()
+		 */
+		@Override
+		public void close() {
+			// any outstanding requests complete into promises no one waits for
+			requested.clear();
+			nextRequest = manifest.chunks;
+			chunk = empty;
+		}
+
+		/**
+		 * Makes sure there's unread data in the current chunk, waiting for the next chunk if needed.
+		 *
+		 * @return If there's data, false if the value is consumed
+		 */
+		private boolean nextChunk() throws IOException {
+			while (position == chunk.length) {
+				Promise<byte[]> next = requested.poll();
+				if (next == null) {
+					if (bytesRead != manifest.size) {
+						throw new IOException("The value of [" + path + "] is [" + bytesRead + "] bytes, expected [" + manifest.size + "]");
+					}
+					return false;
+				}
+				if (nextRequest < manifest.chunks) {
+					requestNext();
+				}
+				chunk = await(next);
+				position = 0;
+				bytesRead += chunk.length;
+			}
+			return true;
+		}
+
+		private void requestNext() {
+			Promise<byte[]> promise = Promise();
+			requested.add(promise);
+			zooKeeper.getData(chunkPath(path, manifest.generation, nextRequest++), false, (rc, p, ctx, data, stat) -> {
+				if (rc == Code.OK.intValue()) {
+					promise.success(data == null ? empty : data);
+				} else {
+					promise.failure(KeeperException.create(Code.get(rc), p));
+				}
+			}, null);
+		}
+
+		private byte[] await(Promise<byte[]> promise) throws IOException {
+			try {
+				return promise.future().result(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+			} catch (KeeperException.NoNodeException ex) {
+				throw new IOException("The value of [" + path + "] was replaced while being read", ex);
+			} catch (IOException ex) {
+				throw ex;
+			} catch (Throwable ex) {
+				throw new IOException("Failed to read the value of [" + path + "]", ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies recorded with microsecond resolution. <br>
+ * The values are kept in log-linear buckets, each power of two is split in 64 buckets giving a relative precision of about 1.5% across the whole
+ * range. <br>
+ * Recording is lock-free and can be done concurrently from any number of threads, the memory footprint is fixed regardless of the number of recorded
+ * values.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class LatencyHistogram {
+
+	/** The number of bits used for the linear sub-buckets. */
+	private static final int subBucketBits = 7;
+
+	/** Values below this are recorded with exact precision. */
+	private static final int subBucketCount = 1 << subBucketBits;
+
+	private static final int subBucketHalfCount = subBucketCount / 2;
+
+	/** Enough buckets to cover any positive long value. */
+	private static final int bucketCount = subBucketCount + (63 - subBucketBits) * subBucketHalfCount;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(bucketCount);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param latency
+	 *            The latency in nanoseconds, negative values are recorded as zero
+	 */
+	void record(long latency) {
+		long micros = Math.max(0, latency / 1000);
+		buckets.incrementAndGet(index(micros));
+		count.incrementAndGet();
+		sum.addAndGet(micros);
+		min.accumulateAndGet(micros, Math::min);
+		max.accumulateAndGet(micros, Math::max);
+	}
+
+	/**
+	 * The number of recorded latencies.
+	 *
+	 * @return The count
+	 * @since 1.3
+	 */
+	public long count() {
+		return count.get();
+	}
+
+	/**
+	 * The lowest recorded latency.
+	 *
+	 * @return The latency, zero if nothing is recorded
+	 * @since 1.3
+	 */
+	public Duration min() {
+		return count() == 0 ? Duration.ZERO : micros(min.get());
+	}
+
+	/**
+	 * The highest recorded latency.
+	 *
+	 * @return The latency, zero if nothing is recorded
+	 * @since 1.3
+	 */
+	public Duration max() {
+		return micros(max.get());
+	}
+
+	/**
+	 * The mean of all recorded latencies.
+	 *
+	 * @return The latency, zero if nothing is recorded
+	 * @since 1.3
+	 */
+	public Duration mean() {
+		long count = count();
+		return count == 0 ? Duration.ZERO : micros(sum.get() / count);
+	}
+
+	/**
+	 * The latency at the provided percentile. <br>
+	 * The value is the upper bound of the bucket where the percentile is found, but never higher than the {@link #max() max} latency.
+	 *
+	 * @param percentile
+	 *            The percentile, e.g. 99.9
+	 * @return The latency, zero if nothing is recorded
+	 * @since 1.3
+	 */
+	public Duration percentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("The percentile [" + percentile + "] must be within 0-100");
+		}
+		long count = count();
+		if (count == 0) {
+			return Duration.ZERO;
+		}
+		long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long accumulated = 0;
+		for (int i = 0; i < bucketCount; i++) {
+			accumulated += buckets.get(i);
+			if (accumulated >= target) {
+				return micros(Math.min(highestValue(i), max.get()));
+			}
+		}
+		return max();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("count=%d min=%dus mean=%dus p50=%dus p99=%dus p999=%dus max=%dus", count(), toMicros(min()), toMicros(mean()),
+				toMicros(percentile(50)), toMicros(percentile(99)), toMicros(percentile(99.9)), toMicros(max()));
+	}
+
+	/**
+	 * The bucket for the provided value.
+	 *
+	 * @param value
+	 *            The value
+	 * @return The bucket index
+	 */
+	static int index(long value) {
+		if (value < subBucketCount) {
+			return (int) value;
+		}
+		// shift so the value falls within the upper half of the sub-buckets
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (subBucketBits - 1);
+		return subBucketCount + (shift - 1) * subBucketHalfCount + (int) ((value >> shift) - subBucketHalfCount);
+	}
+
+	/**
+	 * The highest value that is recorded in the provided bucket.
+	 *
+	 * @param index
+	 *            The bucket index
+	 * @return The value
+	 */
+	static long highestValue(int index) {
+		if (index < subBucketCount) {
+			return index;
+		}
+		int shift = (index - subBucketCount) / subBucketHalfCount + 1;
+		long subBucket = (index - subBucketCount) % subBucketHalfCount + subBucketHalfCount;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	private static Duration micros(long micros) {
+		return Duration.ofNanos(micros * 1000);
+	}
+
+	private static long toMicros(Duration duration) {
+		return duration.toNanos() / 1000;
+	}
+}
@@ -0,0 +1,287 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.TryCompanion.Try;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javascalautils.Failure;
+import javascalautils.Option;
+import javascalautils.Success;
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
+
+/**
+ * A ZKInstance that defers the start of the server until it's first used. <br>
+ * {@link #start()} only marks the instance as started, the actual instance is created and started by the first operation needing the server
+ * e.g. {@link #connectString()}, {@link #port()} or {@link #connect()}. <br>
+ * Concurrent first users are serialized so the server is started exactly once, any later user finds it already running. <br>
+ * An instance that is never used neither allocates any port nor any data directory.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class LazyZKInstance implements ZKInstance {
+
+	/** The max time to wait for the deferred start. */
+	private static final Duration startTimeout = Duration.ofSeconds(30);
+
+	/** Creates the actual instance. */
+	private final Supplier<ZKInstance> factory;
+
+	/** The actual instance, created on first use. */
+	private Option<ZKInstance> instance = None();
+
+	/** If {@link #start()} has been invoked. */
+	private boolean startRequested = false;
+
+	/** If the actual instance has been started. */
+	private boolean started = false;
+
+	/**
+	 * @param factory
+	 *            Creates the actual instance
+	 */
+	LazyZKInstance(Supplier<ZKInstance> factory) {
+		this.factory = factory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#start()
+	 */
+	@Override
+	public synchronized Future<Unit> start() {
+		startRequested = true;
+		return Future.successful(Unit.Instance);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#stop()
+	 */
+	@Override
+	public synchronized Future<Unit> stop() {
+		startRequested = false;
+		if (!started) {
+			return Future.successful(Unit.Instance);
+		}
+		started = false;
+		return instance.get().stop();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#destroy()
+	 */
+	@Override
+	public synchronized Future<Unit> destroy() {
+		startRequested = false;
+		started = false;
+		return instance.map(ZKInstance::destroy).getOrElse(() -> Future.successful(Unit.Instance));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#connectString()
+	 */
+	@Override
+	public Option<String> connectString() {
+		return running().asOption().flatMap(ZKInstance::connectString);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#port()
+	 */
+	@Override
+	public Option<Integer> port() {
+		return running().asOption().flatMap(ZKInstance::port);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#connect()
+	 */
+	@Override
+	public Try<CloseableZooKeeper> connect() {
+		return whenRunning(ZKInstance::connect);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#connect(int)
+	 */
+	@Override
+	public Try<List<CloseableZooKeeper>> connect(int sessions) {
+		return whenRunning(zk -> zk.connect(sessions));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#session()
+	 */
+	@Override
+	public Try<CloseableZooKeeper> session() {
+		return whenRunning(ZKInstance::session);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#lease()
+	 */
+	@Override
+	public Try<ZKLease> lease() {
+		return whenRunning(ZKInstance::lease);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#checkpoint()
+	 */
+	@Override
+	public Try<ZKCheckpoint> checkpoint() {
+		return whenRunning(ZKInstance::checkpoint);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#restore(zookeeperjunit.ZKCheckpoint)
+	 */
+	@Override
+	public Try<Unit> restore(ZKCheckpoint checkpoint) {
+		return whenRunning(zk -> zk.restore(checkpoint));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#stats()
+	 */
+	@Override
+	public Try<ZKStats> stats() {
+		return whenRunning(ZKInstance::stats);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#resetStats()
+	 */
+	@Override
+	public Try<Unit> resetStats() {
+		return whenRunning(ZKInstance::resetStats);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#seed(java.nio.file.Path)
+	 */
+	@Override
+	public Try<ZKSeedReport> seed(Path file) {
+		return whenRunning(zk -> zk.seed(file));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#expireSession(long)
+	 */
+	@Override
+	public Try<Unit> expireSession(long sessionId) {
+		return whenRunning(zk -> zk.expireSession(sessionId));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#expireAllSessions()
+	 */
+	@Override
+	public Try<Integer> expireAllSessions() {
+		return whenRunning(ZKInstance::expireAllSessions);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#dropConnections()
+	 */
+	@Override
+	public Try<Unit> dropConnections() {
+		return whenRunning(ZKInstance::dropConnections);
+	}
+
+	/**
+	 * Checks if the actual instance has been created and started.
+	 *
+	 * @return If the instance is started
+	 */
+	synchronized boolean isStarted() {
+		return started;
+	}
+
+	/**
+	 * Applies the function to the actual instance, starting it first if needed.
+	 *
+	 * @param function
+	 *            The function to apply
+	 * @return The result of the function, or a failure if the instance is not started
+	 */
+	private <T> Try<T> whenRunning(Function<ZKInstance, Try<T>> function) {
+		return running().flatMap(function::apply);
+	}
+
+	/**
+	 * Gets the actual instance, creating and starting it if a start has been requested but not yet performed. <br>
+	 * A failed start is retried by the next user.
+	 *
+	 * @return The actual instance, or a failure if not started with the reason of a failed start as the cause
+	 */
+	private synchronized Try<ZKInstance> running() {
+		if (startRequested && !started) {
+			if (instance.isEmpty()) {
+				instance = Option(factory.get());
+			}
+			Try<Unit> result = Try(() -> instance.get().start().result(startTimeout));
+			if (result.isFailure()) {
+				return new Failure<>(new IllegalStateException("Failed to start the ZooKeeper server", result.failed().orNull()));
+			}
+			started = true;
+		}
+		return started ? new Success<>(instance.get()) : new Failure<>(new IllegalStateException("The ZooKeeper server is not running"));
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import javax.management.JMException;
+
+import org.apache.zookeeper.jmx.MBeanRegistry;
+import org.apache.zookeeper.jmx.ZKMBeanInfo;
+
+/**
+ * A JMX registry that never fails the registration of a bean. <br>
+ * The ZooKeeper registry is a JVM singleton built for a single server per JVM. <br>
+ * With several quorum peers in the same JVM a peer may try to register beans under a parent that another peer has
+ * already unregistered, this trips an <code>assert</code> in the registry which with assertions enabled (the default
+ * for Maven Surefire) kills the peer thread during leader election.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class LenientMBeanRegistry extends MBeanRegistry {
+
+	/**
+	 * Installs this registry as the ZooKeeper JMX registry unless already installed.
+	 */
+	static synchronized void install() {
+		if (!(MBeanRegistry.getInstance() instanceof LenientMBeanRegistry)) {
+			MBeanRegistry.setInstance(new LenientMBeanRegistry());
+		}
+	}
+
+	/**
+	 * Registers the bean ignoring any failures. <br>
+	 * A failed registration only means the bean is not visible in JMX.
+	 */
+	@Override
+	public void register(ZKMBeanInfo bean, ZKMBeanInfo parent) throws JMException {
+		try {
+			super.register(bean, parent);
+		} catch (AssertionError | JMException ex) {
+			// deliberately ignored, JMX is not vital for a test server
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Allocates ports that are unique across all threads and all JVMs on the host using this library. <br>
+ * A port is first picked by the O/S and then reserved by holding an exclusive lock on a file named after the port in a
+ * directory shared by all JVMs (<i>java.io.tmpdir/zookeeper-junit-ports</i>). <br>
+ * A port reserved by another thread or JVM is skipped, the lock is held until the port is {@link #release(int) released}
+ * or the JVM exits. <br>
+ * This closes the window between finding a free port and binding it, e.g. a stopped instance keeps its port reserved
+ * so it can be restarted on the same port. <br>
+ * The lock files are intentionally never deleted, deleting a file while another JVM is about to lock it would allow two JVMs to hold a lock for the same port.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class PortAllocator {
+
+	/** The max number of ports to probe before giving up. */
+	private static final int maxAttempts = 100;
+
+	/** The directory holding the lock files. */
+	private static final Path lockDir = Paths.get(System.getProperty("java.io.tmpdir"), "zookeeper-junit-ports");
+
+	/** The ports reserved by this JVM. */
+	private static final Map<Integer, FileLock> reserved = new HashMap<>();
+
+	/**
+	 * Inhibitive constructor.
+	 */
+	private PortAllocator() {
+	}
+
+	/**
+	 * Allocates and reserves a free port.
+	 *
+	 * @return The port
+	 * @throws IOException
+	 *             If failing to find a port that is not reserved
+	 */
+	static synchronized int allocate() throws IOException {
+		Files.createDirectories(lockDir);
+		for (int attempt = 0; attempt < maxAttempts; attempt++) {
+			int port = Util.freePort();
+			if (!reserved.containsKey(port) && tryReserve(port)) {
+				return port;
+			}
+		}
+		throw new IOException("Failed to allocate a free port after [" + maxAttempts + "] attempts");
+	}
+
+	/**
+	 * Reserves a port the caller has already bound, e.g. a port picked by the O/S when binding port <tt>0</tt>. <br>
+	 * Keeps anyone using this class from allocating the port while it's temporarily unbound, e.g. while an instance is restarted.
+	 *
+	 * @param port
+	 *            The port
+	 * @return If the port was reserved, <tt>false</tt> if it's already reserved by someone else
+	 * @throws IOException
+	 *             If failing to access the lock file
+	 */
+	static synchronized boolean reserve(int port) throws IOException {
+		Files.createDirectories(lockDir);
+		return !reserved.containsKey(port) && tryReserve(port);
+	}
+
+	/**
+	 * Releases a port previously {@link #allocate() allocated} or {@link #reserve(int) reserved}. <br>
+	 * Ports not reserved by this JVM are ignored.
+	 *
+	 * @param port
+	 *            The port
+	 */
+	static synchronized void release(int port) {
+		FileLock lock = reserved.remove(port);
+		if (lock != null) {
+			try {
+				lock.channel().close();
+			} catch (IOException ex) {
+				// closing the channel releases the lock, nothing more to do
+			}
+		}
+	}
+
+	/**
+	 * Checks if the provided port is reserved by this JVM.
+	 *
+	 * @param port
+	 *            The port
+	 * @return If the port is reserved
+	 */
+	static synchronized boolean isReserved(int port) {
+		return reserved.containsKey(port);
+	}
+
+	private static boolean tryReserve(int port) throws IOException {
+		FileChannel channel = FileChannel.open(lockDir.resolve(port + ".lock"), CREATE, WRITE);
+		FileLock lock = channel.tryLock();
+		if (lock == null) {
+			// held by another JVM
+			channel.close();
+			return false;
+		}
+		reserved.put(port, lock);
+		return true;
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.TryCompanion.Try;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.ZooKeeper;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+
+/**
+ * Deletes a path and all of its children. <br>
+ * The tree is first enumerated level by level issuing all <tt>getChildren</tt> requests of a level asynchronously. <br>
+ * The nodes are then deleted level by level starting with the deepest, each level using asynchronous <tt>multi</tt> requests of up to {@link #maxBatchSize} nodes. <br>
+ * Should a batch fail it is retried with one delete per node in order to find which nodes that actually failed. <br>
+ * The number of outstanding requests is bounded to {@link #maxInFlight} to not flood the client/server.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class RecursiveDelete {
+
+	/** The max number of outstanding asynchronous requests. */
+	private static final int maxInFlight = 1000;
+
+	/** The max number of deletes in a single multi request. */
+	private static final int maxBatchSize = 500;
+
+	/** The max accumulated path length in a single multi request, keeps the request well below the default jute.maxbuffer (1MB). */
+	private static final int maxBatchBytes = 256 * 1024;
+
+	private final ZooKeeper zooKeeper;
+	private final RequestPipeline pipeline = new RequestPipeline(maxInFlight);
+
+	private RecursiveDelete(ZooKeeper zooKeeper) {
+		this.zooKeeper = zooKeeper;
+	}
+
+	/**
+	 * Deletes the provided path and all of its children. <br>
+	 * Will fail if the path does not exist or ZK is down. <br>
+	 * Children that are deleted concurrently by someone else are ignored, any other failure is reported. <br>
+	 * In case of multiple failures the first is returned with the others added as {@link Throwable#getSuppressed() suppressed}.
+	 *
+	 * @param zooKeeper
+	 *            The connection to use
+	 * @param path
+	 *            The path to delete
+	 * @return The result of the operation
+	 */
+	static Try<Unit> apply(ZooKeeper zooKeeper, String path) {
+		return Try(() -> new RecursiveDelete(zooKeeper).execute(path));
+	}
+
+	private void execute(String path) throws KeeperException, InterruptedException {
+		List<List<String>> levels = enumerate(path);
+		Collections.reverse(levels);
+		for (List<String> level : levels) {
+			deleteLevel(level);
+		}
+		pipeline.throwFailures();
+	}
+
+	/**
+	 * Enumerates all nodes of the tree level by level.
+	 *
+	 * @param path
+	 *            The root of the tree
+	 * @return The levels of the tree with the provided path as the first level
+	 */
+	private List<List<String>> enumerate(String path) throws KeeperException, InterruptedException {
+		List<List<String>> levels = new ArrayList<>();
+		// the root is made synchronously as a non-existing root is to fail the whole operation
+		List<String> level = Collections.singletonList(path);
+		List<String> children = childPaths(path, zooKeeper.getChildren(path, false));
+		while (!level.isEmpty()) {
+			levels.add(level);
+			level = children;
+			children = getChildren(level);
+		}
+		return levels;
+	}
+
+	/**
+	 * Asynchronously gets the children of all the provided paths.
+	 *
+	 * @param paths
+	 *            The paths
+	 * @return The full paths of all children
+	 */
+	private List<String> getChildren(List<String> paths) throws InterruptedException {
+		Queue<String> children = new ConcurrentLinkedQueue<>();
+		for (String path : paths) {
+			pipeline.acquire();
+			zooKeeper.getChildren(path, false, (rc, p, ctx, result) -> {
+				if (rc == Code.OK.intValue()) {
+					children.addAll(childPaths(p, result));
+				} else if (rc != Code.NONODE.intValue()) {
+					pipeline.failure(rc, p);
+				}
+				pipeline.release();
+			}, null);
+		}
+		pipeline.await();
+		return new ArrayList<>(children);
+	}
+
+	/**
+	 * Deletes all the provided paths using multi requests.
+	 *
+	 * @param paths
+	 *            The paths
+	 */
+	private void deleteLevel(List<String> paths) throws InterruptedException {
+		List<Op> batch = new ArrayList<>();
+		int batchBytes = 0;
+		for (String path : paths) {
+			batch.add(Op.delete(path, -1));
+			batchBytes += path.length();
+			if (batch.size() >= maxBatchSize || batchBytes >= maxBatchBytes) {
+				deleteBatch(batch);
+				batch = new ArrayList<>();
+				batchBytes = 0;
+			}
+		}
+		if (!batch.isEmpty()) {
+			deleteBatch(batch);
+		}
+		pipeline.await();
+	}
+
+	private void deleteBatch(List<Op> batch) throws InterruptedException {
+		pipeline.acquire();
+		// a single delete is not worth the overhead of a multi
+		if (batch.size() == 1) {
+			delete(batch.get(0).getPath(), pipeline::release);
+			return;
+		}
+		zooKeeper.multi(batch, (rc, p, ctx, results) -> {
+			if (results != null && rc != Code.OK.intValue()) {
+				// the whole batch is rolled back, retry each node to find which one(s) that failed
+				// this runs on the event thread so it must not block waiting for permits, the retries are only tracked
+				pipeline.track(batch.size());
+				batch.forEach(op -> delete(op.getPath(), pipeline::completed));
+			} else if (rc != Code.OK.intValue()) {
+				// no results means the request never got executed, e.g. connection loss
+				pipeline.failure(rc, p);
+			}
+			pipeline.release();
+		}, null);
+	}
+
+	/**
+	 * Asynchronously deletes a single path.
+	 *
+	 * @param path
+	 *            The path
+	 * @param onComplete
+	 *            Invoked once the delete is completed
+	 */
+	private void delete(String path, Runnable onComplete) {
+		zooKeeper.delete(path, -1, (rc, p, ctx) -> {
+			if (rc != Code.OK.intValue() && rc != Code.NONODE.intValue()) {
+				pipeline.failure(rc, p);
+			}
+			onComplete.run();
+		}, null);
+	}
+
+	private static List<String> childPaths(String parent, List<String> children) {
+		List<String> paths = new ArrayList<>(children.size());
+		for (String child : children) {
+			paths.add(parent.equals("/") ? parent + child : parent + "/" + child);
+		}
+		return paths;
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+
+/**
+ * Book keeping for pipelined asynchronous ZooKeeper requests. <br>
+ * Bounds the number of requests issued by the submitting thread, tracks when all requests are completed and collects the failures.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class RequestPipeline {
+
+	/** Bounds the number of requests issued by the submitting thread. */
+	private final Semaphore inFlight;
+	/** Tracks all outstanding requests, including any requests issued from the event thread. */
+	private final AtomicInteger outstanding = new AtomicInteger();
+	private final Queue<KeeperException> failures = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * @param maxInFlight
+	 *            The max number of outstanding requests issued by the submitting thread
+	 */
+	RequestPipeline(int maxInFlight) {
+		Util.assertLargerThanZero(maxInFlight);
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * Blocks until a request may be issued and registers it as outstanding. <br>
+	 * Once completed the request must be {@link #release() released}.
+	 */
+	void acquire() throws InterruptedException {
+		inFlight.acquire();
+		outstanding.incrementAndGet();
+	}
+
+	/**
+	 * Marks a request issued using {@link #acquire()} as completed.
+	 */
+	void release() {
+		inFlight.release();
+		completed();
+	}
+
+	/**
+	 * Registers requests that are issued without {@link #acquire() acquiring} a permit. <br>
+	 * This is for requests issued from the event thread as it must not block. <br>
+	 * Each such request must be marked as {@link #completed() completed}.
+	 *
+	 * @param requests
+	 *            The number of requests
+	 */
+	void track(int requests) {
+		outstanding.addAndGet(requests);
+	}
+
+	/**
+	 * Marks a request registered using {@link #track(int)} as completed.
+	 */
+	void completed() {
+		if (outstanding.decrementAndGet() == 0) {
+			synchronized (outstanding) {
+				outstanding.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Records a failed request.
+	 *
+	 * @param rc
+	 *            The result code of the request
+	 * @param path
+	 *            The path of the request
+	 */
+	void failure(int rc, String path) {
+		failures.add(KeeperException.create(Code.get(rc), path));
+	}
+
+	/**
+	 * Blocks until all outstanding requests are completed.
+	 */
+	void await() throws InterruptedException {
+		synchronized (outstanding) {
+			while (outstanding.get() > 0) {
+				outstanding.wait();
+			}
+		}
+	}
+
+	/**
+	 * Throws the first recorded failure, if any. <br>
+	 * Any other failures are added as {@link Throwable#getSuppressed() suppressed} to the first.
+	 *
+	 * @throws KeeperException
+	 *             The first failure
+	 */
+	void throwFailures() throws KeeperException {
+		KeeperException failure = failures.poll();
+		if (failure != null) {
+			failures.forEach(failure::addSuppressed);
+			throw failure;
+		}
+	}
+}
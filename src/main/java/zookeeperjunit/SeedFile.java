@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+
+/**
+ * Reads a tree description file used for {@link CloseableZooKeeper#seed(Path) seeding} data. <br>
+ * The file is a UTF-8 text file with one node per line in the format <tt>path=data</tt>, e.g.
+ * 
+ * <pre>
+ * # comments and blank lines are ignored
+ * /app/config/timeout=5000
+ * /app/config/name=my application
+ * /app/locks
+ * </pre>
+ * 
+ * A line without <tt>=</tt> yields a node with empty data, the data is everything after the first <tt>=</tt>. <br>
+ * Missing parents need not be listed, they are created with empty data. <br>
+ * The lines need not be sorted, a parent may be listed after its children.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class SeedFile {
+
+	private static final byte[] empty = new byte[0];
+
+	/**
+	 * Inhibitive constructor.
+	 */
+	private SeedFile() {
+	}
+
+	/**
+	 * Lazily reads the nodes of the provided file. <br>
+	 * The file is read line by line as the stream is consumed, the stream must be closed to release the file.
+	 * 
+	 * @param file
+	 *            The file
+	 * @return The paths and data of the nodes
+	 * @throws IOException
+	 *             If the file could not be opened
+	 */
+	static Stream<Entry<String, byte[]>> read(Path file) throws IOException {
+		return Files.lines(file, UTF_8).filter(line -> !line.trim().isEmpty() && !line.trim().startsWith("#")).map(SeedFile::parse);
+	}
+
+	/**
+	 * Parses a single line.
+	 * 
+	 * @param line
+	 *            The line
+	 * @return The path and data
+	 */
+	static Entry<String, byte[]> parse(String line) {
+		int separator = line.indexOf('=');
+		String path = (separator < 0 ? line : line.substring(0, separator)).trim();
+		if (!path.startsWith("/")) {
+			throw new IllegalArgumentException("Invalid line [" + line + "], the path must be absolute");
+		}
+		byte[] data = separator < 0 ? empty : line.substring(separator + 1).getBytes(UTF_8);
+		return new SimpleImmutableEntry<>(path, data);
+	}
+}
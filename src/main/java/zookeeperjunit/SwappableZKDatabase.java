@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import org.apache.zookeeper.server.DataTree;
+import org.apache.zookeeper.server.ZKDatabase;
+import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+
+/**
+ * A {@link ZKDatabase} that allows for replacing the in-memory data tree of a running server. <br>
+ * Used to {@link ZKInstance#restore(ZKCheckpoint) restore} a {@link ZKCheckpoint}.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class SwappableZKDatabase extends ZKDatabase {
+
+	/** If the database has been given a data tree before the server is started. */
+	private volatile boolean preloaded = false;
+
+	SwappableZKDatabase(FileTxnSnapLog snapLog) {
+		super(snapLog);
+	}
+
+	/**
+	 * Provides the data tree before the server is started. <br>
+	 * The database is then considered initialized meaning the server uses the tree as is instead of loading it from the storage.
+	 *
+	 * @param tree
+	 *            The tree to use
+	 */
+	synchronized void preload(DataTree tree) {
+		dataTree = tree;
+		preloaded = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.apache.zookeeper.server.ZKDatabase#isInitialized()
+	 */
+	@Override
+	public boolean isInitialized() {
+		return preloaded || super.isInitialized();
+	}
+
+	/**
+	 * Replaces the data tree. <br>
+	 * The new tree is stamped with the zxid of the current tree in order for the transaction history to remain consistent.
+	 *
+	 * @param tree
+	 *            The tree to use
+	 */
+	synchronized void swap(DataTree tree) {
+		tree.lastProcessedZxid = dataTree.lastProcessedZxid;
+		dataTree = tree;
+	}
+}
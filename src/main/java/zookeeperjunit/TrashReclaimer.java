@@ -0,0 +1,174 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static javascalautils.TryCompanion.Try;
+import static javascalautils.concurrent.FutureCompanion.Future;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javascalautils.Unit;
+import javascalautils.concurrent.Executor;
+import javascalautils.concurrent.Executors;
+import javascalautils.concurrent.Future;
+
+/**
+ * Discards directories by moving them into a trash directory and deleting them in the background. <br>
+ * The move is a single rename within the same file system, hence it's close to instant regardless of the size of the directory.
+ * The trash directory (<i>zk-trash</i>) is created next to the discarded directory. <br>
+ * The deletes are made by a small pool of daemon threads bounding the amount of concurrent I/O. <br>
+ * A JVM exiting before the deletes are completed leaves its trash behind, such leftovers are {@link #reclaim(File) reclaimed}
+ * the next time an instance is started in the same root directory. <br>
+ * Multiple JVMs may share the same trash, a file deleted by someone else is simply ignored.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class TrashReclaimer {
+
+	/** The name of the trash directory. */
+	static final String trashDirName = "zk-trash";
+
+	/** The max number of directories deleted concurrently. */
+	private static final int maxConcurrentDeletes = 2;
+
+	private static final Executor executor = Executors.createFixedThreadPoolExecutor(maxConcurrentDeletes, runnable -> {
+		Thread thread = new Thread(runnable, "zookeeper-junit-reclaimer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** The trash directories that have been checked for leftovers by this JVM. */
+	private static final Set<File> reclaimed = new HashSet<>();
+
+	/**
+	 * Inhibitive constructor.
+	 */
+	private TrashReclaimer() {
+	}
+
+	/**
+	 * Discards the provided directory. <br>
+	 * Once this method returns the directory no longer exists in its original location, the data is deleted in the background. <br>
+	 * Should the directory not be possible to move it is deleted directly before returning, as the original location may be reused right away. <br>
+	 * Non-existing directories are ignored.
+	 *
+	 * @param dir
+	 *            The directory to discard
+	 * @return The future completed once the data is deleted
+	 */
+	static Future<Unit> discard(File dir) {
+		if (!dir.exists()) {
+			return Future.successful(Unit.Instance);
+		}
+		Path trashed;
+		try {
+			Path trashDir = Files.createDirectories(trashDir(dir.getParentFile()));
+			trashed = Files.move(dir.toPath(), trashDir.resolve(dir.getName() + "." + UUID.randomUUID()), ATOMIC_MOVE);
+		} catch (IOException ex) {
+			// e.g. a file system not supporting atomic moves, a background delete would race with a restart using the same directory
+			return Future.fromTry(Try(() -> deleteTree(dir.toPath())));
+		}
+		return delete(trashed);
+	}
+
+	/**
+	 * Deletes in the background anything left in the trash of the provided directory. <br>
+	 * Each trash directory is only checked once per JVM, anything discarded after that is deleted by the JVM discarding it.
+	 *
+	 * @param rootDir
+	 *            The directory in which the trash directory resides
+	 * @return The future completed once all leftovers are deleted
+	 */
+	static Future<Unit> reclaim(File rootDir) {
+		Path trashDir = trashDir(rootDir);
+		synchronized (reclaimed) {
+			if (!reclaimed.add(trashDir.toFile().getAbsoluteFile()) || !Files.isDirectory(trashDir)) {
+				return Future.successful(Unit.Instance);
+			}
+		}
+		List<Future<Unit>> deletes = new ArrayList<>();
+		try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(trashDir)) {
+			leftovers.forEach(leftover -> deletes.add(delete(leftover)));
+		} catch (IOException ex) {
+			return Future.failed(ex);
+		}
+		return Future.sequence(deletes.stream()).map(s -> Unit.Instance);
+	}
+
+	private static Path trashDir(File rootDir) {
+		return rootDir.toPath().resolve(trashDirName);
+	}
+
+	/**
+	 * Asynchronously deletes the provided path and everything below it.
+	 *
+	 * @param path
+	 *            The path to delete
+	 * @return The future completed once the path is deleted
+	 */
+	private static Future<Unit> delete(Path path) {
+		return Future(() -> deleteTree(path), executor);
+	}
+
+	/**
+	 * Deletes the provided path and everything below it.
+	 *
+	 * @param path
+	 *            The path to delete
+	 */
+	private static void deleteTree(Path path) throws IOException {
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.deleteIfExists(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException ex) throws IOException {
+				// deleted concurrently by someone else
+				if (ex instanceof NoSuchFileException) {
+					return FileVisitResult.CONTINUE;
+				}
+				throw ex;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException {
+				if (ex != null && !(ex instanceof NoSuchFileException)) {
+					throw ex;
+				}
+				Files.deleteIfExists(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
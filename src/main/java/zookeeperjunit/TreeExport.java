@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.TryCompanion.Try;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.ZooKeeper;
+
+import javascalautils.Option;
+import javascalautils.Try;
+import javascalautils.Unit;
+
+/**
+ * Exports a path and all of its children. <br>
+ * The tree is traversed level by level issuing the <tt>getChildren</tt> and <tt>getData</tt> requests of all nodes of a level asynchronously. <br>
+ * Given a previous export of the same tree the data of nodes whose <tt>mzxid</tt> is unchanged is taken from the previous export instead of being
+ * fetched, i.e. only the children and stat of such nodes are requested. <br>
+ * The number of outstanding requests is bounded to {@link #maxInFlight} to not flood the client/server.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class TreeExport {
+
+	/** The max number of outstanding asynchronous requests. */
+	private static final int maxInFlight = 1000;
+
+	private final ZooKeeper zooKeeper;
+	private final String root;
+	private final Option<ZKTree> previous;
+	private final RequestPipeline pipeline = new RequestPipeline(maxInFlight);
+
+	private TreeExport(ZooKeeper zooKeeper, String root, Option<ZKTree> previous) {
+		this.zooKeeper = zooKeeper;
+		this.root = root;
+		this.previous = previous;
+	}
+
+	/**
+	 * Exports the provided path and all of its children. <br>
+	 * The nodes are passed to the consumer level by level, sorted on path within each level. The consumer is invoked by the calling thread. <br>
+	 * Will fail if the path does not exist or ZK is down, children that are deleted concurrently are ignored. <br>
+	 * In case of multiple failures the first is returned with the others added as {@link Throwable#getSuppressed() suppressed}.
+	 *
+	 * @param zooKeeper
+	 *            The connection to use
+	 * @param path
+	 *            The path to export
+	 * @param previous
+	 *            A previous export of the same path, used to avoid fetching unchanged data
+	 * @param consumer
+	 *            Receives the exported nodes
+	 * @return The result of the operation
+	 */
+	static Try<Unit> apply(ZooKeeper zooKeeper, String path, Option<ZKTree> previous, Consumer<ZKNode> consumer) {
+		return Try(() -> new TreeExport(zooKeeper, path, previous).execute(consumer));
+	}
+
+	private void execute(Consumer<ZKNode> consumer) throws KeeperException, InterruptedException {
+		// the root is checked synchronously as a non-existing root is to fail the whole operation
+		if (zooKeeper.exists(root, false) == null) {
+			throw KeeperException.create(Code.NONODE, root);
+		}
+		List<String> level = new ArrayList<>();
+		level.add(root);
+		while (!level.isEmpty()) {
+			Queue<ZKNode> nodes = new ConcurrentLinkedQueue<>();
+			Queue<String> children = new ConcurrentLinkedQueue<>();
+			for (String path : level) {
+				fetch(path, nodes, children);
+			}
+			pipeline.await();
+			pipeline.throwFailures();
+			nodes.stream().sorted(Comparator.comparing(ZKNode::path)).forEach(consumer);
+			level = new ArrayList<>(children);
+		}
+	}
+
+	/**
+	 * Asynchronously fetches the children and data of a single node.
+	 *
+	 * @param path
+	 *            The path of the node
+	 * @param nodes
+	 *            Receives the node
+	 * @param children
+	 *            Receives the full paths of the children of the node
+	 */
+	private void fetch(String path, Queue<ZKNode> nodes, Queue<String> children) throws InterruptedException {
+		pipeline.acquire();
+		zooKeeper.getChildren(path, false, (rc, p, ctx, names, stat) -> {
+			if (rc == Code.OK.intValue()) {
+				names.forEach(name -> children.add(p.equals("/") ? "/" + name : p + "/" + name));
+				String relativePath = relativePath(p);
+				Option<ZKNode> unchanged = previous.flatMap(tree -> tree.node(relativePath))
+						.filter(node -> node.stat().exists(previousStat -> previousStat.getMzxid() == stat.getMzxid()));
+				if (unchanged.isDefined()) {
+					nodes.add(new ZKNode(relativePath, unchanged.get().data(), Some(stat)));
+				} else {
+					// this runs on the event thread so it must not block waiting for permits, the request is only tracked
+					pipeline.track(1);
+					zooKeeper.getData(p, false, (dataRc, dataPath, dataCtx, data, dataStat) -> {
+						if (dataRc == Code.OK.intValue()) {
+							nodes.add(new ZKNode(relativePath, data == null ? new byte[0] : data, Some(dataStat)));
+						} else if (dataRc != Code.NONODE.intValue()) {
+							pipeline.failure(dataRc, dataPath);
+						}
+						pipeline.completed();
+					}, null);
+				}
+			} else if (rc != Code.NONODE.intValue()) {
+				pipeline.failure(rc, p);
+			}
+			pipeline.release();
+		}, null);
+	}
+
+	private String relativePath(String path) {
+		if (path.equals(root)) {
+			return "/";
+		}
+		return root.equals("/") ? path : path.substring(root.length());
+	}
+}
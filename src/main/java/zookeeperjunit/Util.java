@@ -15,6 +15,12 @@
  */
 package zookeeperjunit;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+
 /**
  * Utility with helper methods.
  * 
@@ -40,4 +46,55 @@ final class Util {
 			throw new IllegalArgumentException("Only positive numbers are allowed");
 		}
 	}
+
+	/**
+	 * Asserts that the provided integer is > 0. <br>
+	 * Throws a IllegalArgumentException if the assert fails.
+	 * 
+	 * @param i
+	 *            The integer to assert
+	 */
+	static void assertLargerThanZero(int i) {
+		if (i < 1) {
+			throw new IllegalArgumentException("Only numbers larger than zero are allowed");
+		}
+	}
+
+	/**
+	 * Creates a new uniquely named directory. <br>
+	 * The name is randomly generated and the directory atomically created, hence it's unique across all threads and JVMs
+	 * even if created at the very same time. <br>
+	 * The parent directory is created if missing.
+	 * 
+	 * @param parent
+	 *            The directory in which to create the directory
+	 * @param prefix
+	 *            The prefix of the directory name
+	 * @return The created directory
+	 * @throws UncheckedIOException
+	 *             If failing to create the directory
+	 */
+	static File createUniqueDir(File parent, String prefix) {
+		try {
+			Files.createDirectories(parent.toPath());
+			return Files.createTempDirectory(parent.toPath(), prefix).toFile();
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Failed to create a directory in [" + parent.getAbsolutePath() + "]", ex);
+		}
+	}
+
+	/**
+	 * Finds a free port by letting the O/S assign one. <br>
+	 * The port is released before returning, this is for the cases where the port needs to be known before the listening socket is created.
+	 * 
+	 * @return A free port
+	 * @throws IOException
+	 *             If failing to open a socket
+	 */
+	static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			socket.setReuseAddress(true);
+			return socket.getLocalPort();
+		}
+	}
 }
@@ -0,0 +1,53 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+/**
+ * A {@link ZooKeeperServer} tracking sessions using a {@link ZKClock} instead of the wall clock.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class VirtualClockServer extends ZooKeeperServer {
+
+	private final ZKClock clock;
+
+	VirtualClockServer(ZKClock clock) {
+		this.clock = clock;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.ZooKeeperServer#createSessionTracker()
+	 */
+	@Override
+	protected void createSessionTracker() {
+		sessionTracker = new VirtualSessionTracker(this, getZKDatabase().getSessionWithTimeOuts(), tickTime, clock);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.ZooKeeperServer#startSessionTracker()
+	 */
+	@Override
+	protected void startSessionTracker() {
+		// there's no thread to start, the sessions are expired as the clock is advanced
+	}
+}
@@ -0,0 +1,276 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.zookeeper.KeeperException.SessionExpiredException;
+import org.apache.zookeeper.KeeperException.SessionMovedException;
+import org.apache.zookeeper.server.SessionTracker;
+import org.apache.zookeeper.server.SessionTrackerImpl;
+
+/**
+ * A {@link SessionTracker} driven by a {@link ZKClock} instead of the wall clock. <br>
+ * Behaves as the standard tracker, the expiry time of a session is set to the current time plus its timeout rounded up to the next tick
+ * each time the session is touched. <br>
+ * There's no thread checking for expired sessions, instead sessions are expired as the clock is {@link #advance(long) advanced}.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class VirtualSessionTracker implements SessionTracker {
+
+	/** The max time to wait for expired sessions to be removed by the server. */
+	private static final Duration expireTimeout = Duration.ofSeconds(10);
+
+	private final SessionExpirer expirer;
+	private final ZKClock clock;
+	private final int tickTime;
+	private final Map<Long, VirtualSession> sessions = new HashMap<>();
+	/** The sessions and their timeouts, owned by the database of the server. */
+	private final ConcurrentHashMap<Long, Integer> sessionsWithTimeout;
+	private long nextSessionId;
+	private boolean running = true;
+
+	/**
+	 * @param expirer
+	 *            Invoked for each expired session, i.e. the server
+	 * @param sessionsWithTimeout
+	 *            The sessions and their timeouts, any sessions already in the map are tracked from the current time
+	 * @param tickTime
+	 *            The tick time in milliseconds
+	 * @param clock
+	 *            The clock
+	 */
+	VirtualSessionTracker(SessionExpirer expirer, ConcurrentHashMap<Long, Integer> sessionsWithTimeout, int tickTime, ZKClock clock) {
+		this.expirer = expirer;
+		this.sessionsWithTimeout = sessionsWithTimeout;
+		this.tickTime = tickTime;
+		this.clock = clock;
+		// the id is based on the server id which is 1 for a standalone server
+		this.nextSessionId = SessionTrackerImpl.initializeNextSession(1);
+		sessionsWithTimeout.forEach(this::addSession);
+		clock.register(this);
+	}
+
+	/**
+	 * Expires all sessions whose expiry time has passed. <br>
+	 * Blocks until the server has removed the expired sessions.
+	 * 
+	 * @param now
+	 *            The current time of the clock
+	 */
+	void advance(long now) {
+		List<VirtualSession> expired = new ArrayList<>();
+		synchronized (this) {
+			for (VirtualSession session : sessions.values()) {
+				if (!session.closing && session.expiryTime <= now) {
+					session.closing = true;
+					expired.add(session);
+				}
+			}
+		}
+		// the expirer submits a close request to the server, that in turn invokes this tracker
+		expired.forEach(expirer::expire);
+		awaitRemoved(expired);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#createSession(int)
+	 */
+	@Override
+	public synchronized long createSession(int sessionTimeout) {
+		addSession(nextSessionId, sessionTimeout);
+		return nextSessionId++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#addSession(long, int)
+	 */
+	@Override
+	public synchronized void addSession(long id, int sessionTimeout) {
+		sessionsWithTimeout.put(id, sessionTimeout);
+		sessions.computeIfAbsent(id, k -> new VirtualSession(id, sessionTimeout));
+		touchSession(id, sessionTimeout);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#touchSession(long, int)
+	 */
+	@Override
+	public synchronized boolean touchSession(long sessionId, int sessionTimeout) {
+		VirtualSession session = sessions.get(sessionId);
+		if (session == null || session.closing) {
+			return false;
+		}
+		session.expiryTime = roundToTick(clock.millis() + sessionTimeout);
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#setSessionClosing(long)
+	 */
+	@Override
+	public synchronized void setSessionClosing(long sessionId) {
+		VirtualSession session = sessions.get(sessionId);
+		if (session != null) {
+			session.closing = true;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#removeSession(long)
+	 */
+	@Override
+	public synchronized void removeSession(long sessionId) {
+		sessions.remove(sessionId);
+		sessionsWithTimeout.remove(sessionId);
+		notifyAll();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#shutdown()
+	 */
+	@Override
+	public synchronized void shutdown() {
+		running = false;
+		clock.unregister(this);
+		notifyAll();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#checkSession(long, java.lang.Object)
+	 */
+	@Override
+	public synchronized void checkSession(long sessionId, Object owner) throws SessionExpiredException, SessionMovedException {
+		VirtualSession session = sessions.get(sessionId);
+		if (session == null || session.closing) {
+			throw new SessionExpiredException();
+		}
+		if (session.owner == null) {
+			session.owner = owner;
+		} else if (session.owner != owner) {
+			throw new SessionMovedException();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#setOwner(long, java.lang.Object)
+	 */
+	@Override
+	public synchronized void setOwner(long sessionId, Object owner) throws SessionExpiredException {
+		VirtualSession session = sessions.get(sessionId);
+		if (session == null || session.closing) {
+			throw new SessionExpiredException();
+		}
+		session.owner = owner;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.zookeeper.server.SessionTracker#dumpSessions(java.io.PrintWriter)
+	 */
+	@Override
+	public synchronized void dumpSessions(PrintWriter pwriter) {
+		pwriter.print("Session Sets (");
+		pwriter.print(sessions.size());
+		pwriter.println("):");
+		sessions.values().forEach(session -> pwriter.println("\t0x" + Long.toHexString(session.sessionId) + " expires at " + session.expiryTime));
+	}
+
+	/**
+	 * Blocks until the provided sessions are removed or the tracker is shut down.
+	 * 
+	 * @param expired
+	 *            The sessions
+	 */
+	private synchronized void awaitRemoved(List<VirtualSession> expired) {
+		long deadline = System.currentTimeMillis() + expireTimeout.toMillis();
+		while (running && expired.stream().anyMatch(session -> sessions.get(session.sessionId) == session)) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				throw new IllegalStateException("The expired sessions were not closed within [" + expireTimeout + "]");
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Rounds the time up to the next tick, as the standard tracker the sessions expire on tick boundaries.
+	 */
+	private long roundToTick(long time) {
+		return (time / tickTime + 1) * tickTime;
+	}
+
+	/**
+	 * A tracked session.
+	 */
+	private static final class VirtualSession implements Session {
+		private final long sessionId;
+		private final int timeout;
+		private long expiryTime;
+		private boolean closing = false;
+		private Object owner;
+
+		private VirtualSession(long sessionId, int timeout) {
+			this.sessionId = sessionId;
+			this.timeout = timeout;
+		}
+
+		@Override
+		public long getSessionId() {
+			return sessionId;
+		}
+
+		@Override
+		public int getTimeout() {
+			return timeout;
+		}
+
+		@Override
+		public boolean isClosing() {
+			return closing;
+		}
+	}
+}
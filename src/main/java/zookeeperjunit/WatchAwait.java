@@ -0,0 +1,207 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.TryCompanion.Try;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+
+/**
+ * Waits for a condition on ZooKeeper data to be met. <br>
+ * The condition is checked with watches set, it is then only checked again once a watch is triggered. <br>
+ * I.e. there is no polling, the wait ends as soon as the change that meets the condition has been notified to the client. <br>
+ * The client keeps a watch registered until it's triggered, also after the wait has ended. <br>
+ * To not pile up a watcher per wait on paths that never change, each session reuses one {@link Watchers watcher per path}.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class WatchAwait {
+
+	/**
+	 * A condition on ZooKeeper data.
+	 */
+	@FunctionalInterface
+	interface Condition {
+		/**
+		 * Checks the condition, setting watches using the provided watcher on all data that may change the outcome.
+		 *
+		 * @param zooKeeper
+		 *            The connection to use
+		 * @param watcher
+		 *            The watcher to set
+		 * @return If the condition is met
+		 */
+		boolean check(ZooKeeper zooKeeper, Watcher watcher) throws KeeperException, InterruptedException;
+	}
+
+	/**
+	 * The watchers of a session, one per path waited on. <br>
+	 * The client registers a watcher only once per path, hence the number of registered watchers is bounded by the number of paths waited on.
+	 */
+	static final class Watchers {
+		private final ConcurrentMap<String, PathWatcher> watchers = new ConcurrentHashMap<>();
+
+		private PathWatcher watcher(String path) {
+			return watchers.computeIfAbsent(path, p -> new PathWatcher());
+		}
+	}
+
+	/**
+	 * Notifies all threads currently waiting on a path.
+	 */
+	private static final class PathWatcher implements Watcher {
+		private final Set<Semaphore> waiters = ConcurrentHashMap.newKeySet();
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see org.apache.zookeeper.Watcher#process(org.apache.zookeeper.WatchedEvent)
+		 */
+		@Override
+		public void process(WatchedEvent event) {
+			waiters.forEach(Semaphore::release);
+		}
+	}
+
+	/**
+	 * Inhibitive constructor.
+	 */
+	private WatchAwait() {
+	}
+
+	/**
+	 * Waits for the provided condition to be met.
+	 *
+	 * @param zooKeeper
+	 *            The connection to use
+	 * @param watchers
+	 *            The watchers of the session
+	 * @param path
+	 *            The path the condition sets its watches on
+	 * @param description
+	 *            Description of the condition, used in case of timeout
+	 * @param timeout
+	 *            The max time to wait
+	 * @param condition
+	 *            The condition
+	 * @return Success once the condition is met, Failure(TimeoutException) if not met in time or any other Failure if checking the condition failed
+	 */
+	static Try<Unit> apply(ZooKeeper zooKeeper, Watchers watchers, String path, String description, Duration timeout, Condition condition) {
+		return Try(() -> {
+			long deadline = System.nanoTime() + timeout.toNanos();
+			Semaphore changed = new Semaphore(0);
+			PathWatcher watcher = watchers.watcher(path);
+			watcher.waiters.add(changed);
+			try {
+				while (!condition.check(zooKeeper, watcher)) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0 || !changed.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+						throw new TimeoutException("The condition [" + description + "] was not met within [" + timeout + "]");
+					}
+					// several watches may have triggered, one check covers them all
+					changed.drainPermits();
+				}
+			} finally {
+				watcher.waiters.remove(changed);
+			}
+		});
+	}
+
+	/**
+	 * Condition for a node to exist.
+	 *
+	 * @param path
+	 *            The path
+	 * @return The condition
+	 */
+	static Condition exists(String path) {
+		return (zooKeeper, watcher) -> zooKeeper.exists(path, watcher) != null;
+	}
+
+	/**
+	 * Condition for a node to not exist.
+	 *
+	 * @param path
+	 *            The path
+	 * @return The condition
+	 */
+	static Condition notExists(String path) {
+		return (zooKeeper, watcher) -> zooKeeper.exists(path, watcher) == null;
+	}
+
+	/**
+	 * Condition for a node to exist with the provided data.
+	 *
+	 * @param path
+	 *            The path
+	 * @param data
+	 *            The expected data
+	 * @return The condition
+	 */
+	static Condition data(String path, byte[] data) {
+		return (zooKeeper, watcher) -> {
+			// the exists watch is triggered both on create, delete and data changes
+			if (zooKeeper.exists(path, watcher) == null) {
+				return false;
+			}
+			try {
+				return Arrays.equals(data, zooKeeper.getData(path, false, null));
+			} catch (KeeperException.NoNodeException ex) {
+				// deleted after the exists, the watch has already been triggered
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Condition for a node to exist with the provided number of children.
+	 *
+	 * @param path
+	 *            The path
+	 * @param count
+	 *            The expected number of children
+	 * @return The condition
+	 */
+	static Condition childCount(String path, int count) {
+		return (zooKeeper, watcher) -> {
+			if (zooKeeper.exists(path, watcher) == null) {
+				return false;
+			}
+			try {
+				return zooKeeper.getChildren(path, watcher).size() == count;
+			} catch (KeeperException.NoNodeException ex) {
+				// deleted after the exists, the watch has already been triggered
+				return false;
+			}
+		};
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.concurrent.FutureCompanion.Future;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jute.BinaryInputArchive;
+import org.apache.jute.BinaryOutputArchive;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.server.DataTree;
+
+import javascalautils.concurrent.Future;
+
+/**
+ * A point-in-time copy of the data in a {@link ZKInstance}. <br>
+ * Created using {@link ZKInstance#checkpoint()} and used with {@link ZKInstance#restore(ZKCheckpoint)} to reset the instance to the captured data. <br>
+ * The checkpoint is immutable and can be restored any number of times. <br>
+ * To make a restore a mere swap of references the checkpoint always keeps one spare copy of the data prepared in the background. <br>
+ * Consequently a checkpoint occupies roughly twice the memory of the data it represents.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKCheckpoint {
+
+	/** The max time to wait for the spare copy to be prepared. */
+	private static final Duration prepareTimeout = Duration.ofMinutes(1);
+
+	/** The serialized data tree. */
+	private final byte[] data;
+
+	/** The zxid of the data tree at the time of the checkpoint. */
+	private final long zxid;
+
+	/** The number of nodes in the data tree. */
+	private final int nodeCount;
+
+	/** The copy of the data tree to be used in the next restore. */
+	private Future<DataTree> spare;
+
+	private ZKCheckpoint(byte[] data, long zxid, int nodeCount) {
+		this.data = data;
+		this.zxid = zxid;
+		this.nodeCount = nodeCount;
+		this.spare = prepare();
+	}
+
+	/**
+	 * Creates a checkpoint of the provided tree.
+	 *
+	 * @param tree
+	 *            The tree to capture
+	 * @return The checkpoint
+	 * @throws IOException
+	 */
+	static ZKCheckpoint of(DataTree tree) throws IOException {
+		long zxid = tree.lastProcessedZxid;
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(baos)) {
+			tree.serialize(BinaryOutputArchive.getArchive(out), "tree");
+		}
+		return new ZKCheckpoint(baos.toByteArray(), zxid, tree.getNodeCount());
+	}
+
+	/**
+	 * The zxid of the last transaction captured by this checkpoint.
+	 *
+	 * @return The zxid
+	 * @since 1.3
+	 */
+	public long zxid() {
+		return zxid;
+	}
+
+	/**
+	 * The number of nodes captured by this checkpoint.
+	 *
+	 * @return The node count
+	 * @since 1.3
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Takes the prepared copy of the data tree and starts preparing a new one for the next restore. <br>
+	 * Should the spare copy not yet be ready this blocks until it is.
+	 *
+	 * @return The data tree
+	 * @throws Throwable
+	 *             If the spare copy could not be prepared
+	 */
+	synchronized DataTree take() throws Throwable {
+		DataTree tree = spare.result(prepareTimeout);
+		spare = prepare();
+		return tree;
+	}
+
+	/**
+	 * Asynchronously creates a new copy of the data tree.
+	 *
+	 * @return The future copy
+	 */
+	private Future<DataTree> prepare() {
+		return Future(() -> {
+			DataTree tree = new DataTree();
+			try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+				tree.deserialize(BinaryInputArchive.getArchive(in), "tree");
+			}
+			removeEphemerals(tree);
+			return tree;
+		});
+	}
+
+	/**
+	 * Removes all ephemeral nodes from the tree. <br>
+	 * The sessions owning them are not part of the checkpoint hence the nodes would never be removed.
+	 *
+	 * @param tree
+	 *            The tree
+	 */
+	private void removeEphemerals(DataTree tree) throws IOException {
+		for (Long session : new ArrayList<>(tree.getSessions())) {
+			List<String> paths = new ArrayList<>(tree.getEphemerals(session));
+			for (String path : paths) {
+				try {
+					tree.deleteNode(path, zxid);
+				} catch (KeeperException.NoNodeException ex) {
+					throw new IOException("Inconsistent ephemeral node [" + path + "] in checkpoint", ex);
+				}
+			}
+			tree.getEphemeralsMap().remove(session);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A virtual clock driving the notion of time of ZooKeeper instances. <br>
+ * The session tracking of an instance {@link ZKFactory#withClock(ZKClock) created with a clock} does not follow the wall clock, 
+ * time only passes when the test {@link #advance(Duration) advances} the clock. <br>
+ * Sessions not touched by a client (i.e. no requests/pings) for longer than their timeout expire as the clock is advanced past their expiry,
+ * while sessions never expire as long as the clock is left as is. <br>
+ * This allows for testing session expiry without waiting out the session timeouts, e.g. advancing the clock an hour takes no longer than advancing it a second. <br>
+ * Only the server side is affected, the ZooKeeper client still detects a lost connection using the wall clock. <br>
+ * Example of usage:
+ * 
+ * <pre>
+ * ZKClock clock = ZKClock.apply();
+ * ZKInstance instance = ZKFactory.apply().withClock(clock).create();
+ * ...
+ * // expires all sessions that have been idle, e.g. due to a lost connection
+ * clock.advance(Duration.ofHours(1));
+ * </pre>
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKClock {
+
+	/** The session trackers of the instances currently running on this clock. */
+	private final List<VirtualSessionTracker> trackers = new CopyOnWriteArrayList<>();
+
+	/** The elapsed time in milliseconds, only written while advancing but read lock free as the trackers read it while the clock is advancing. */
+	private volatile long millis = 0;
+
+	private ZKClock() {
+	}
+
+	/**
+	 * Creates a clock starting at zero.
+	 * 
+	 * @return The clock
+	 * @since 1.3
+	 */
+	public static ZKClock apply() {
+		return new ZKClock();
+	}
+
+	/**
+	 * The time elapsed since the clock was created, i.e. the sum of all advances.
+	 * 
+	 * @return The elapsed time
+	 * @since 1.3
+	 */
+	public Duration elapsed() {
+		return Duration.ofMillis(millis);
+	}
+
+	/**
+	 * Advances the clock. <br>
+	 * All sessions whose timeout has passed are expired, the operation returns once the expired sessions have been closed by the servers
+	 * i.e. their ephemeral nodes are deleted. <br>
+	 * The clock is advanced in a single step, a client that would have pinged its session in between does not prevent it from expiring. 
+	 * To simulate time passing for sessions of connected clients advance the clock in steps shorter than the session timeout.
+	 * 
+	 * @param duration
+	 *            The duration to advance the clock with
+	 * @return The elapsed time after advancing
+	 * @since 1.3
+	 */
+	public synchronized Duration advance(Duration duration) {
+		if (duration.isNegative()) {
+			throw new IllegalArgumentException("The clock cannot be turned back [" + duration + "]");
+		}
+		millis += duration.toMillis();
+		trackers.forEach(tracker -> tracker.advance(millis));
+		return elapsed();
+	}
+
+	/**
+	 * The elapsed time in milliseconds.
+	 * 
+	 * @return The time
+	 */
+	long millis() {
+		return millis;
+	}
+
+	/**
+	 * Registers a session tracker to be notified when the clock is advanced.
+	 * 
+	 * @param tracker
+	 *            The tracker
+	 */
+	void register(VirtualSessionTracker tracker) {
+		trackers.add(tracker);
+	}
+
+	/**
+	 * Unregisters a session tracker, invoked when the tracker is shut down.
+	 * 
+	 * @param tracker
+	 *            The tracker
+	 */
+	void unregister(VirtualSessionTracker tracker) {
+		trackers.remove(tracker);
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.util.List;
+
+import javascalautils.Option;
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
+
+/**
+ * Represents an ensemble (quorum) of ZooKeeper instances running in this JVM. <br>
+ * The life-cycle of the whole ensemble is controlled from here, the individual {@link #members() members} can be stopped/started
+ * separately to simulate failing nodes.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public interface ZKEnsemble {
+
+	/**
+	 * Starts all members of the ensemble. <br>
+	 * This is a non-blocking operation and returns a {@link Future} that will be completed once all members are started and a leader
+	 * has been elected.
+	 *
+	 * @return The future that will be completed once the ensemble is started.
+	 * @since 1.3
+	 */
+	Future<Unit> start();
+
+	/**
+	 * Stops all members of the ensemble. <br>
+	 * Data on disc is not destroyed meaning that the ensemble can be {@link #start() started} again.
+	 *
+	 * @return The future that will be completed once the ensemble is stopped.
+	 * @since 1.3
+	 */
+	Future<Unit> stop();
+
+	/**
+	 * Stops and destroys all members of the ensemble. <br>
+	 * Data on disc is destroyed meaning that invoking {@link #start() start} again will yield an empty database.
+	 *
+	 * @return The future that will be completed once the ensemble is destroyed.
+	 * @since 1.3
+	 */
+	Future<Unit> destroy();
+
+	/**
+	 * Get the combined connect string [host:port,host:port,...] to all members of the ensemble.
+	 *
+	 * @return {@link javascalautils.Some} containing the connect string if any member is started, {@link javascalautils.None} if
+	 *         no member is started
+	 * @since 1.3
+	 */
+	Option<String> connectString();
+
+	/**
+	 * Get the members of the ensemble. <br>
+	 * Each member can be individually stopped/started.
+	 *
+	 * @return The members in the order of their server id
+	 * @since 1.3
+	 */
+	List<ZKInstance> members();
+
+	/**
+	 * Get the member currently acting as leader of the ensemble.
+	 *
+	 * @return {@link javascalautils.Some} containing the leader, {@link javascalautils.None} if there currently is no leader
+	 * @since 1.3
+	 */
+	Option<ZKInstance> leader();
+
+	/**
+	 * Attempts to create a connection towards the running ensemble using the {@link #connectString() combined connect string}.
+	 *
+	 * @return A Success with the connection or a Failure in case a connection could not be established
+	 * @since 1.3
+	 */
+	Try<CloseableZooKeeper> connect();
+}
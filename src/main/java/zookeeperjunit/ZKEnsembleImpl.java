@@ -0,0 +1,207 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.TryCompanion.Try;
+import static javascalautils.concurrent.FutureCompanion.Future;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.apache.zookeeper.server.quorum.QuorumPeer.LearnerType;
+import org.apache.zookeeper.server.quorum.QuorumPeer.QuorumServer;
+
+import javascalautils.Failure;
+import javascalautils.Option;
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
+
+/**
+ * Implements the ZKEnsemble.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class ZKEnsembleImpl implements ZKEnsemble {
+
+	/** The max time to wait for the ensemble to elect a leader and get in sync. */
+	private static final Duration quorumTimeout = Duration.ofSeconds(30);
+
+	/** This is the root dir where all ZK data is stored for this ensemble. */
+	private final File rootZooDir;
+
+	private final List<ZKEnsembleMember> members;
+
+	/** The client, quorum and election ports of all members, reserved until the ensemble is destroyed. */
+	private final List<Integer> ports = new ArrayList<>();
+
+	/**
+	 * Creates the ensemble allocating client, quorum and election ports for all members. <br>
+	 * The port setting is not applicable, all other settings are applied to each member.
+	 *
+	 * @param size
+	 *            The number of members
+	 * @param settings
+	 *            The settings of the members
+	 * @throws IOException
+	 *             If failing to allocate ports
+	 */
+	ZKEnsembleImpl(int size, ZKServerSettings settings) throws IOException {
+		// multiple peers in the same JVM don't play well with the default JMX registry
+		LenientMBeanRegistry.install();
+		rootZooDir = Util.createUniqueDir(settings.rootDir, "zk-ensemble-");
+		Map<Long, QuorumServer> view = new HashMap<>();
+		for (long id = 1; id <= size; id++) {
+			view.put(id, new QuorumServer(id, "127.0.0.1", allocatePort(), allocatePort(), LearnerType.PARTICIPANT));
+		}
+		List<ZKEnsembleMember> list = new ArrayList<>();
+		for (long id = 1; id <= size; id++) {
+			list.add(new ZKEnsembleMember(id, rootZooDir, view, allocatePort(), settings));
+		}
+		this.members = Collections.unmodifiableList(list);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKEnsemble#start()
+	 */
+	@Override
+	public Future<Unit> start() {
+		return Future(() -> {
+			TrashReclaimer.reclaim(rootZooDir.getParentFile());
+			for (ZKEnsembleMember member : members) {
+				member.start().result(quorumTimeout);
+			}
+			awaitQuorum();
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKEnsemble#stop()
+	 */
+	@Override
+	public Future<Unit> stop() {
+		return Future(() -> {
+			for (ZKEnsembleMember member : members) {
+				Try(() -> member.stop().result(quorumTimeout));
+			}
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKEnsemble#destroy()
+	 */
+	@Override
+	public Future<Unit> destroy() {
+		return Future(() -> {
+			for (ZKEnsembleMember member : members) {
+				Try(() -> member.destroy().result(quorumTimeout));
+			}
+			TrashReclaimer.discard(rootZooDir);
+			ports.forEach(PortAllocator::release);
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKEnsemble#connectString()
+	 */
+	@Override
+	public Option<String> connectString() {
+		if (members.stream().noneMatch(ZKEnsembleMember::isStarted)) {
+			return None();
+		}
+		// all members are listed, the client will itself find the ones that are running
+		return Some(members.stream().map(ZKEnsembleMember::address).collect(Collectors.joining(",")));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKEnsemble#members()
+	 */
+	@Override
+	public List<ZKInstance> members() {
+		return Collections.unmodifiableList(members);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKEnsemble#leader()
+	 */
+	@Override
+	public Option<ZKInstance> leader() {
+		return Option(members.stream().filter(ZKEnsembleMember::isLeader).findFirst().orElse(null));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKEnsemble#connect()
+	 */
+	@Override
+	public Try<CloseableZooKeeper> connect() {
+		return connectString().map(connectString -> {
+			return Try(() -> CloseableZooKeeper.blockingConnect(connectString, Duration.ofSeconds(5)));
+		}).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper ensemble is not running")));
+	}
+
+	/**
+	 * Blocks until there is a leader and all started members are serving clients.
+	 *
+	 * @throws TimeoutException
+	 *             If the quorum is not formed within the timeout
+	 * @throws InterruptedException
+	 */
+	private void awaitQuorum() throws TimeoutException, InterruptedException {
+		long deadline = System.currentTimeMillis() + quorumTimeout.toMillis();
+		while (!hasQuorum()) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new TimeoutException("The ensemble failed to form a quorum within [" + quorumTimeout + "]");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	private boolean hasQuorum() {
+		return leader().isDefined() && members.stream().filter(ZKEnsembleMember::isStarted).allMatch(ZKEnsembleMember::isServing);
+	}
+
+	private int allocatePort() throws IOException {
+		int port = PortAllocator.allocate();
+		ports.add(port);
+		return port;
+	}
+}
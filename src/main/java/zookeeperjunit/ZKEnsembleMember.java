@@ -0,0 +1,234 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.TryCompanion.Try;
+import static javascalautils.concurrent.FutureCompanion.Future;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZKDatabase;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.apache.zookeeper.server.quorum.QuorumPeer;
+import org.apache.zookeeper.server.quorum.QuorumPeer.QuorumServer;
+import org.apache.zookeeper.server.quorum.QuorumPeer.ServerState;
+
+import javascalautils.Failure;
+import javascalautils.Option;
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
+
+/**
+ * A single member of a {@link ZKEnsemble}, i.e. a ZooKeeper {@link QuorumPeer} running in this JVM.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class ZKEnsembleMember extends AbstractZKInstance {
+
+	/** The election algorithm to use, 3 is the fast leader election. */
+	private static final int FAST_LEADER_ELECTION = 3;
+
+	/** The server id of this member. */
+	private final long id;
+
+	/** This is the root dir where all ZK data is stored for this member. */
+	private final File rootZooDir;
+
+	/** The server configuration of all members in the ensemble. */
+	private final Map<Long, QuorumServer> view;
+
+	/** The port this member listens to for clients. */
+	private final int clientPort;
+
+	private final int maxClientConnections;
+
+	/** If the transaction log and snapshots are to be kept in memory instead of on disc. */
+	private final boolean inMemoryStorage;
+
+	/** The tick time and session timeouts of the member. */
+	private final ZKTiming timing;
+
+	/** The connection factory implementation and its settings. */
+	private final ZKServerTransport transport;
+
+	/** The in-memory storage, kept between stop/start to retain data. */
+	private Option<InMemoryTxnSnapLog> inMemoryTxnSnapLog = None();
+
+	/** The running peer. */
+	private volatile Option<QuorumPeer> quorumPeer = None();
+
+	ZKEnsembleMember(long id, File rootDir, Map<Long, QuorumServer> view, int clientPort, ZKServerSettings settings) {
+		this.id = id;
+		this.rootZooDir = new File(rootDir, "member-" + id);
+		this.view = view;
+		this.clientPort = clientPort;
+		this.maxClientConnections = settings.maxClientConnections;
+		this.inMemoryStorage = settings.inMemoryStorage;
+		this.timing = settings.timing;
+		this.transport = settings.transport;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#start()
+	 */
+	@Override
+	public Future<Unit> start() {
+		return Future(() -> {
+			if (quorumPeer.isDefined()) {
+				return;
+			}
+			ServerCnxnFactory cnxnFactory = transport.createFactory(new InetSocketAddress("127.0.0.1", clientPort), maxClientConnections);
+			// each peer gets its own copy of the view
+			QuorumPeer peer = new QuorumPeer(new HashMap<>(view), new File(rootZooDir, "snapDir"), new File(rootZooDir, "dataDir"), FAST_LEADER_ELECTION, id, timing.tickTime,
+					timing.initLimit(), timing.syncLimit(), cnxnFactory);
+			peer.setMinSessionTimeout(timing.minSessionTimeout);
+			peer.setMaxSessionTimeout(timing.maxSessionTimeout);
+			if (inMemoryStorage) {
+				if (inMemoryTxnSnapLog.isEmpty()) {
+					inMemoryTxnSnapLog = Some(new InMemoryTxnSnapLog(rootZooDir));
+				}
+				peer.setTxnFactory(inMemoryTxnSnapLog.get());
+				peer.setZKDatabase(new ZKDatabase(inMemoryTxnSnapLog.get()));
+			}
+			peer.start();
+			quorumPeer = Some(peer);
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#stop()
+	 */
+	@Override
+	public Future<Unit> stop() {
+		return Future(() -> {
+			closeSession();
+			quorumPeer.forEach(peer -> {
+				Try(() -> {
+					peer.shutdown();
+					peer.join();
+				});
+			});
+			quorumPeer = None();
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#destroy()
+	 */
+	@Override
+	public Future<Unit> destroy() {
+		return stop().map(u -> {
+			inMemoryTxnSnapLog = None();
+			TrashReclaimer.discard(rootZooDir);
+			return u;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see zookeeperjunit.ZKInstance#port()
+	 */
+	@Override
+	public Option<Integer> port() {
+		return quorumPeer.map(peer -> clientPort);
+	}
+
+	/**
+	 * Not supported for ensemble members as the data is replicated among all members.
+	 *
+	 * @return Failure(UnsupportedOperationException)
+	 */
+	@Override
+	public Try<ZKCheckpoint> checkpoint() {
+		return new Failure<>(new UnsupportedOperationException("Checkpoints are not supported for ensemble members"));
+	}
+
+	/**
+	 * Not supported for ensemble members as the data is replicated among all members.
+	 *
+	 * @return Failure(UnsupportedOperationException)
+	 */
+	@Override
+	public Try<Unit> restore(ZKCheckpoint checkpoint) {
+		return new Failure<>(new UnsupportedOperationException("Checkpoints are not supported for ensemble members"));
+	}
+
+	/**
+	 * The active server of the peer, i.e. the leader or follower server once the member has joined the ensemble.
+	 *
+	 * @return The server, None if not started or not yet part of the ensemble
+	 */
+	@Override
+	Option<ZooKeeperServer> server() {
+		return quorumPeer.flatMap(peer -> Option(peer.getActiveServer()));
+	}
+
+	/**
+	 * The static client address of this member regardless if it's started or not.
+	 *
+	 * @return The address [host:port]
+	 */
+	String address() {
+		return "127.0.0.1:" + clientPort;
+	}
+
+	/**
+	 * If this member is started.
+	 *
+	 * @return <code>true</code> if started
+	 */
+	boolean isStarted() {
+		return quorumPeer.isDefined();
+	}
+
+	/**
+	 * If this member is currently the leader of the ensemble.
+	 *
+	 * @return <code>true</code> if leader
+	 */
+	boolean isLeader() {
+		return quorumPeer.exists(peer -> peer.getPeerState() == ServerState.LEADING && peer.leader != null);
+	}
+
+	/**
+	 * If this member is started and has a ZooKeeper server ready to serve clients. <br>
+	 * I.e. the member is either leader or a follower that is in sync with the leader.
+	 *
+	 * @return <code>true</code> if serving
+	 */
+	boolean isServing() {
+		return quorumPeer.exists(peer -> {
+			ZooKeeperServer server = peer.getActiveServer();
+			return server != null && server.isRunning();
+		});
+	}
+}
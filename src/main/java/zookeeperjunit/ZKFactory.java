@@ -15,9 +15,15 @@
  */
 package zookeeperjunit;
 
-import java.io.File;
+import static javascalautils.TryCompanion.Try;
+import static zookeeperjunit.Util.assertLargerThanZero;
 import static zookeeperjunit.Util.assertPositive;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
 /**
  * Factory for creating ZooKeeper instances.
  * 
@@ -25,9 +31,11 @@ import static zookeeperjunit.Util.assertPositive;
  * @since 1.0
  */
 public class ZKFactory {
-	private int port = 0;
-	private File rootDir = new File("target");
-	private int maxClientConnections = 50;
+	/** The JVM wide shared instance, created on demand.*/
+	private static ZKInstance sharedInstance;
+	
+	private ZKServerSettings settings = ZKServerSettings.defaults;
+	private boolean lazyStart = false;
 	/**
 	 * Inhibitive constructor.
 	 */
@@ -44,6 +52,32 @@ public class ZKFactory {
 		return new ZKFactory();
 	}
 
+	/**
+	 * Get the JVM wide shared ZooKeeper instance. <br>
+	 * The instance is created and started on the first invocation and then stays up for the life-time of the JVM, it's destroyed
+	 * by a shutdown hook when the JVM exits. <br>
+	 * Instead of starting/destroying instances between test cases each test {@link ZKInstance#lease() leases} an isolated namespace. <br>
+	 * The shared instance uses {@link #withInMemoryStorage() in-memory storage}. <br>
+	 * It must not be stopped/destroyed by test cases as that would affect all other users of the instance.
+	 * @return The started shared instance
+	 * @throws IllegalStateException If the instance could not be started
+	 * @since 1.3
+	 */
+	public static synchronized ZKInstance shared() {
+		if (sharedInstance == null) {
+			ZKInstance instance = apply().withInMemoryStorage().create();
+			try {
+				instance.start().result(Duration.ofSeconds(30));
+			} catch (Throwable ex) {
+				instance.destroy();
+				throw new IllegalStateException("Failed to start the shared ZooKeeper instance", ex);
+			}
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> Try(() -> instance.destroy().ready(Duration.ofSeconds(10))), "zookeeper-junit-shutdown"));
+			sharedInstance = instance;
+		}
+		return sharedInstance;
+	}
+	
 	/**
 	 * Sets the port to use for the ZooKeeper instance. <br>
 	 * This is optional, if not provided <tt>0</tt> is used and the O/S decided for a free port. <br>
@@ -54,7 +88,7 @@ public class ZKFactory {
 	 */
 	public ZKFactory withPort(int port) {
 		assertPositive(port);
-		this.port = port;
+		this.settings = settings.withPort(port);
 		return this;
 	}
 	
@@ -71,7 +105,7 @@ public class ZKFactory {
 		if(!dir.isDirectory()) {
 			throw new IllegalArgumentException("The path ["+dir.getAbsolutePath()+"] does not denote an existing directory");
 		}
-		this.rootDir = dir;
+		this.settings = settings.withRootDir(dir);
 		return this;
 	}
 	
@@ -84,15 +118,167 @@ public class ZKFactory {
 	 */
 	public ZKFactory withMaxClientConnections(int connections) {
 		assertPositive(connections);
+		this.settings = settings.withMaxClientConnections(connections);
 		return this;
 	}
 	
+	/**
+	 * Keeps the transaction log and the snapshots of the ZooKeeper instance in memory instead of writing them to disc. <br>
+	 * This removes the cost for appending and syncing the transaction log for each write operation. <br>
+	 * The data is still retained when stopping/starting the instance as long as it's within the same JVM, 
+	 * {@link ZKInstance#destroy() destroying} the instance clears the data.
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory withInMemoryStorage() {
+		this.settings = settings.withInMemoryStorage();
+		return this;
+	}
+	
+	/**
+	 * Defers the start of the ZooKeeper instance until it's first used. <br>
+	 * {@link ZKInstance#start()} then returns immediately, the server is started by the first operation needing it
+	 * e.g. {@link ZKInstance#connectString()}, {@link ZKInstance#port()} or {@link ZKInstance#connect()}. <br>
+	 * This is useful when an instance is started for a set of test cases where only some actually use it, an instance never used
+	 * neither allocates a port nor any data directory. <br>
+	 * Only applicable to instances, ensembles are always started immediately.
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory withLazyStart() {
+		this.lazyStart = true;
+		return this;
+	}
+
+	/**
+	 * Creates the ZooKeeper instance with the data of the provided template. <br>
+	 * Each instance gets its own data directory populated with the snapshot of the template when started with empty storage, 
+	 * i.e. on the first start and on the first start after being {@link ZKInstance#destroy() destroyed}. <br>
+	 * The snapshot is hard linked into the data directory (copied if hard links are not supported), starting the instance is a mere load of the snapshot. <br>
+	 * Only applicable to instances, not to ensembles.
+	 * @param template The template
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory fromTemplate(ZKTemplate template) {
+		this.settings = settings.withTemplate(template);
+		return this;
+	}
+
+	/**
+	 * Sets the tick time of the ZooKeeper instance. <br>
+	 * The tick time is the base time unit of the server, e.g. expired sessions are detected once per tick. <br>
+	 * For tests on session expiry/ephemeral cleanup to be fast both the tick time and the {@link #withSessionTimeouts(Duration, Duration) session timeouts} need to be short. <br>
+	 * If not provided the default value of <tt>2 seconds</tt> is used.
+	 * @param tickTime The tick time, must be at least one millisecond
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory withTickTime(Duration tickTime) {
+		this.settings = settings.withTiming(settings.timing.withTickTime(toMillis(tickTime)));
+		return this;
+	}
+
+	/**
+	 * Sets the bounds for the session timeout. <br>
+	 * The session timeout requested by a client is negotiated by the server to be within these bounds, 
+	 * e.g. setting the max to 100ms yields sessions that expire 100ms after losing their connection. <br>
+	 * If not provided the default value of <tt>10 seconds</tt> is used for both the min and max.
+	 * @param min The min session timeout, must be at least one millisecond
+	 * @param max The max session timeout, must not be less than the min
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory withSessionTimeouts(Duration min, Duration max) {
+		this.settings = settings.withTiming(settings.timing.withSessionTimeouts(toMillis(min), toMillis(max)));
+		return this;
+	}
+
+	/**
+	 * Drives the session tracking of the ZooKeeper instance by the provided clock instead of the wall clock. <br>
+	 * Sessions then only expire as the clock is {@link ZKClock#advance(Duration) advanced}, making tests on session expiry both fast and deterministic. <br>
+	 * The same clock may be shared by multiple instances. <br>
+	 * Only applicable to instances, not to ensembles.
+	 * @param clock The clock
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory withClock(ZKClock clock) {
+		this.settings = settings.withClock(clock);
+		return this;
+	}
+
+	/**
+	 * Sets the network transport the server uses to serve client connections. <br>
+	 * Use {@link ZKTransport#NETTY} to test using the same network stack as a production server configured with the Netty connection factory. <br>
+	 * If not provided the connection factory ZooKeeper is configured with is used, i.e. {@link ZKTransport#NIO} unless the <i>zookeeper.serverCnxnFactory</i> system property says otherwise.
+	 * @param transport The transport
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory withTransport(ZKTransport transport) {
+		this.settings = settings.withTransport(settings.transport.withTransport(transport));
+		return this;
+	}
+
+	/**
+	 * Sets the number of I/O worker threads serving the client connections. <br>
+	 * Only applicable to the {@link ZKTransport#NETTY Netty} transport, the NIO transport always uses a single selector thread. <br>
+	 * If not provided Netty uses twice the number of available cores.
+	 * @param threads The number of worker threads
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory withWorkerThreads(int threads) {
+		this.settings = settings.withTransport(settings.transport.withWorkerThreads(threads));
+		return this;
+	}
+
+	/**
+	 * Sets the size of the send/receive buffers of the client connection sockets. <br>
+	 * Only applicable to the {@link ZKTransport#NETTY Netty} transport. <br>
+	 * If not provided the O/S default is used.
+	 * @param bytes The buffer size in bytes
+	 * @return The factory instance
+	 * @since 1.3
+	 */
+	public ZKFactory withSocketBufferSize(int bytes) {
+		this.settings = settings.withTransport(settings.transport.withSocketBufferSize(bytes));
+		return this;
+	}
+
 	/**
 	 * Creates the ZooKeeper instance.
 	 * @return The placeholder for the ZooKeeper instance.
 	 * @since 1.0
 	 */
 	public ZKInstance create() {
-		return new ZKInstanceImpl(port, rootDir, maxClientConnections);
+		if (lazyStart) {
+			// the settings are immutable, the factory may be re-configured before the instance is started
+			ZKServerSettings settings = this.settings;
+			return new LazyZKInstance(() -> new ZKInstanceImpl(settings));
+		}
+		return new ZKInstanceImpl(settings);
+	}
+
+	/**
+	 * Creates an ensemble (quorum) of ZooKeeper instances all running in this JVM. <br>
+	 * All members listen to the loopback interface with automatically allocated client, quorum and election ports. <br>
+	 * The {@link #withPort(int) port} setting is not applicable to ensembles, all other settings are applied to each member.
+	 * @param size The number of members in the ensemble, typically 3 or 5
+	 * @return The placeholder for the ZooKeeper ensemble.
+	 * @since 1.3
+	 */
+	public ZKEnsemble ensemble(int size) {
+		assertLargerThanZero(size);
+		try {
+			return new ZKEnsembleImpl(size, settings);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Failed to allocate ports for the ensemble", ex);
+		}
+	}
+
+	private static int toMillis(Duration duration) {
+		return (int) Math.min(Integer.MAX_VALUE, duration.toMillis());
 	}
 }
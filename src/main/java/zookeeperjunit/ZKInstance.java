@@ -15,6 +15,9 @@
  */
 package zookeeperjunit;
 
+import java.nio.file.Path;
+import java.util.List;
+
 import javascalautils.Option;
 import javascalautils.Try;
 import javascalautils.Unit;
@@ -48,7 +51,8 @@ public interface ZKInstance {
 	/**
 	 * Stops and destroys this instance.
 	 * This is a non-blocking operation and returns a {@link Future} that will be completed once the instance is stopped. <br>
-	 * Data on disc is destroyed meaning that invoking {@link #start() start} again will yield an empty database.
+	 * Data on disc is destroyed meaning that invoking {@link #start() start} again will yield an empty database. <br>
+	 * The data directory is moved to a trash directory and deleted in the background, the future does not wait for the data to be deleted.
 	 * @return The future that will be completed once the instance is destroyed.
 	 * @since 1.0
 	 */
@@ -74,4 +78,108 @@ public interface ZKInstance {
 	 * @since 1.1
 	 */
 	Try<CloseableZooKeeper> connect();
+
+	/**
+	 * Attempts to create multiple connections towards the running ZooKeeper instance. <br>
+	 * The connections are established concurrently, this is intended for tests that need a large number of sessions. <br>
+	 * Should any of the connections fail then all connections are closed.
+	 * @param sessions The number of connections/sessions to create
+	 * @return A Success with the connections or a Failure in case any connection could not be established
+	 * @since 1.3
+	 */
+	Try<List<CloseableZooKeeper>> connect(int sessions);
+
+	/**
+	 * Get the session shared by all users of this instance. <br>
+	 * The session is created on the first invocation and then re-used until the instance is stopped, restarting the instance yields a new session. <br>
+	 * This is to avoid the cost of creating a new session for short lived operations such as asserts. <br>
+	 * The session is owned by the instance and must not be closed by the user, should it anyways be closed a new one is created on the next invocation.
+	 * @return A Success with the session or a Failure in case a connection could not be established
+	 * @since 1.3
+	 */
+	Try<CloseableZooKeeper> session();
+
+	/**
+	 * Leases an isolated namespace on the running ZooKeeper instance. <br>
+	 * The namespace is a unique path that is used as chroot in the {@link ZKLease#connectString() connect string} of the lease. <br>
+	 * This allows a single server to be shared by many test cases, instead of stopping/destroying the instance between tests a new namespace is leased. <br>
+	 * {@link ZKLease#close() Closing} the lease deletes its data in the background.
+	 * @return A Success with the lease or a Failure in case the instance is not running
+	 * @since 1.3
+	 */
+	Try<ZKLease> lease();
+
+	/**
+	 * Captures the data of the running ZooKeeper instance. <br>
+	 * The checkpoint is taken directly from the in-memory data of the server, it can later be {@link #restore(ZKCheckpoint) restored} any number of times. <br>
+	 * Ephemeral nodes are not part of the checkpoint as they are owned by sessions that may not exist at the time of a restore.
+	 * @return A Success with the checkpoint or a Failure in case the instance is not running
+	 * @since 1.3
+	 */
+	Try<ZKCheckpoint> checkpoint();
+
+	/**
+	 * Restores the data of the running ZooKeeper instance to a previously taken {@link #checkpoint() checkpoint}. <br>
+	 * The data is swapped directly in the server, no data is sent over the client protocol. <br>
+	 * The restore is expected to be done while no clients are writing data, any ongoing write may fail. <br>
+	 * Open sessions survive the restore, but their ephemeral nodes are removed and any watches they have set are discarded without being triggered. <br>
+	 * The restored data is persisted when the instance is {@link #stop() stopped}.
+	 * @param checkpoint The checkpoint to restore
+	 * @return A Success if the data was restored or a Failure in case the instance is not running
+	 * @since 1.3
+	 */
+	Try<Unit> restore(ZKCheckpoint checkpoint);
+
+	/**
+	 * Captures the statistics of the running ZooKeeper instance. <br>
+	 * The statistics are read directly from the server, e.g. request latency, packet counts, node/watch counts and the size of the transaction log.
+	 * @return A Success with the statistics or a Failure in case the instance is not running
+	 * @since 1.3
+	 */
+	Try<ZKStats> stats();
+
+	/**
+	 * Resets the request statistics (latency, packets) of the running ZooKeeper instance. <br>
+	 * Intended to be invoked between tests in order for the {@link #stats() statistics} to only reflect the requests of a single test.
+	 * @return A Success if the statistics were reset or a Failure in case the instance is not running
+	 * @since 1.3
+	 */
+	Try<Unit> resetStats();
+
+	/**
+	 * Creates all the nodes described in the provided file on the running ZooKeeper instance. <br>
+	 * The file is streamed using the {@link #session() shared session}, see {@link CloseableZooKeeper#seed(Path)} for the format of the file.
+	 * @param file The file describing the tree
+	 * @return A Success with the number of nodes and the elapsed time or a Failure in case the instance is not running or the file could not be loaded
+	 * @since 1.3
+	 */
+	Try<ZKSeedReport> seed(Path file);
+
+	/**
+	 * Immediately expires a session on the running ZooKeeper instance, without waiting for the session timeout. <br>
+	 * The session is closed by the server the same way as if it had timed out, i.e. its ephemeral nodes are deleted and watches fired,
+	 * the client is disconnected and gets a session expired event once it reconnects. <br>
+	 * The operation returns once the session has been removed from the server.
+	 * @param sessionId The id of the session, e.g. as given by {@link org.apache.zookeeper.ZooKeeper#getSessionId()}
+	 * @return A Success if the session was expired or a Failure in case the instance is not running or the session does not exist
+	 * @since 1.3
+	 */
+	Try<Unit> expireSession(long sessionId);
+
+	/**
+	 * Immediately expires all sessions on the running ZooKeeper instance, see {@link #expireSession(long)}. <br>
+	 * This includes the {@link #session() shared session}, it's transparently re-created on the next use.
+	 * @return A Success with the number of expired sessions or a Failure in case the instance is not running
+	 * @since 1.3
+	 */
+	Try<Integer> expireAllSessions();
+
+	/**
+	 * Closes all client connections to the running ZooKeeper instance. <br>
+	 * The sessions are kept, the clients get a disconnected event and then reconnect to resume their sessions. <br>
+	 * Used for testing the reconnect logic of an application.
+	 * @return A Success if the connections were closed or a Failure in case the instance is not running
+	 * @since 1.3
+	 */
+	Try<Unit> dropConnections();
 }
@@ -21,14 +21,14 @@ import static javascalautils.TryCompanion.Try;
 import static javascalautils.concurrent.FutureCompanion.Future;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.time.Duration;
+import java.nio.file.Files;
 
 import org.apache.zookeeper.server.ServerCnxnFactory;
 import org.apache.zookeeper.server.ZooKeeperServer;
 import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
 
-import ioutil.FileUtil;
 import javascalautils.Failure;
 import javascalautils.Option;
 import javascalautils.Try;
@@ -40,7 +40,7 @@ import javascalautils.concurrent.Future;
  * @author Peter Nerg
  * @since 1.0
  */
-final class ZKInstanceImpl implements ZKInstance {
+final class ZKInstanceImpl extends AbstractZKInstance {
 
 	/** This is the root dir where all ZK data is stored for this ZK instance. */
 	private final File rootZooDir;
@@ -48,16 +48,44 @@ final class ZKInstanceImpl implements ZKInstance {
 	/** The port ZK will listen to.*/
 	private int cfgPort;
 
+	/** If the port was assigned by this instance rather than configured, it's then kept until the instance is destroyed.*/
+	private boolean portAssigned = false;
+
+	/** If the port is reserved using the {@link PortAllocator}, it's then released when the instance is destroyed.*/
+	private boolean portReserved = false;
+
     /** Holds the information to the started ZK instance.*/
 	private Option<ZKInstanceHolder> zkInstanceHolder = None();
 
 	private final int maxClientConnections;
 
-	ZKInstanceImpl(int cfgPort, File rootDir, int maxClientConnections) {
-		this.cfgPort = cfgPort;
-		this.maxClientConnections = maxClientConnections;
-		// create a unique path time for identification
-		rootZooDir = new File(rootDir, "zk-" + System.currentTimeMillis() + File.separator);
+	/** If the transaction log and snapshots are to be kept in memory instead of on disc.*/
+	private final boolean inMemoryStorage;
+
+	/** The tick time and session timeouts of the server.*/
+	private final ZKTiming timing;
+
+	/** The connection factory implementation and its settings.*/
+	private final ZKServerTransport transport;
+
+	/** The baseline data of the instance, applied each time the instance is started with empty storage.*/
+	private final Option<ZKTemplate> template;
+
+	/** The clock driving the session tracking, if not provided the wall clock is used.*/
+	private final Option<ZKClock> clock;
+
+	/** The in-memory storage, kept between stop/start to retain data.*/
+	private Option<InMemoryTxnSnapLog> inMemoryTxnSnapLog = None();
+
+	ZKInstanceImpl(ZKServerSettings settings) {
+		this.cfgPort = settings.port;
+		this.maxClientConnections = settings.maxClientConnections;
+		this.inMemoryStorage = settings.inMemoryStorage;
+		this.timing = settings.timing;
+		this.transport = settings.transport;
+		this.template = settings.template;
+		this.clock = settings.clock;
+		rootZooDir = Util.createUniqueDir(settings.rootDir, "zk-");
 	}
 
 	/*
@@ -68,20 +96,37 @@ final class ZKInstanceImpl implements ZKInstance {
 	@Override
 	public Future<Unit> start() {
 		return Future(() -> {
-			ZooKeeperServer zkServer = new ZooKeeperServer();
-			FileTxnSnapLog log = new FileTxnSnapLog(new File(rootZooDir, "dataDir"), new File(rootZooDir, "snapDir"));
+			TrashReclaimer.reclaim(rootZooDir.getParentFile());
+			//if no port was provided one is assigned and then kept for the scenario of restarting this instance
+			//Netty only binds when started and reports the configured port, hence it's given an allocated port
+			if (cfgPort == 0 && transport.bindsWhenStarted()) {
+				cfgPort = PortAllocator.allocate();
+				portAssigned = true;
+				portReserved = true;
+			}
+			ZooKeeperServer zkServer = clock.isDefined() ? new VirtualClockServer(clock.get()) : new ZooKeeperServer();
+			boolean fromTemplate = template.isDefined() && isStorageEmpty();
+			FileTxnSnapLog log = createTxnSnapLog();
+			SwappableZKDatabase zkDatabase = new SwappableZKDatabase(log);
+			if (fromTemplate) {
+				zkDatabase.preload(template.get().take());
+			}
 			zkServer.setTxnLogFactory(log);
-			zkServer.setTickTime(2000);
-			zkServer.setMinSessionTimeout(10000);
-			zkServer.setMaxSessionTimeout(10000);
-			ServerCnxnFactory cnxnFactory = ServerCnxnFactory.createFactory();
-			cnxnFactory.configure(new InetSocketAddress(cfgPort), maxClientConnections);
+			zkServer.setZKDatabase(zkDatabase);
+			zkServer.setTickTime(timing.tickTime);
+			zkServer.setMinSessionTimeout(timing.minSessionTimeout);
+			zkServer.setMaxSessionTimeout(timing.maxSessionTimeout);
+			ServerCnxnFactory cnxnFactory = transport.createFactory(new InetSocketAddress(cfgPort), maxClientConnections);
+			//NIO binds port 0 directly to a port picked by the O/S, leaving no window for anyone else to take it
+			if (cfgPort == 0) {
+				cfgPort = cnxnFactory.getLocalPort();
+				portAssigned = true;
+				//best effort, keeps other instances from allocating the port while this instance is stopped
+				int boundPort = cfgPort;
+				portReserved = Try(() -> PortAllocator.reserve(boundPort)).getOrElse(() -> false);
+			}
 			cnxnFactory.startup(zkServer);
-            zkInstanceHolder = Some(new ZKInstanceHolder(log, cnxnFactory));
-			//remember the port. if 0 was provided then ZK will pick a free port
-			//it must be remembered for the scenario of restarting this instance
-			//in such case we want to get the same port again
-			cfgPort = cnxnFactory.getLocalPort();
+            zkInstanceHolder = Some(new ZKInstanceHolder(log, cnxnFactory, zkServer, zkDatabase));
 		});
 	}
 
@@ -93,8 +138,14 @@ final class ZKInstanceImpl implements ZKInstance {
 	@Override
 	public Future<Unit> stop() {
 		return Future(() -> {
+			closeSession();
             zkInstanceHolder.forEach(zk -> {
                 Try(() -> {
+                    // a restored tree only exists in memory, persist it so a restart yields the same data
+                    if (zk.restored) {
+                        unlinkSnapshot(zk.fileTxnSnapLog, zk.zkDatabase.getDataTreeLastProcessedZxid());
+                        zk.zkServer.takeSnapshot();
+                    }
                     zk.serverCnxnFactory.shutdown();
                     zk.fileTxnSnapLog.close();
                 });
@@ -110,19 +161,41 @@ final class ZKInstanceImpl implements ZKInstance {
 	public Future<Unit> destroy() {
 		// clear out any old data
 		return stop().map(u -> {
-			FileUtil.delete(rootZooDir);
+			inMemoryTxnSnapLog = None();
+			// moved out of the way immediately, the data is deleted in the background
+			TrashReclaimer.discard(rootZooDir);
+			if (portReserved) {
+				PortAllocator.release(cfgPort);
+				portReserved = false;
+			}
+			if (portAssigned) {
+				cfgPort = 0;
+				portAssigned = false;
+			}
 			return u;
 		});
 	}
 	
 	/* (non-Javadoc)
-	 * @see zookeeperjunit.ZKInstance#connectString()
+	 * @see zookeeperjunit.ZKInstance#checkpoint()
 	 */
 	@Override
-	public Option<String> connectString() {		
-		return port().map(port -> "127.0.0.1:"+port);
+	public Try<ZKCheckpoint> checkpoint() {
+		return zkInstanceHolder.map(zk -> Try(() -> ZKCheckpoint.of(zk.zkDatabase.getDataTree())))
+				.getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
 	}
-	
+
+	/* (non-Javadoc)
+	 * @see zookeeperjunit.ZKInstance#restore(zookeeperjunit.ZKCheckpoint)
+	 */
+	@Override
+	public Try<Unit> restore(ZKCheckpoint checkpoint) {
+		return zkInstanceHolder.map(zk -> Try(() -> {
+			zk.zkDatabase.swap(checkpoint.take());
+			zk.restored = true;
+		})).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
 	/* (non-Javadoc)
 	 * @see zookeeperjunit.ZKInstance#port()
 	 */
@@ -131,17 +204,60 @@ final class ZKInstanceImpl implements ZKInstance {
 		return zkInstanceHolder.map(h -> h.serverCnxnFactory.getLocalPort());
 	}
 	
-	/* (non-Javadoc)
-	 * @see zookeeperjunit.ZKInstance#connect()
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see zookeeperjunit.AbstractZKInstance#server()
 	 */
 	@Override
-	public Try<CloseableZooKeeper> connect() {
-		//Tries to connect to the server in case it is running
-		//If not running then we return a Failure(IllegalStateException)
-		return connectString().map(connectString -> {
-			//attempt to connect
-			return Try(() -> CloseableZooKeeper.blockingConnect(connectString, Duration.ofSeconds(5)));
-		}).getOrElse(() -> new Failure<>(new IllegalStateException("The ZooKeeper server is not running")));
+	Option<ZooKeeperServer> server() {
+		return zkInstanceHolder.map(h -> h.zkServer);
+	}
+
+	/**
+	 * Checks if the instance has no storage yet, i.e. it's either never been started or it's been destroyed.
+	 * @return If the storage is empty
+	 */
+	private boolean isStorageEmpty() {
+		return inMemoryStorage ? inMemoryTxnSnapLog.isEmpty() : !new File(rootZooDir, "snapDir").exists();
+	}
+
+	/**
+	 * Creates the storage for the transaction log and snapshots. <br>
+	 * In case of in-memory storage the same storage is re-used between restarts in order to retain the data.
+	 * @return The storage
+	 * @throws IOException
+	 */
+	private FileTxnSnapLog createTxnSnapLog() throws IOException {
+		if (!inMemoryStorage) {
+			File snapDir = new File(rootZooDir, "snapDir");
+			// only populated if empty, a restarted instance shall keep its data
+			if (template.isDefined() && isStorageEmpty()) {
+				template.get().populate(snapDir);
+			}
+			return new FileTxnSnapLog(new File(rootZooDir, "dataDir"), snapDir);
+		}
+		if (inMemoryTxnSnapLog.isEmpty()) {
+			InMemoryTxnSnapLog log = new InMemoryTxnSnapLog(rootZooDir);
+			for (ZKTemplate t : template) {
+				log.seed(t.inMemorySnapshot(), t.zxid());
+			}
+			inMemoryTxnSnapLog = Some(log);
+		}
+		return inMemoryTxnSnapLog.get();
+	}
+
+	/**
+	 * Removes the snapshot file for the provided zxid, if any. <br>
+	 * A restored tree keeps the zxid of the current tree, should no writes have been made since starting from a {@link ZKTemplate} the new snapshot
+	 * gets the same name as the snapshot hard linked from the template. 
+	 * The snapshot is written by truncating any existing file, i.e. the file shared with the template and all other instances must first be unlinked.
+	 * @param log The storage
+	 * @param zxid The zxid of the snapshot
+	 * @throws IOException
+	 */
+	private static void unlinkSnapshot(FileTxnSnapLog log, long zxid) throws IOException {
+		Files.deleteIfExists(new File(log.getSnapDir(), org.apache.zookeeper.server.persistence.Util.makeSnapshotName(zxid)).toPath());
 	}
 
     /**
@@ -150,10 +266,16 @@ final class ZKInstanceImpl implements ZKInstance {
 	private final class ZKInstanceHolder {
         private final FileTxnSnapLog fileTxnSnapLog;
         private final ServerCnxnFactory serverCnxnFactory;
+        private final ZooKeeperServer zkServer;
+        private final SwappableZKDatabase zkDatabase;
+        /** If a checkpoint has been restored since the instance was started. */
+        private volatile boolean restored = false;
 
-        private ZKInstanceHolder(FileTxnSnapLog fileTxnSnapLog, ServerCnxnFactory serverCnxnFactory) {
+        private ZKInstanceHolder(FileTxnSnapLog fileTxnSnapLog, ServerCnxnFactory serverCnxnFactory, ZooKeeperServer zkServer, SwappableZKDatabase zkDatabase) {
             this.fileTxnSnapLog = fileTxnSnapLog;
             this.serverCnxnFactory = serverCnxnFactory;
+            this.zkServer = zkServer;
+            this.zkDatabase = zkDatabase;
         }
     }
 }
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.TryCompanion.Try;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javascalautils.Try;
+
+/**
+ * An isolated namespace leased from a {@link ZKInstance}. <br>
+ * The namespace is a unique path on the server that is used as chroot in the {@link #connectString() connect string}. <br>
+ * This allows several test cases to share the same server without seeing each others data. <br>
+ * Closing the lease returns the namespace, its data is then asynchronously deleted in the background. <br>
+ * This is to be able to use it in try-with-resources clauses.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKLease implements Closeable {
+
+	private final String connectString;
+	private final String path;
+	private final Consumer<String> releaser;
+	private final AtomicBoolean released = new AtomicBoolean(false);
+
+	ZKLease(String serverConnectString, String path, Consumer<String> releaser) {
+		this.connectString = serverConnectString + path;
+		this.path = path;
+		this.releaser = releaser;
+	}
+
+	/**
+	 * Get the path to the namespace on the server. <br>
+	 * This is the path used as chroot in the {@link #connectString() connect string}.
+	 *
+	 * @return The path
+	 * @since 1.3
+	 */
+	public String path() {
+		return path;
+	}
+
+	/**
+	 * Get the connect string [host:port/chroot] to the leased namespace. <br>
+	 * Any client using this connect string will see the namespace as its root path.
+	 *
+	 * @return The connect string
+	 * @since 1.3
+	 */
+	public String connectString() {
+		return connectString;
+	}
+
+	/**
+	 * Attempts to create a connection towards the leased namespace.
+	 *
+	 * @return A Success with the connection or a Failure in case a connection could not be established
+	 * @since 1.3
+	 */
+	public Try<CloseableZooKeeper> connect() {
+		return Try(() -> CloseableZooKeeper.blockingConnect(connectString, Duration.ofSeconds(5)));
+	}
+
+	/**
+	 * Returns the namespace. <br>
+	 * This is a non-blocking operation, the data in the namespace is deleted in the background. <br>
+	 * Invoking this method multiple times has no effect.
+	 *
+	 * @since 1.3
+	 */
+	@Override
+	public void close() {
+		if (released.compareAndSet(false, true)) {
+			releaser.accept(path);
+		}
+	}
+}
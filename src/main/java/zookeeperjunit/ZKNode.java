@@ -0,0 +1,69 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import org.apache.zookeeper.data.Stat;
+
+import javascalautils.Option;
+
+/**
+ * A single node of an exported {@link ZKTree}.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKNode {
+
+	private final String path;
+	private final byte[] data;
+	private final Option<Stat> stat;
+
+	ZKNode(String path, byte[] data, Option<Stat> stat) {
+		this.path = path;
+		this.data = data;
+		this.stat = stat;
+	}
+
+	/**
+	 * The path of the node relative to the root of the exported tree, the root itself is <tt>/</tt>.
+	 *
+	 * @return The path
+	 * @since 1.3
+	 */
+	public String path() {
+		return path;
+	}
+
+	/**
+	 * The data of the node.
+	 *
+	 * @return The data
+	 * @since 1.3
+	 */
+	public byte[] data() {
+		return data;
+	}
+
+	/**
+	 * The stat of the node at the time it was exported.
+	 *
+	 * @return The stat, None if the node was not exported from a server
+	 * @since 1.3
+	 */
+	public Option<Stat> stat() {
+		return stat;
+	}
+}
@@ -0,0 +1,380 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.TryCompanion.Try;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import javascalautils.Failure;
+import javascalautils.Option;
+import javascalautils.Try;
+import javascalautils.Unit;
+
+/**
+ * A TCP proxy in front of a ZooKeeper instance that degrades the network between the clients and the server. <br>
+ * Clients connecting to the {@link #connectString() connect string} of the proxy get their traffic forwarded to the server with added latency, jitter
+ * and a bandwidth cap, all of which can be changed while the proxy is running. <br>
+ * The proxy can also be {@link #blackhole(boolean) blackholed} to simulate a network partition. <br>
+ * Example of usage:
+ * 
+ * <pre>
+ * try (ZKProxy proxy = ZKProxy.apply(instance).withLatency(Duration.ofMillis(10))) {
+ * 	proxy.start().get();
+ * 	try (CloseableZooKeeper zk = proxy.connect().get()) {
+ * 		// each request now takes at least 20ms
+ * 	}
+ * }
+ * </pre>
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKProxy implements Closeable {
+
+	/** The size of the chunks data is forwarded in. */
+	private static final int chunkSize = 16 * 1024;
+
+	/** Marks the end of a stream in the forwarding queue. */
+	private static final Chunk endOfStream = new Chunk(new byte[0], 0);
+
+	/** Provides the server address [host:port] at the time a client connects. */
+	private final Supplier<Option<String>> target;
+
+	/** Runs the accept loop and the forwarding of the proxied connections, created each time the proxy is started. */
+	private Option<ExecutorService> executor = None();
+
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+	private volatile long latencyNanos = 0;
+	private volatile long jitterNanos = 0;
+	private volatile long bytesPerSecond = 0;
+	private volatile boolean blackholed = false;
+
+	private volatile Option<ServerSocket> serverSocket = None();
+
+	private ZKProxy(Supplier<Option<String>> target) {
+		this.target = target;
+	}
+
+	/**
+	 * Creates a proxy in front of the provided instance. <br>
+	 * The instance need not be running when the proxy is started, clients connecting while it's not running are disconnected.
+	 * 
+	 * @param instance
+	 *            The instance
+	 * @return The proxy
+	 * @since 1.3
+	 */
+	public static ZKProxy apply(ZKInstance instance) {
+		return new ZKProxy(instance::connectString);
+	}
+
+	/**
+	 * Creates a proxy in front of the provided server.
+	 * 
+	 * @param address
+	 *            The address of the server [host:port]
+	 * @return The proxy
+	 * @since 1.3
+	 */
+	public static ZKProxy apply(String address) {
+		return new ZKProxy(() -> Some(address));
+	}
+
+	/**
+	 * Sets the latency added to the traffic in each direction, i.e. the round trip time is increased by twice the latency. <br>
+	 * Can be changed while the proxy is running, it then applies to data received from that point in time.
+	 * 
+	 * @param latency
+	 *            The one-way latency
+	 * @return The proxy
+	 * @since 1.3
+	 */
+	public ZKProxy withLatency(Duration latency) {
+		this.latencyNanos = assertNotNegative(latency).toNanos();
+		return this;
+	}
+
+	/**
+	 * Sets a random latency between zero and the provided jitter that is added on top of the {@link #withLatency(Duration) latency}. <br>
+	 * The order of the data is always retained, i.e. jitter never causes data to be re-ordered.
+	 * 
+	 * @param jitter
+	 *            The max jitter
+	 * @return The proxy
+	 * @since 1.3
+	 */
+	public ZKProxy withJitter(Duration jitter) {
+		this.jitterNanos = assertNotNegative(jitter).toNanos();
+		return this;
+	}
+
+	/**
+	 * Caps the bandwidth in each direction of each connection. <br>
+	 * If not provided or set to zero the bandwidth is not capped.
+	 * 
+	 * @param bytesPerSecond
+	 *            The max bytes per second
+	 * @return The proxy
+	 * @since 1.3
+	 */
+	public ZKProxy withBandwidth(long bytesPerSecond) {
+		if (bytesPerSecond < 0) {
+			throw new IllegalArgumentException("Only positive numbers are allowed");
+		}
+		this.bytesPerSecond = bytesPerSecond;
+		return this;
+	}
+
+	/**
+	 * Starts/stops blackholing all traffic, i.e. simulates a network partition between the clients and the server. <br>
+	 * While blackholed connections stay open but no data is forwarded, as with a real partition the data is delivered once the partition heals unless
+	 * the connection has been closed by then. <br>
+	 * A ZooKeeper client not receiving any data will itself drop the connection after 2/3 of the session timeout and try to reconnect.
+	 * 
+	 * @param blackholed
+	 *            <code>true</code> to partition, <code>false</code> to heal
+	 * @return The proxy
+	 * @since 1.3
+	 */
+	public ZKProxy blackhole(boolean blackholed) {
+		synchronized (this) {
+			this.blackholed = blackholed;
+			notifyAll();
+		}
+		return this;
+	}
+
+	/**
+	 * Starts the proxy on a free port on the loopback interface.
+	 * 
+	 * @return A Success if started, or a Failure if the port could not be bound
+	 * @since 1.3
+	 */
+	public synchronized Try<Unit> start() {
+		if (serverSocket.isDefined()) {
+			return Try(() -> {});
+		}
+		return Try(() -> {
+			ServerSocket socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			ExecutorService threads = Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "zookeeper-junit-proxy");
+				thread.setDaemon(true);
+				return thread;
+			});
+			try {
+				threads.execute(() -> accept(socket, threads));
+			} catch (RuntimeException ex) {
+				threads.shutdownNow();
+				socket.close();
+				throw ex;
+			}
+			executor = Some(threads);
+			serverSocket = Some(socket);
+		});
+	}
+
+	/**
+	 * Get the connect string [host:port] to the started proxy.
+	 * 
+	 * @return {@link javascalautils.Some} containing the connect string if started, {@link javascalautils.None} if not started
+	 * @since 1.3
+	 */
+	public Option<String> connectString() {
+		return port().map(port -> "127.0.0.1:" + port);
+	}
+
+	/**
+	 * Get the port of the started proxy.
+	 * 
+	 * @return {@link javascalautils.Some} containing the port if started, {@link javascalautils.None} if not started
+	 * @since 1.3
+	 */
+	public Option<Integer> port() {
+		return serverSocket.map(ServerSocket::getLocalPort);
+	}
+
+	/**
+	 * Attempts to create a connection towards the server via the proxy.
+	 * 
+	 * @return A Success with the connection or a Failure in case a connection could not be established
+	 * @since 1.3
+	 */
+	public Try<CloseableZooKeeper> connect() {
+		return connectString().map(connectString -> {
+			return Try(() -> CloseableZooKeeper.blockingConnect(connectString, Duration.ofSeconds(5)));
+		}).getOrElse(() -> new Failure<>(new IllegalStateException("The proxy is not running")));
+	}
+
+	/**
+	 * Stops the proxy and closes all proxied connections. <br>
+	 * The proxy may be started again, it's then listening on a new port.
+	 * 
+	 * @since 1.3
+	 */
+	@Override
+	public synchronized void close() {
+		serverSocket.forEach(socket -> Try(() -> socket.close()));
+		serverSocket = None();
+		sockets.forEach(socket -> Try(() -> socket.close()));
+		executor.forEach(ExecutorService::shutdownNow);
+		executor = None();
+	}
+
+	private void accept(ServerSocket serverSocket, ExecutorService executor) {
+		while (!serverSocket.isClosed()) {
+			Try(() -> {
+				Socket client = serverSocket.accept();
+				Option<String> address = target.get();
+				if (address.isEmpty()) {
+					// nothing to forward to, same as a server that is down
+					client.close();
+					return;
+				}
+				String[] hostPort = address.get().split(":");
+				Socket server = new Socket();
+				try {
+					server.connect(new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1])));
+				} catch (IOException ex) {
+					client.close();
+					throw ex;
+				}
+				client.setTcpNoDelay(true);
+				server.setTcpNoDelay(true);
+				sockets.add(client);
+				sockets.add(server);
+				forward(client, server, executor);
+				forward(server, client, executor);
+			});
+		}
+	}
+
+	/**
+	 * Forwards all data from one socket to the other. <br>
+	 * One thread reads the data and stamps it with the time it's to be delivered, another thread delivers it in order.
+	 * 
+	 * @param from
+	 *            The socket to read from
+	 * @param to
+	 *            The socket to write to
+	 * @param executor
+	 *            Runs the reading and delivering threads
+	 */
+	private void forward(Socket from, Socket to, ExecutorService executor) {
+		BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+		executor.execute(() -> {
+			long lastDelivery = 0;
+			try (InputStream in = from.getInputStream()) {
+				byte[] buffer = new byte[chunkSize];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					long jitter = jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos) : 0;
+					// never deliver before any previous data as that would re-order the stream
+					lastDelivery = Math.max(lastDelivery, System.nanoTime() + latencyNanos + jitter);
+					queue.add(new Chunk(Arrays.copyOf(buffer, read), lastDelivery));
+				}
+			} catch (IOException ex) {
+				// the socket is closed, nothing more to forward
+			}
+			queue.add(endOfStream);
+		});
+		executor.execute(() -> {
+			long nextFree = System.nanoTime();
+			try (OutputStream out = to.getOutputStream()) {
+				Chunk chunk;
+				while ((chunk = queue.take()) != endOfStream) {
+					sleepUntil(chunk.deliveryTime);
+					awaitHealed();
+					out.write(chunk.data);
+					out.flush();
+					long bandwidth = bytesPerSecond;
+					if (bandwidth > 0) {
+						nextFree = Math.max(nextFree, System.nanoTime()) + chunk.data.length * 1_000_000_000L / bandwidth;
+						sleepUntil(nextFree);
+					}
+				}
+			} catch (IOException | InterruptedException ex) {
+				// the socket is closed or the proxy is stopped
+			}
+			// closing both ends makes the peer see the connection being closed
+			close(from);
+			close(to);
+		});
+	}
+
+	private synchronized void awaitHealed() throws InterruptedException {
+		while (blackholed) {
+			wait();
+		}
+	}
+
+	private void close(Socket socket) {
+		sockets.remove(socket);
+		Try(() -> socket.close());
+	}
+
+	private static void sleepUntil(long nanoTime) throws InterruptedException {
+		long delay;
+		while ((delay = nanoTime - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(delay);
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	private static Duration assertNotNegative(Duration duration) {
+		if (duration.isNegative()) {
+			throw new IllegalArgumentException("The duration [" + duration + "] must not be negative");
+		}
+		return duration;
+	}
+
+	/**
+	 * A chunk of data to be forwarded.
+	 */
+	private static final class Chunk {
+		private final byte[] data;
+		/** The time (System.nanoTime) the data is to be delivered. */
+		private final long deliveryTime;
+
+		private Chunk(byte[] data, long deliveryTime) {
+			this.data = data;
+			this.deliveryTime = deliveryTime;
+		}
+	}
+}
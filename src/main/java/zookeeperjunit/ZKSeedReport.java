@@ -0,0 +1,76 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.time.Duration;
+
+/**
+ * The outcome of {@link CloseableZooKeeper#seed(java.nio.file.Path) seeding} data from a file.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKSeedReport {
+
+	private final long nodeCount;
+	private final Duration elapsed;
+
+	ZKSeedReport(long nodeCount, Duration elapsed) {
+		this.nodeCount = nodeCount;
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * The number of nodes read from the file, missing parents created on the fly are not counted.
+	 *
+	 * @return The node count
+	 * @since 1.3
+	 */
+	public long nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * The time it took to read the file and create all nodes.
+	 *
+	 * @return The elapsed time
+	 * @since 1.3
+	 */
+	public Duration elapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * The load throughput.
+	 *
+	 * @return The number of nodes per second
+	 * @since 1.3
+	 */
+	public double throughput() {
+		long nanos = elapsed.toNanos();
+		return nanos == 0 ? 0 : nodeCount * 1_000_000_000d / nanos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("ZKSeedReport[nodeCount=%d elapsed=%dms throughput=%.1f/s]", nodeCount, elapsed.toMillis(), throughput());
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+
+import java.io.File;
+
+import javascalautils.Option;
+
+/**
+ * The settings of the ZooKeeper instances created by a {@link ZKFactory}. <br>
+ * Immutable, each setting is changed by creating a copy so the instances are unaffected by any later re-configuration of the factory.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class ZKServerSettings {
+
+	/** The settings used unless anything else is configured. */
+	static final ZKServerSettings defaults = new ZKServerSettings(0, new File("target"), 50, false, ZKTiming.defaults, ZKServerTransport.defaults, None(), None());
+
+	/** The port to listen to, <tt>0</tt> for an automatically assigned port. */
+	final int port;
+
+	/** The directory under which the data directory of each instance is created. */
+	final File rootDir;
+
+	/** The max number of connections per client host. */
+	final int maxClientConnections;
+
+	/** If the transaction log and snapshots are to be kept in memory instead of on disc. */
+	final boolean inMemoryStorage;
+
+	/** The tick time and session timeouts. */
+	final ZKTiming timing;
+
+	/** The connection factory implementation and its settings. */
+	final ZKServerTransport transport;
+
+	/** The baseline data, applied each time an instance is started with empty storage. */
+	final Option<ZKTemplate> template;
+
+	/** The clock driving the session tracking, if not provided the wall clock is used. */
+	final Option<ZKClock> clock;
+
+	private ZKServerSettings(int port, File rootDir, int maxClientConnections, boolean inMemoryStorage, ZKTiming timing, ZKServerTransport transport, Option<ZKTemplate> template, Option<ZKClock> clock) {
+		this.port = port;
+		this.rootDir = rootDir;
+		this.maxClientConnections = maxClientConnections;
+		this.inMemoryStorage = inMemoryStorage;
+		this.timing = timing;
+		this.transport = transport;
+		this.template = template;
+		this.clock = clock;
+	}
+
+	/**
+	 * Creates a copy with a new port.
+	 *
+	 * @param port
+	 *            The port, <tt>0</tt> for an automatically assigned port
+	 * @return The new settings
+	 */
+	ZKServerSettings withPort(int port) {
+		return new ZKServerSettings(port, rootDir, maxClientConnections, inMemoryStorage, timing, transport, template, clock);
+	}
+
+	/**
+	 * Creates a copy with a new root directory.
+	 *
+	 * @param rootDir
+	 *            The directory under which the data directory of each instance is created
+	 * @return The new settings
+	 */
+	ZKServerSettings withRootDir(File rootDir) {
+		return new ZKServerSettings(port, rootDir, maxClientConnections, inMemoryStorage, timing, transport, template, clock);
+	}
+
+	/**
+	 * Creates a copy with a new max number of client connections.
+	 *
+	 * @param maxClientConnections
+	 *            The max number of connections per client host
+	 * @return The new settings
+	 */
+	ZKServerSettings withMaxClientConnections(int maxClientConnections) {
+		return new ZKServerSettings(port, rootDir, maxClientConnections, inMemoryStorage, timing, transport, template, clock);
+	}
+
+	/**
+	 * Creates a copy using in-memory storage.
+	 *
+	 * @return The new settings
+	 */
+	ZKServerSettings withInMemoryStorage() {
+		return new ZKServerSettings(port, rootDir, maxClientConnections, true, timing, transport, template, clock);
+	}
+
+	/**
+	 * Creates a copy with a new timing.
+	 *
+	 * @param timing
+	 *            The tick time and session timeouts
+	 * @return The new settings
+	 */
+	ZKServerSettings withTiming(ZKTiming timing) {
+		return new ZKServerSettings(port, rootDir, maxClientConnections, inMemoryStorage, timing, transport, template, clock);
+	}
+
+	/**
+	 * Creates a copy with a new transport.
+	 *
+	 * @param transport
+	 *            The connection factory implementation and its settings
+	 * @return The new settings
+	 */
+	ZKServerSettings withTransport(ZKServerTransport transport) {
+		return new ZKServerSettings(port, rootDir, maxClientConnections, inMemoryStorage, timing, transport, template, clock);
+	}
+
+	/**
+	 * Creates a copy with a template.
+	 *
+	 * @param template
+	 *            The baseline data
+	 * @return The new settings
+	 */
+	ZKServerSettings withTemplate(ZKTemplate template) {
+		return new ZKServerSettings(port, rootDir, maxClientConnections, inMemoryStorage, timing, transport, Some(template), clock);
+	}
+
+	/**
+	 * Creates a copy with a clock.
+	 *
+	 * @param clock
+	 *            The clock driving the session tracking
+	 * @return The new settings
+	 */
+	ZKServerSettings withClock(ZKClock clock) {
+		return new ZKServerSettings(port, rootDir, maxClientConnections, inMemoryStorage, timing, transport, template, Some(clock));
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Some;
+import static zookeeperjunit.Util.assertLargerThanZero;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.NettyServerCnxnFactory;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+
+import javascalautils.Option;
+
+/**
+ * The network transport of a ZooKeeper instance. <br>
+ * Creates the connection factory of the server with the configured implementation and settings. <br>
+ * The worker threads and socket buffer sizes only apply to the {@link ZKTransport#NETTY Netty} transport,
+ * the {@link ZKTransport#NIO NIO} transport always serves all connections from a single selector thread. <br>
+ * Unless a transport is chosen the factory is created the way ZooKeeper does, i.e. honouring the <i>zookeeper.serverCnxnFactory</i> system property.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class ZKServerTransport {
+
+	/** The transport used unless anything else is configured. */
+	static final ZKServerTransport defaults = new ZKServerTransport(None(), 0, 0);
+
+	/** The connection factory implementation, <tt>None</tt> for the one ZooKeeper is configured to use. */
+	final Option<ZKTransport> transport;
+
+	/** The number of I/O worker threads, <tt>0</tt> for the default of Netty (twice the number of cores). */
+	final int workerThreads;
+
+	/** The size of the socket send/receive buffers in bytes, <tt>0</tt> for the O/S default. */
+	final int socketBufferSize;
+
+	/**
+	 * @param transport
+	 *            The connection factory implementation, <tt>None</tt> for the one ZooKeeper is configured to use
+	 * @param workerThreads
+	 *            The number of I/O worker threads, <tt>0</tt> for the default
+	 * @param socketBufferSize
+	 *            The size of the socket buffers in bytes, <tt>0</tt> for the default
+	 */
+	ZKServerTransport(Option<ZKTransport> transport, int workerThreads, int socketBufferSize) {
+		this.transport = transport;
+		this.workerThreads = workerThreads;
+		this.socketBufferSize = socketBufferSize;
+	}
+
+	/**
+	 * Creates a copy with a new transport.
+	 *
+	 * @param transport
+	 *            The connection factory implementation
+	 * @return The new transport
+	 */
+	ZKServerTransport withTransport(ZKTransport transport) {
+		return new ZKServerTransport(Some(transport), workerThreads, socketBufferSize);
+	}
+
+	/**
+	 * Creates a copy with a new number of worker threads.
+	 *
+	 * @param workerThreads
+	 *            The number of I/O worker threads
+	 * @return The new transport
+	 */
+	ZKServerTransport withWorkerThreads(int workerThreads) {
+		assertLargerThanZero(workerThreads);
+		return new ZKServerTransport(transport, workerThreads, socketBufferSize);
+	}
+
+	/**
+	 * Creates a copy with a new socket buffer size.
+	 *
+	 * @param socketBufferSize
+	 *            The size of the socket buffers in bytes
+	 * @return The new transport
+	 */
+	ZKServerTransport withSocketBufferSize(int socketBufferSize) {
+		assertLargerThanZero(socketBufferSize);
+		return new ZKServerTransport(transport, workerThreads, socketBufferSize);
+	}
+
+	/**
+	 * Creates and configures the connection factory.
+	 *
+	 * @param address
+	 *            The address to listen to, the Netty factory only binds when started and reports the configured port hence it must not be <tt>0</tt>
+	 * @param maxClientConnections
+	 *            The max number of connections per client host
+	 * @return The connection factory, not yet started
+	 * @throws IOException
+	 *             If failing to create or bind the factory
+	 */
+	ServerCnxnFactory createFactory(InetSocketAddress address, int maxClientConnections) throws IOException {
+		ServerCnxnFactory factory;
+		if (transport.isEmpty()) {
+			factory = ServerCnxnFactory.createFactory();
+		} else if (transport.get() == ZKTransport.NIO) {
+			factory = new NIOServerCnxnFactory();
+		} else {
+			factory = createNettyFactory();
+		}
+		factory.configure(address, maxClientConnections);
+		return factory;
+	}
+
+	/**
+	 * Checks if the factory only binds when started, it then reports the configured port instead of the bound one.
+	 *
+	 * @return If the factory binds when started
+	 */
+	boolean bindsWhenStarted() {
+		String configured = transport.map(t -> t == ZKTransport.NETTY ? NettyServerCnxnFactory.class.getName() : NIOServerCnxnFactory.class.getName())
+				.getOrElse(() -> System.getProperty(ServerCnxnFactory.ZOOKEEPER_SERVER_CNXN_FACTORY));
+		return NettyServerCnxnFactory.class.getName().equals(configured);
+	}
+
+	/**
+	 * Creates the Netty factory applying the thread and buffer settings. <br>
+	 * ZooKeeper offers no means to configure the factory, it creates its bootstrap with default settings in the (package private) constructor. <br>
+	 * The settings are instead applied to the bootstrap before the factory is bound, should the number of worker threads be set
+	 * the bootstrap is replaced by one with the same options and handlers.
+	 *
+	 * @return The factory
+	 * @throws IOException
+	 *             If failing to create the factory
+	 */
+	private ServerCnxnFactory createNettyFactory() throws IOException {
+		try {
+			Constructor<NettyServerCnxnFactory> constructor = NettyServerCnxnFactory.class.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			NettyServerCnxnFactory factory = constructor.newInstance();
+			Field field = NettyServerCnxnFactory.class.getDeclaredField("bootstrap");
+			field.setAccessible(true);
+			ServerBootstrap bootstrap = (ServerBootstrap) field.get(factory);
+			if (workerThreads > 0) {
+				ServerBootstrap tuned = new ServerBootstrap(
+						new NioServerSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool(), workerThreads));
+				tuned.setOptions(bootstrap.getOptions());
+				for (Entry<String, ChannelHandler> handler : bootstrap.getPipeline().toMap().entrySet()) {
+					tuned.getPipeline().addLast(handler.getKey(), handler.getValue());
+				}
+				// stops the threads of the default bootstrap
+				bootstrap.releaseExternalResources();
+				field.set(factory, tuned);
+				bootstrap = tuned;
+			}
+			if (socketBufferSize > 0) {
+				bootstrap.setOption("child.sendBufferSize", socketBufferSize);
+				bootstrap.setOption("child.receiveBufferSize", socketBufferSize);
+			}
+			return factory;
+		} catch (ReflectiveOperationException | LinkageError ex) {
+			throw new IOException("Failed to create the Netty connection factory, is Netty on the classpath?", ex);
+		}
+	}
+}
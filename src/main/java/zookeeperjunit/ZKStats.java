@@ -0,0 +1,224 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.io.File;
+
+import org.apache.zookeeper.server.DataTree;
+import org.apache.zookeeper.server.ServerStats;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+/**
+ * A point-in-time snapshot of the statistics of a running {@link ZKInstance}. <br>
+ * Created using {@link ZKInstance#stats()}, the request statistics (latency, packets) are counted since the instance was started or since the last
+ * {@link ZKInstance#resetStats() reset}. <br>
+ * The data statistics (nodes, watches, data size, txn log) always reflect the current state of the instance.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKStats {
+
+	private final long minLatency;
+	private final long avgLatency;
+	private final long maxLatency;
+	private final long packetsReceived;
+	private final long packetsSent;
+	private final long outstandingRequests;
+	private final int aliveConnections;
+	private final int nodeCount;
+	private final int watchCount;
+	private final int ephemeralCount;
+	private final long approximateDataSize;
+	private final long txnLogSize;
+
+	private ZKStats(ServerStats stats, DataTree tree, int aliveConnections, long txnLogSize) {
+		this.minLatency = stats.getMinLatency();
+		this.avgLatency = stats.getAvgLatency();
+		this.maxLatency = stats.getMaxLatency();
+		this.packetsReceived = stats.getPacketsReceived();
+		this.packetsSent = stats.getPacketsSent();
+		this.outstandingRequests = stats.getOutstandingRequests();
+		this.aliveConnections = aliveConnections;
+		this.nodeCount = tree.getNodeCount();
+		this.watchCount = tree.getWatchCount();
+		this.ephemeralCount = tree.getEphemeralsCount();
+		this.approximateDataSize = tree.approximateDataSize();
+		this.txnLogSize = txnLogSize;
+	}
+
+	/**
+	 * Captures the statistics of the provided server.
+	 *
+	 * @param server
+	 *            The server
+	 * @return The statistics
+	 */
+	static ZKStats of(ZooKeeperServer server) {
+		return new ZKStats(server.serverStats(), server.getZKDatabase().getDataTree(), server.getNumAliveConnections(), txnLogSize(server.getTxnLogFactory().getDataDir()));
+	}
+
+	/**
+	 * The shortest time a request took to process since the statistics were reset.
+	 *
+	 * @return The latency in milliseconds
+	 * @since 1.3
+	 */
+	public long minLatency() {
+		return minLatency;
+	}
+
+	/**
+	 * The average time a request took to process since the statistics were reset.
+	 *
+	 * @return The latency in milliseconds
+	 * @since 1.3
+	 */
+	public long avgLatency() {
+		return avgLatency;
+	}
+
+	/**
+	 * The longest time a request took to process since the statistics were reset.
+	 *
+	 * @return The latency in milliseconds
+	 * @since 1.3
+	 */
+	public long maxLatency() {
+		return maxLatency;
+	}
+
+	/**
+	 * The number of packets received from clients since the statistics were reset.
+	 *
+	 * @return The number of packets
+	 * @since 1.3
+	 */
+	public long packetsReceived() {
+		return packetsReceived;
+	}
+
+	/**
+	 * The number of packets sent to clients since the statistics were reset.
+	 *
+	 * @return The number of packets
+	 * @since 1.3
+	 */
+	public long packetsSent() {
+		return packetsSent;
+	}
+
+	/**
+	 * The number of requests queued in the server at the time of the snapshot.
+	 *
+	 * @return The number of requests
+	 * @since 1.3
+	 */
+	public long outstandingRequests() {
+		return outstandingRequests;
+	}
+
+	/**
+	 * The number of client connections at the time of the snapshot.
+	 *
+	 * @return The number of connections
+	 * @since 1.3
+	 */
+	public int aliveConnections() {
+		return aliveConnections;
+	}
+
+	/**
+	 * The number of nodes in the data tree. <br>
+	 * This includes the nodes ZooKeeper creates for itself, i.e. the root and the <i>/zookeeper</i> nodes.
+	 *
+	 * @return The node count
+	 * @since 1.3
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * The number of watches set on the data tree.
+	 *
+	 * @return The watch count
+	 * @since 1.3
+	 */
+	public int watchCount() {
+		return watchCount;
+	}
+
+	/**
+	 * The number of ephemeral nodes in the data tree.
+	 *
+	 * @return The ephemeral count
+	 * @since 1.3
+	 */
+	public int ephemeralCount() {
+		return ephemeralCount;
+	}
+
+	/**
+	 * The approximate size of the data tree, i.e. the sum of the length of all paths and data.
+	 *
+	 * @return The size in bytes
+	 * @since 1.3
+	 */
+	public long approximateDataSize() {
+		return approximateDataSize;
+	}
+
+	/**
+	 * The size of the transaction log files on disc, including the space ZooKeeper pre-allocates for the files. <br>
+	 * Always <tt>0</tt> for an instance using {@link ZKFactory#withInMemoryStorage() in-memory storage}.
+	 *
+	 * @return The size in bytes
+	 * @since 1.3
+	 */
+	public long txnLogSize() {
+		return txnLogSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ZKStats[latency min/avg/max=" + minLatency + "/" + avgLatency + "/" + maxLatency + " packetsReceived=" + packetsReceived + " packetsSent="
+				+ packetsSent + " outstandingRequests=" + outstandingRequests + " aliveConnections=" + aliveConnections + " nodeCount=" + nodeCount
+				+ " watchCount=" + watchCount + " ephemeralCount=" + ephemeralCount + " approximateDataSize=" + approximateDataSize + " txnLogSize=" + txnLogSize
+				+ "]";
+	}
+
+	/**
+	 * Sums the size of all transaction log files in the provided directory.
+	 *
+	 * @param dir
+	 *            The directory
+	 * @return The size in bytes
+	 */
+	private static long txnLogSize(File dir) {
+		File[] logs = dir.listFiles((d, name) -> name.startsWith("log."));
+		long size = 0;
+		for (File log : logs == null ? new File[0] : logs) {
+			size += log.length();
+		}
+		return size;
+	}
+}
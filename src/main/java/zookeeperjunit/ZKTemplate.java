@@ -0,0 +1,303 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.TryCompanion.Try;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.apache.jute.BinaryOutputArchive;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.server.DataTree;
+import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+import org.apache.zookeeper.server.util.SerializeUtils;
+
+import javascalautils.Try;
+
+/**
+ * A baseline data tree that instances can be {@link ZKFactory#fromTemplate(ZKTemplate) created from}. <br>
+ * The template is built once into a snapshot file, each instance created from it then starts with its own data directory
+ * holding a hard link to the snapshot (or a copy should the file system not support hard links). <br>
+ * No nodes are created over the network, in fact the snapshot is only loaded when a non-empty instance is restarted.
+ * Same as for a {@link ZKCheckpoint} a spare copy of the data tree is prepared in the background and handed directly to the next instance started,
+ * hence starting an instance from a template costs about the same as starting an empty instance. <br>
+ * New snapshots and transaction logs are written as new files. Should an instance write a snapshot with the same name as the linked one
+ * (a checkpoint restored before any write) the shared file is first unlinked, hence the instances never affect each other nor the template. <br>
+ * For instances using {@link ZKFactory#withInMemoryStorage() in-memory storage} the serialized snapshot is shared in memory instead.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKTemplate {
+
+	/** The zxid stamped on all nodes of a template built from a seed file. */
+	private static final long seedZxid = 1;
+
+	/** The directory holding the snapshot file. */
+	private final File dir;
+
+	/** The zxid of the snapshot. */
+	private final long zxid;
+
+	/** The number of nodes in the template. */
+	private final int nodeCount;
+
+	/** Provides prepared copies of the data tree. */
+	private final ZKCheckpoint checkpoint;
+
+	/** The snapshot in the format used by the in-memory storage, created on demand. */
+	private byte[] inMemorySnapshot;
+
+	private ZKTemplate(File dir, ZKCheckpoint checkpoint) {
+		this.dir = dir;
+		this.zxid = checkpoint.zxid();
+		this.nodeCount = checkpoint.nodeCount();
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Creates a template of the data in the provided checkpoint. <br>
+	 * The snapshot is stored in the <i>target</i> directory.
+	 *
+	 * @param checkpoint
+	 *            The checkpoint
+	 * @return The template
+	 * @since 1.3
+	 */
+	public static Try<ZKTemplate> of(ZKCheckpoint checkpoint) {
+		return of(checkpoint, new File("target"));
+	}
+
+	/**
+	 * Creates a template of the data in the provided checkpoint. <br>
+	 * Hard links cannot span file systems, the directory should reside on the same file system as the {@link ZKFactory#withRootDir(File) root dir} of the instances.
+	 *
+	 * @param checkpoint
+	 *            The checkpoint
+	 * @param rootDir
+	 *            The directory in which to store the snapshot
+	 * @return The template
+	 * @since 1.3
+	 */
+	public static Try<ZKTemplate> of(ZKCheckpoint checkpoint, File rootDir) {
+		return Try(() -> {
+			DataTree tree = checkpoint.take();
+			tree.lastProcessedZxid = checkpoint.zxid();
+			return new ZKTemplate(write(tree, rootDir), checkpoint);
+		});
+	}
+
+	/**
+	 * Creates a template from a tree description file. <br>
+	 * The file has the same format as used for {@link CloseableZooKeeper#seed(Path) seeding}, the nodes are added directly to a data tree without involving any server. <br>
+	 * The snapshot is stored in the <i>target</i> directory.
+	 *
+	 * @param file
+	 *            The file
+	 * @return The template
+	 * @since 1.3
+	 */
+	public static Try<ZKTemplate> of(Path file) {
+		return of(file, new File("target"));
+	}
+
+	/**
+	 * Creates a template from a tree description file. <br>
+	 * The file has the same format as used for {@link CloseableZooKeeper#seed(Path) seeding}, the nodes are added directly to a data tree without involving any server. <br>
+	 * Hard links cannot span file systems, the directory should reside on the same file system as the {@link ZKFactory#withRootDir(File) root dir} of the instances.
+	 *
+	 * @param file
+	 *            The file
+	 * @param rootDir
+	 *            The directory in which to store the snapshot
+	 * @return The template
+	 * @since 1.3
+	 */
+	public static Try<ZKTemplate> of(Path file, File rootDir) {
+		return Try(() -> {
+			DataTree tree = new DataTree();
+			long time = System.currentTimeMillis();
+			try (Stream<Entry<String, byte[]>> nodes = SeedFile.read(file)) {
+				Iterator<Entry<String, byte[]>> iterator = nodes.iterator();
+				while (iterator.hasNext()) {
+					Entry<String, byte[]> node = iterator.next();
+					create(tree, node.getKey(), node.getValue(), time);
+				}
+			}
+			tree.lastProcessedZxid = seedZxid;
+			return new ZKTemplate(write(tree, rootDir), ZKCheckpoint.of(tree));
+		});
+	}
+
+	/**
+	 * The number of nodes in the template, including the nodes always present in ZooKeeper (e.g. <i>/zookeeper</i>).
+	 *
+	 * @return The node count
+	 * @since 1.3
+	 */
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * The zxid of the last transaction captured by the template.
+	 *
+	 * @return The zxid
+	 * @since 1.3
+	 */
+	public long zxid() {
+		return zxid;
+	}
+
+	/**
+	 * Deletes the snapshot of the template. <br>
+	 * Instances already created from the template are not affected, their hard links keep the data alive.
+	 *
+	 * @since 1.3
+	 */
+	public void destroy() {
+		TrashReclaimer.discard(dir);
+	}
+
+	/**
+	 * Populates the snapshot directory of an instance with the snapshot of the template. <br>
+	 * The snapshot is hard linked if possible, else copied.
+	 *
+	 * @param snapDir
+	 *            The snapshot directory of the instance, the same directory as provided to {@link FileTxnSnapLog}
+	 * @throws IOException
+	 *             If failing to link/copy the snapshot
+	 */
+	void populate(File snapDir) throws IOException {
+		Path source = versionDir(dir);
+		Path target = Files.createDirectories(versionDir(snapDir));
+		try (Stream<Path> files = Files.list(source)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				link(file, target.resolve(file.getFileName()));
+			}
+		}
+	}
+
+	/**
+	 * Takes a prepared copy of the data tree to be used by a new instance. <br>
+	 * Should the copy not yet be ready this blocks until it is.
+	 *
+	 * @return The data tree
+	 * @throws Throwable
+	 *             If the copy could not be prepared
+	 */
+	DataTree take() throws Throwable {
+		DataTree tree = checkpoint.take();
+		tree.lastProcessedZxid = zxid;
+		return tree;
+	}
+
+	/**
+	 * The snapshot in the format used by {@link InMemoryTxnSnapLog}. <br>
+	 * The snapshot is read from disc on the first invocation, the returned array is shared and must not be modified.
+	 *
+	 * @return The serialized snapshot
+	 * @throws IOException
+	 *             If failing to read the snapshot
+	 */
+	synchronized byte[] inMemorySnapshot() throws IOException {
+		if (inMemorySnapshot == null) {
+			DataTree tree = new DataTree();
+			FileTxnSnapLog log = new FileTxnSnapLog(dir, dir);
+			try {
+				log.restore(tree, new ConcurrentHashMap<>(), (header, record) -> {
+				});
+			} finally {
+				log.close();
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			SerializeUtils.serializeSnapshot(tree, BinaryOutputArchive.getArchive(out), new ConcurrentHashMap<>());
+			inMemorySnapshot = out.toByteArray();
+		}
+		return inMemorySnapshot;
+	}
+
+	/**
+	 * Writes the tree as a snapshot file into a new directory.
+	 *
+	 * @return The directory
+	 */
+	private static File write(DataTree tree, File rootDir) throws IOException {
+		File dir = Util.createUniqueDir(rootDir, "zk-template-");
+		FileTxnSnapLog log = new FileTxnSnapLog(dir, dir);
+		try {
+			log.save(tree, new ConcurrentHashMap<>());
+		} finally {
+			log.close();
+		}
+		return dir;
+	}
+
+	/**
+	 * Creates a node including any missing parents, the parents are created with empty data. <br>
+	 * A node listed after one of its children already exists as a parent, it then only gets its data set.
+	 */
+	private static void create(DataTree tree, String path, byte[] data, long time) throws KeeperException {
+		if (tree.getNode(path) != null) {
+			tree.setData(path, data, 0, seedZxid, time);
+			return;
+		}
+		createParents(tree, path, time);
+		tree.createNode(path, data, OPEN_ACL_UNSAFE, 0, -1, seedZxid, time);
+	}
+
+	/**
+	 * Creates all missing parents of the path with empty data, starting with the top most.
+	 */
+	private static void createParents(DataTree tree, String path, long time) throws KeeperException {
+		int pos = path.lastIndexOf('/');
+		if (pos < 1) {
+			return;
+		}
+		String parent = path.substring(0, pos);
+		if (tree.getNode(parent) == null) {
+			createParents(tree, parent, time);
+			tree.createNode(parent, new byte[0], OPEN_ACL_UNSAFE, 0, -1, seedZxid, time);
+		}
+	}
+
+	/**
+	 * Hard links the file, falls back to copying should hard links not be supported.
+	 */
+	private static void link(Path source, Path target) throws IOException {
+		try {
+			Files.createLink(target, source);
+		} catch (UnsupportedOperationException | IOException ex) {
+			Files.copy(source, target);
+		}
+	}
+
+	/**
+	 * The directory {@link FileTxnSnapLog} stores its files in.
+	 */
+	private static Path versionDir(File dir) {
+		return dir.toPath().resolve(FileTxnSnapLog.version + FileTxnSnapLog.VERSION);
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static zookeeperjunit.Util.assertLargerThanZero;
+
+/**
+ * The timing profile of a ZooKeeper instance. <br>
+ * The tick time is the base time unit of the server, e.g. sessions are checked for expiry once per tick. <br>
+ * The session timeout requested by a client is negotiated by the server to be within the min/max bounds.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+final class ZKTiming {
+
+	/** The timing used unless anything else is configured. */
+	static final ZKTiming defaults = new ZKTiming(2000, 10000, 10000);
+
+	/** The tick time in milliseconds. */
+	final int tickTime;
+
+	/** The min session timeout in milliseconds. */
+	final int minSessionTimeout;
+
+	/** The max session timeout in milliseconds. */
+	final int maxSessionTimeout;
+
+	/**
+	 * @param tickTime
+	 *            The tick time in milliseconds
+	 * @param minSessionTimeout
+	 *            The min session timeout in milliseconds
+	 * @param maxSessionTimeout
+	 *            The max session timeout in milliseconds
+	 */
+	ZKTiming(int tickTime, int minSessionTimeout, int maxSessionTimeout) {
+		assertLargerThanZero(tickTime);
+		assertLargerThanZero(minSessionTimeout);
+		if (maxSessionTimeout < minSessionTimeout) {
+			throw new IllegalArgumentException("The max session timeout [" + maxSessionTimeout + "] must not be less than the min [" + minSessionTimeout + "]");
+		}
+		this.tickTime = tickTime;
+		this.minSessionTimeout = minSessionTimeout;
+		this.maxSessionTimeout = maxSessionTimeout;
+	}
+
+	/**
+	 * Creates a copy with a new tick time.
+	 *
+	 * @param tickTime
+	 *            The tick time in milliseconds
+	 * @return The new timing
+	 */
+	ZKTiming withTickTime(int tickTime) {
+		return new ZKTiming(tickTime, minSessionTimeout, maxSessionTimeout);
+	}
+
+	/**
+	 * Creates a copy with new session timeout bounds.
+	 *
+	 * @param minSessionTimeout
+	 *            The min session timeout in milliseconds
+	 * @param maxSessionTimeout
+	 *            The max session timeout in milliseconds
+	 * @return The new timing
+	 */
+	ZKTiming withSessionTimeouts(int minSessionTimeout, int maxSessionTimeout) {
+		return new ZKTiming(tickTime, minSessionTimeout, maxSessionTimeout);
+	}
+
+	/**
+	 * The number of ticks a follower may take to connect and sync to the leader. <br>
+	 * At least 10 ticks and never less than 20 seconds, a short tick time shall not make the ensemble unable to form.
+	 *
+	 * @return The number of ticks
+	 */
+	int initLimit() {
+		return Math.max(10, 20000 / tickTime);
+	}
+
+	/**
+	 * The number of ticks a follower may be out of sync with the leader. <br>
+	 * At least 5 ticks and never less than 10 seconds.
+	 *
+	 * @return The number of ticks
+	 */
+	int syncLimit() {
+		return Math.max(5, 10000 / tickTime);
+	}
+}
@@ -0,0 +1,29 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+/**
+ * The network transport used by the server to accept and serve client connections.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public enum ZKTransport {
+	/** The default transport of ZooKeeper, a single selector thread serving all connections using plain Java NIO. */
+	NIO,
+	/** The transport based on <a href="http://netty.io">Netty</a>, serving the connections using a pool of I/O worker threads. */
+	NETTY
+}
@@ -0,0 +1,192 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javascalautils.OptionCompanion.None;
+import static javascalautils.OptionCompanion.Option;
+import static javascalautils.OptionCompanion.Some;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javascalautils.Option;
+
+/**
+ * An in-memory copy of a subtree of ZooKeeper data. <br>
+ * All paths are relative to the root of the tree, the root itself being <tt>/</tt>. This allows for comparing trees located at different paths. <br>
+ * A tree is either {@link CloseableZooKeeper#export(String) exported} from a server or created from {@link #of(Map) plain data}, e.g. as the expected
+ * data in {@link ZooKeeperAssert#assertTreeEquals(String, ZKTree)}.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKTree {
+
+	/** The max number of characters of data shown in a diff. */
+	private static final int maxDataLength = 40;
+
+	/** The max number of differences listed by {@link #describeDiff(ZKTree)}. */
+	static final int maxDiffLines = 20;
+
+	private final SortedMap<String, ZKNode> nodes;
+
+	/** The session and root the tree was exported from, None if created from plain data. */
+	private final Option<String> origin;
+
+	ZKTree(SortedMap<String, ZKNode> nodes, Option<String> origin) {
+		this.nodes = Collections.unmodifiableSortedMap(nodes);
+		this.origin = origin;
+	}
+
+	/**
+	 * Creates a tree from the provided data. <br>
+	 * Missing parents, including the root, are added with empty data.
+	 *
+	 * @param data
+	 *            The relative paths and data of the nodes
+	 * @return The tree
+	 * @since 1.3
+	 */
+	public static ZKTree of(Map<String, byte[]> data) {
+		SortedMap<String, ZKNode> nodes = new TreeMap<>();
+		data.forEach((path, bytes) -> {
+			for (String parent = parent(path); parent != null; parent = parent(parent)) {
+				nodes.putIfAbsent(parent, new ZKNode(parent, new byte[0], None()));
+			}
+			nodes.put(path, new ZKNode(path, bytes, None()));
+		});
+		nodes.putIfAbsent("/", new ZKNode("/", new byte[0], None()));
+		return new ZKTree(nodes, None());
+	}
+
+	/**
+	 * The number of nodes in the tree, including the root.
+	 *
+	 * @return The size
+	 * @since 1.3
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Get the node with the provided relative path.
+	 *
+	 * @param path
+	 *            The relative path
+	 * @return The node, None if not part of the tree
+	 * @since 1.3
+	 */
+	public Option<ZKNode> node(String path) {
+		return Option(nodes.get(path));
+	}
+
+	/**
+	 * All nodes of the tree sorted on their path.
+	 *
+	 * @return The nodes
+	 * @since 1.3
+	 */
+	public Collection<ZKNode> nodes() {
+		return nodes.values();
+	}
+
+	/**
+	 * The session and root the tree was exported from. <br>
+	 * The <tt>mzxid</tt> of a node is only meaningful within the same server and path, data of a previous export is only re-used given the same origin.
+	 *
+	 * @return The origin, None if created from plain data
+	 */
+	Option<String> origin() {
+		return origin;
+	}
+
+	/**
+	 * Compares this tree (the expected) to the provided tree (the actual). <br>
+	 * Each difference is described on a single line: <br>
+	 * <tt>- path</tt> for a node missing in the actual tree <br>
+	 * <tt>+ path</tt> for an unexpected node in the actual tree <br>
+	 * <tt>~ path [expected] != [actual]</tt> for a node with different data
+	 *
+	 * @param actual
+	 *            The tree to compare with
+	 * @return The differences sorted on path, empty if the trees are equal
+	 * @since 1.3
+	 */
+	public List<String> diff(ZKTree actual) {
+		List<String> diff = new ArrayList<>();
+		SortedMap<String, ZKNode> all = new TreeMap<>(actual.nodes);
+		all.putAll(nodes);
+		all.keySet().forEach(path -> {
+			ZKNode expectedNode = nodes.get(path);
+			ZKNode actualNode = actual.nodes.get(path);
+			if (actualNode == null) {
+				diff.add("- " + path);
+			} else if (expectedNode == null) {
+				diff.add("+ " + path);
+			} else if (!Arrays.equals(expectedNode.data(), actualNode.data())) {
+				diff.add("~ " + path + " [" + format(expectedNode.data()) + "] != [" + format(actualNode.data()) + "]");
+			}
+		});
+		return diff;
+	}
+
+	/**
+	 * Describes the differences between this tree (the expected) and the provided tree (the actual). <br>
+	 * At most {@value #maxDiffLines} differences are listed, as described by {@link #diff(ZKTree)}.
+	 *
+	 * @param actual
+	 *            The tree to compare with
+	 * @return The description of the differences, None if the trees are equal
+	 */
+	Option<String> describeDiff(ZKTree actual) {
+		List<String> diff = diff(actual);
+		if (diff.isEmpty()) {
+			return None();
+		}
+		String lines = diff.stream().limit(maxDiffLines).collect(Collectors.joining("\n"));
+		String more = diff.size() > maxDiffLines ? "\n...and " + (diff.size() - maxDiffLines) + " more" : "";
+		return Some(diff.size() + " node(s)\n" + lines + more);
+	}
+
+	/**
+	 * The parent of the provided path.
+	 *
+	 * @param path
+	 *            The path
+	 * @return The parent, <code>null</code> for the root
+	 */
+	private static String parent(String path) {
+		int pos = path.lastIndexOf('/');
+		if (pos < 0 || path.equals("/")) {
+			return null;
+		}
+		return pos == 0 ? "/" : path.substring(0, pos);
+	}
+
+	private static String format(byte[] data) {
+		String text = new String(data, UTF_8);
+		return text.length() > maxDataLength ? text.substring(0, maxDataLength) + "...(" + data.length + " bytes)" : text;
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+
+/**
+ * A watch event captured by a {@link ZKWatchRecorder}.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKWatchEvent {
+
+	private final long sequence;
+	private final long nanoTime;
+	private final EventType type;
+	private final KeeperState state;
+	private final String path;
+
+	ZKWatchEvent(long sequence, long nanoTime, WatchedEvent event) {
+		this.sequence = sequence;
+		this.nanoTime = nanoTime;
+		this.type = event.getType();
+		this.state = event.getState();
+		this.path = event.getPath();
+	}
+
+	/**
+	 * The sequence number of the event, the first recorded event has sequence <tt>0</tt>.
+	 *
+	 * @return The sequence number
+	 * @since 1.3
+	 */
+	public long sequence() {
+		return sequence;
+	}
+
+	/**
+	 * The time the event was received by the client as given by {@link System#nanoTime()}.
+	 *
+	 * @return The time in nanoseconds
+	 * @since 1.3
+	 */
+	public long nanoTime() {
+		return nanoTime;
+	}
+
+	/**
+	 * The type of the event, {@link EventType#None} for changes in the connection state.
+	 *
+	 * @return The type
+	 * @since 1.3
+	 */
+	public EventType type() {
+		return type;
+	}
+
+	/**
+	 * The connection state at the time of the event.
+	 *
+	 * @return The state
+	 * @since 1.3
+	 */
+	public KeeperState state() {
+		return state;
+	}
+
+	/**
+	 * The path of the node the event relates to.
+	 *
+	 * @return The path, <code>null</code> for changes in the connection state
+	 * @since 1.3
+	 */
+	public String path() {
+		return path;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ZKWatchEvent[" + sequence + " " + type + " " + path + " " + state + "]";
+	}
+}
@@ -0,0 +1,370 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.TryCompanion.Try;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import org.apache.zookeeper.ZooKeeper;
+
+import javascalautils.Try;
+import javascalautils.Unit;
+
+/**
+ * Records all watch events on a subtree. <br>
+ * Data and child watches are set on every node of the subtree and re-armed each time they are triggered, new nodes are watched as they are created.
+ * <br>
+ * The events are captured into a lock-free bounded ring buffer with a nanosecond timestamp, once full the oldest events are overwritten. <br>
+ * All watches are set and re-armed using asynchronous requests from the event thread, i.e. recording never blocks the client. <br>
+ * Note that ZooKeeper watches are one-shot, a change happening between a watch being triggered and it being re-armed is not notified. <br>
+ * Should re-arming a watch fail (e.g. the session expired) the recording is incomplete, the failure is then reported by {@link #awaitEvents(long, Duration)}. <br>
+ * Example of usage:
+ * 
+ * <pre>
+ * try (ZKWatchRecorder recorder = zookeeper.recordWatches("/election").get()) {
+ * 	// trigger a leader change
+ * 	assertTrue(recorder.count() &lt;= 3);
+ * }
+ * </pre>
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKWatchRecorder implements Closeable {
+
+	/** The interval for polling the number of recorded events, in nanoseconds. */
+	private static final long pollInterval = 100_000;
+
+	private final ZooKeeper zooKeeper;
+	private final String root;
+
+	/** The ring buffer, the size is always a power of two. */
+	private final AtomicReferenceArray<ZKWatchEvent> buffer;
+	private final int mask;
+
+	/** The sequence of the next event to record. */
+	private final AtomicLong next = new AtomicLong();
+
+	/** The sequence of the first event visible to the queries, moved by {@link #clear()}. */
+	private volatile long first = 0;
+
+	/** The paths with armed watches. */
+	private final Set<String> watched = ConcurrentHashMap.newKeySet();
+
+	/** The number of outstanding arming requests, used to await the arming. */
+	private final AtomicInteger arming = new AtomicInteger();
+
+	/** The first failure to arm a watch, the recording is incomplete from that point. */
+	private final AtomicReference<KeeperException> failure = new AtomicReference<>();
+
+	private final Watcher watcher = this::process;
+
+	private volatile boolean closed = false;
+
+	private ZKWatchRecorder(ZooKeeper zooKeeper, String root, int capacity) {
+		Util.assertLargerThanZero(capacity);
+		int size = Integer.highestOneBit(capacity);
+		size = size < capacity ? size << 1 : size;
+		this.zooKeeper = zooKeeper;
+		this.root = root;
+		this.buffer = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Starts recording watch events on the provided path and all of its children. <br>
+	 * Returns once the watches are set on all existing nodes. The path need not exist, it is then recorded once created.
+	 *
+	 * @param zooKeeper
+	 *            The connection to use
+	 * @param path
+	 *            The root of the subtree
+	 * @param capacity
+	 *            The number of events to keep, rounded up to the nearest power of two
+	 * @return The result of the operation, a Success with the recorder
+	 */
+	static Try<ZKWatchRecorder> apply(ZooKeeper zooKeeper, String path, int capacity) {
+		return Try(() -> {
+			ZKWatchRecorder recorder = new ZKWatchRecorder(zooKeeper, path, capacity);
+			recorder.arm(path);
+			recorder.awaitArmed();
+			return recorder;
+		});
+	}
+
+	/**
+	 * All recorded events still kept in the buffer, in the order they were received.
+	 *
+	 * @return The events
+	 * @since 1.3
+	 */
+	public List<ZKWatchEvent> events() {
+		long end = next.get();
+		long start = Math.max(first, end - buffer.length());
+		List<ZKWatchEvent> events = new ArrayList<>((int) (end - start));
+		for (long sequence = start; sequence < end; sequence++) {
+			ZKWatchEvent event = buffer.get((int) (sequence & mask));
+			// the slot may have been overwritten since the end was read
+			if (event != null && event.sequence() == sequence) {
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * All recorded events of the provided type still kept in the buffer.
+	 *
+	 * @param type
+	 *            The type
+	 * @return The events
+	 * @since 1.3
+	 */
+	public List<ZKWatchEvent> events(EventType type) {
+		return events(event -> event.type() == type);
+	}
+
+	/**
+	 * All recorded events matching the provided filter still kept in the buffer.
+	 *
+	 * @param filter
+	 *            The filter
+	 * @return The events
+	 * @since 1.3
+	 */
+	public List<ZKWatchEvent> events(Predicate<ZKWatchEvent> filter) {
+		return events().stream().filter(filter).collect(Collectors.toList());
+	}
+
+	/**
+	 * The number of events recorded since the recording started or was {@link #clear() cleared}, including events no longer kept in the buffer.
+	 *
+	 * @return The number of events
+	 * @since 1.3
+	 */
+	public long count() {
+		return next.get() - first;
+	}
+
+	/**
+	 * The number of events that have been overwritten in the buffer since the recording started or was {@link #clear() cleared}.
+	 *
+	 * @return The number of events
+	 * @since 1.3
+	 */
+	public long overwritten() {
+		return Math.max(0, count() - buffer.length());
+	}
+
+	/**
+	 * The rate of the events kept in the buffer, i.e. the number of events divided by the time between the first and the last event.
+	 *
+	 * @return The number of events per second, zero if less than two events are kept
+	 * @since 1.3
+	 */
+	public double rate() {
+		List<ZKWatchEvent> events = events();
+		if (events.size() < 2) {
+			return 0;
+		}
+		long nanos = events.get(events.size() - 1).nanoTime() - events.get(0).nanoTime();
+		return nanos == 0 ? 0 : (events.size() - 1) * 1_000_000_000d / nanos;
+	}
+
+	/**
+	 * The number of events received within the most recent duration.
+	 *
+	 * @param window
+	 *            The duration
+	 * @return The number of events
+	 * @since 1.3
+	 */
+	public long count(Duration window) {
+		long since = System.nanoTime() - window.toNanos();
+		return events(event -> event.nanoTime() - since >= 0).size();
+	}
+
+	/**
+	 * Waits until at least the provided number of events have been recorded since the recording started or was {@link #clear() cleared}. <br>
+	 * Also waits for the watches triggered by the events to be re-armed, i.e. any change made after this returns is recorded.
+	 *
+	 * @param count
+	 *            The number of events
+	 * @param timeout
+	 *            The max time to wait
+	 * @return Success once the events are recorded, Failure(TimeoutException) if not recorded in time,
+	 *         Failure(KeeperException) if a watch could not be armed
+	 * @since 1.3
+	 */
+	public Try<Unit> awaitEvents(long count, Duration timeout) {
+		return Try(() -> {
+			long deadline = System.nanoTime() + timeout.toNanos();
+			// polls the local counter, recording is not to be slowed down by notifying waiters
+			while (count() < count) {
+				throwFailure();
+				if (System.nanoTime() - deadline > 0) {
+					throw new TimeoutException("Recorded [" + count() + "] of [" + count + "] events within [" + timeout + "]");
+				}
+				LockSupport.parkNanos(pollInterval);
+			}
+			awaitArmed();
+		});
+	}
+
+	/**
+	 * Clears the recorded events, the queries only see the events recorded after this point.
+	 *
+	 * @since 1.3
+	 */
+	public void clear() {
+		first = next.get();
+	}
+
+	/**
+	 * Stops recording. <br>
+	 * Watches are no longer re-armed, the watches already set remain until triggered but their events are not recorded.
+	 *
+	 * @since 1.3
+	 */
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	private void process(WatchedEvent event) {
+		if (closed) {
+			return;
+		}
+		// tracked before the event is visible so that awaitEvents also awaits the re-arming caused by the event
+		arming.incrementAndGet();
+		// the events are only recorded by the event thread, i.e. there is a single writer
+		long sequence = next.get();
+		buffer.set((int) (sequence & mask), new ZKWatchEvent(sequence, System.nanoTime(), event));
+		next.set(sequence + 1);
+		rearm(event);
+		armed();
+	}
+
+	private void rearm(WatchedEvent event) {
+		String path = event.getPath();
+		switch (event.getType()) {
+		case NodeCreated:
+			// only the root is watched while not existing
+			arm(path);
+			break;
+		case NodeDataChanged:
+			armData(path);
+			break;
+		case NodeChildrenChanged:
+			armChildren(path);
+			break;
+		case NodeDeleted:
+			watched.remove(path);
+			// the re-creation of any other node is notified by the child watch of its parent
+			if (path.equals(root)) {
+				arm(path);
+			}
+			break;
+		default:
+			// connection state change, the client re-registers the watches itself on reconnect
+		}
+	}
+
+	/**
+	 * Sets the data and child watches on the provided path.
+	 */
+	private void arm(String path) {
+		watched.add(path);
+		armData(path);
+		armChildren(path);
+	}
+
+	private void armData(String path) {
+		arming.incrementAndGet();
+		zooKeeper.exists(path, watcher, (rc, p, ctx, stat) -> {
+			if (rc != Code.OK.intValue() && rc != Code.NONODE.intValue()) {
+				failure.compareAndSet(null, KeeperException.create(Code.get(rc), p));
+			}
+			armed();
+		}, null);
+	}
+
+	private void armChildren(String path) {
+		arming.incrementAndGet();
+		zooKeeper.getChildren(path, watcher, (rc, p, ctx, children) -> {
+			if (rc == Code.OK.intValue() && !closed) {
+				for (String child : children) {
+					String childPath = p.equals("/") ? "/" + child : p + "/" + child;
+					if (!watched.contains(childPath)) {
+						arm(childPath);
+					}
+				}
+			} else if (rc != Code.OK.intValue() && rc != Code.NONODE.intValue()) {
+				failure.compareAndSet(null, KeeperException.create(Code.get(rc), p));
+			}
+			armed();
+		}, null);
+	}
+
+	/**
+	 * Marks an arming request as completed.
+	 */
+	private void armed() {
+		if (arming.decrementAndGet() == 0) {
+			synchronized (arming) {
+				arming.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Blocks until all outstanding arming requests are completed, then throws the first arming failure if any.
+	 */
+	private void awaitArmed() throws InterruptedException, KeeperException {
+		synchronized (arming) {
+			while (arming.get() > 0) {
+				arming.wait();
+			}
+		}
+		throwFailure();
+	}
+
+	private void throwFailure() throws KeeperException {
+		KeeperException ex = failure.get();
+		if (ex != null) {
+			throw ex;
+		}
+	}
+}
@@ -0,0 +1,436 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static javascalautils.OptionCompanion.Some;
+import static javascalautils.concurrent.FutureCompanion.Future;
+import static zookeeperjunit.Util.assertLargerThanZero;
+import static zookeeperjunit.Util.assertPositive;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.apache.zookeeper.KeeperException.Code;
+
+import javascalautils.Option;
+import javascalautils.concurrent.Future;
+
+/**
+ * Generates a load of requests towards a ZooKeeper instance. <br>
+ * The requests are issued open-loop, i.e. at a fixed target rate regardless of how fast the responses arrive. <br>
+ * The latency of each request is measured from the time it was scheduled to be sent, a server (or client) not keeping up with the rate thereby shows
+ * as increased latency instead of being hidden by a lowered request rate (coordinated omission). <br>
+ * The requests are spread round-robin over a number of sessions and randomly over a set of nodes seeded under a root path before the run. <br>
+ * Example of usage:
+ * 
+ * <pre>
+ * ZKWorkloadReport report = ZKWorkload.apply(instance).withRate(5000).withDuration(Duration.ofSeconds(10)).run().result(Duration.ofMinutes(1));
+ * </pre>
+ * 
+ * The workload can also be run from the command line, see {@link #main(String[])}.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKWorkload {
+
+	/**
+	 * The types of operations in a workload.
+	 *
+	 * @since 1.3
+	 */
+	public enum Operation {
+		/** Reads the data of a node. */
+		READ,
+		/** Writes the data of a node. */
+		WRITE,
+		/** Checks if a node exists. */
+		EXISTS,
+		/** Lists the children of the root path, i.e. all seeded nodes. */
+		GET_CHILDREN
+	}
+
+	/** The max time to wait for all sessions to be established. */
+	private static final Duration connectTimeout = Duration.ofSeconds(30);
+
+	/** Provides the connect string at the time the workload is run. */
+	private final Supplier<Option<String>> connectString;
+
+	private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+	private int minPayloadSize = 100;
+	private int maxPayloadSize = 100;
+	private int sessions = 10;
+	private int rate = 1000;
+	private Duration duration = Duration.ofSeconds(10);
+	private int nodes = 100;
+	private String rootPath = "/zookeeper-junit/workload";
+
+	private ZKWorkload(Supplier<Option<String>> connectString) {
+		this.connectString = connectString;
+		withMix(80, 10, 5, 5);
+	}
+
+	/**
+	 * Creates a workload towards the provided instance. <br>
+	 * The instance is expected to be started at the time the workload is {@link #run() run}.
+	 * 
+	 * @param instance
+	 *            The instance
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public static ZKWorkload apply(ZKInstance instance) {
+		return new ZKWorkload(instance::connectString);
+	}
+
+	/**
+	 * Creates a workload towards the provided connect string.
+	 * 
+	 * @param connectString
+	 *            The connect string [host:port]
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public static ZKWorkload apply(String connectString) {
+		return new ZKWorkload(() -> Some(connectString));
+	}
+
+	/**
+	 * Sets the relative weight of each type of operation. <br>
+	 * E.g. <tt>(80, 10, 5, 5)</tt> makes 80% of the requests reads. <br>
+	 * If not provided the mix of <tt>80/10/5/5</tt> is used.
+	 * 
+	 * @param read
+	 *            The weight of {@link Operation#READ}
+	 * @param write
+	 *            The weight of {@link Operation#WRITE}
+	 * @param exists
+	 *            The weight of {@link Operation#EXISTS}
+	 * @param getChildren
+	 *            The weight of {@link Operation#GET_CHILDREN}
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public ZKWorkload withMix(int read, int write, int exists, int getChildren) {
+		assertPositive(read);
+		assertPositive(write);
+		assertPositive(exists);
+		assertPositive(getChildren);
+		assertLargerThanZero(read + write + exists + getChildren);
+		mix.put(Operation.READ, read);
+		mix.put(Operation.WRITE, write);
+		mix.put(Operation.EXISTS, exists);
+		mix.put(Operation.GET_CHILDREN, getChildren);
+		return this;
+	}
+
+	/**
+	 * Sets the size of the data seeded to the nodes and written by {@link Operation#WRITE}. <br>
+	 * The size of each payload is uniformly distributed between min and max. <br>
+	 * If not provided the size of <tt>100</tt> bytes is used.
+	 * 
+	 * @param min
+	 *            The min size in bytes
+	 * @param max
+	 *            The max size in bytes
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public ZKWorkload withPayloadSize(int min, int max) {
+		assertPositive(min);
+		if (max < min) {
+			throw new IllegalArgumentException("The max payload size [" + max + "] must not be less than the min [" + min + "]");
+		}
+		this.minPayloadSize = min;
+		this.maxPayloadSize = max;
+		return this;
+	}
+
+	/**
+	 * Sets the number of sessions the requests are spread over. <br>
+	 * If not provided <tt>10</tt> sessions are used.
+	 * 
+	 * @param sessions
+	 *            The number of sessions
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public ZKWorkload withSessions(int sessions) {
+		assertLargerThanZero(sessions);
+		this.sessions = sessions;
+		return this;
+	}
+
+	/**
+	 * Sets the target rate of requests. <br>
+	 * If not provided the rate of <tt>1000</tt> requests per second is used.
+	 * 
+	 * @param requestsPerSecond
+	 *            The rate
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public ZKWorkload withRate(int requestsPerSecond) {
+		assertLargerThanZero(requestsPerSecond);
+		this.rate = requestsPerSecond;
+		return this;
+	}
+
+	/**
+	 * Sets for how long requests are issued. <br>
+	 * If not provided the duration of <tt>10 seconds</tt> is used.
+	 * 
+	 * @param duration
+	 *            The duration
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public ZKWorkload withDuration(Duration duration) {
+		if (duration.isNegative() || duration.isZero()) {
+			throw new IllegalArgumentException("The duration [" + duration + "] must be larger than zero");
+		}
+		this.duration = duration;
+		return this;
+	}
+
+	/**
+	 * Sets the number of nodes seeded under the root path before the run. <br>
+	 * If not provided <tt>100</tt> nodes are used.
+	 * 
+	 * @param nodes
+	 *            The number of nodes
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public ZKWorkload withNodes(int nodes) {
+		assertLargerThanZero(nodes);
+		this.nodes = nodes;
+		return this;
+	}
+
+	/**
+	 * Sets the path the nodes are seeded under. <br>
+	 * The path is deleted once the run is finished, as are any of its parents created by the run. <br>
+	 * If not provided <tt>/zookeeper-junit/workload</tt> is used.
+	 * 
+	 * @param rootPath
+	 *            The path
+	 * @return The workload
+	 * @since 1.3
+	 */
+	public ZKWorkload withRootPath(String rootPath) {
+		this.rootPath = rootPath;
+		return this;
+	}
+
+	/**
+	 * Runs the workload. <br>
+	 * This is a non-blocking operation and returns a {@link Future} that will be completed once all requests have been responded to.
+	 * 
+	 * @return The future report, fails in case the sessions could not be established or the nodes not seeded
+	 * @since 1.3
+	 */
+	public Future<ZKWorkloadReport> run() {
+		return connectString.get().map(cs -> Future(() -> execute(cs)))
+				.getOrElse(() -> Future.failed(new IllegalStateException("The ZooKeeper server is not running")));
+	}
+
+	private ZKWorkloadReport execute(String connectString) throws Throwable {
+		List<CloseableZooKeeper> connections = CloseableZooKeeper.connect(connectString, sessions, connectTimeout).result(connectTimeout.plusSeconds(1));
+		Random random = new Random();
+		try {
+			String createdPath = topmostMissing(connections.get(0), rootPath);
+			try {
+				connections.get(0).createAll(IntStream.range(0, nodes).mapToObj(i -> new SimpleImmutableEntry<>(nodePath(i), payload(random))), 1000).get();
+				return new Run(connections, random).execute();
+			} finally {
+				connections.get(0).deleteRecursively(createdPath);
+			}
+		} finally {
+			connections.forEach(CloseableZooKeeper::close);
+		}
+	}
+
+	/**
+	 * The topmost parent of the provided path that does not exist, i.e. the first node that seeding the path creates.
+	 *
+	 * @param zk
+	 *            The session to use
+	 * @param path
+	 *            The path
+	 * @return The topmost missing parent, the path itself if its parent exists
+	 */
+	private static String topmostMissing(CloseableZooKeeper zk, String path) throws Throwable {
+		int pos = path.lastIndexOf('/');
+		if (pos <= 0 || zk.exists(path.substring(0, pos)).get()) {
+			return path;
+		}
+		return topmostMissing(zk, path.substring(0, pos));
+	}
+
+	private String nodePath(int node) {
+		return rootPath + "/node-" + node;
+	}
+
+	private byte[] payload(Random random) {
+		return new byte[minPayloadSize + random.nextInt(maxPayloadSize - minPayloadSize + 1)];
+	}
+
+	/**
+	 * The state of a single run of the workload.
+	 */
+	private final class Run {
+		private final List<CloseableZooKeeper> connections;
+		private final Random random;
+		private final Operation[] operations = Operation.values();
+		/** The accumulated weights of the operations, used to randomly pick an operation. */
+		private final int[] weights = new int[operations.length];
+		private final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+		private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+		private final RequestPipeline pipeline = new RequestPipeline(1);
+		private final AtomicLong lastResponse = new AtomicLong();
+
+		private Run(List<CloseableZooKeeper> connections, Random random) {
+			this.connections = connections;
+			this.random = random;
+			int accumulated = 0;
+			for (int i = 0; i < operations.length; i++) {
+				accumulated += mix.get(operations[i]);
+				weights[i] = accumulated;
+				if (mix.get(operations[i]) > 0) {
+					histograms.put(operations[i], new LatencyHistogram());
+					errors.put(operations[i], new AtomicLong());
+				}
+			}
+		}
+
+		private ZKWorkloadReport execute() throws InterruptedException {
+			long requests = Math.max(1, (long) (duration.toNanos() / 1e9 * rate));
+			double interval = 1e9 / rate;
+			long start = System.nanoTime();
+			for (long i = 0; i < requests; i++) {
+				// the requests are issued according to schedule, should the schedule be missed the request is issued directly
+				long scheduled = start + (long) (i * interval);
+				long delay;
+				while ((delay = scheduled - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(delay);
+				}
+				issue(connections.get((int) (i % connections.size())), scheduled);
+			}
+			pipeline.await();
+
+			Map<Operation, Long> errorCount = new EnumMap<>(Operation.class);
+			errors.forEach((operation, count) -> errorCount.put(operation, count.get()));
+			return new ZKWorkloadReport(Duration.ofNanos(lastResponse.get() - start), histograms, errorCount);
+		}
+
+		private void issue(CloseableZooKeeper zk, long scheduled) {
+			Operation operation = pick();
+			String path = nodePath(random.nextInt(nodes));
+			pipeline.track(1);
+			switch (operation) {
+			case READ:
+				zk.getData(path, false, (rc, p, ctx, data, stat) -> completed(operation, rc, scheduled), null);
+				break;
+			case WRITE:
+				zk.setData(path, payload(random), -1, (rc, p, ctx, stat) -> completed(operation, rc, scheduled), null);
+				break;
+			case EXISTS:
+				zk.exists(path, false, (rc, p, ctx, stat) -> completed(operation, rc, scheduled), null);
+				break;
+			case GET_CHILDREN:
+				zk.getChildren(rootPath, false, (rc, p, ctx, children) -> completed(operation, rc, scheduled), null);
+				break;
+			}
+		}
+
+		private Operation pick() {
+			int value = random.nextInt(weights[weights.length - 1]);
+			int i = 0;
+			while (value >= weights[i]) {
+				i++;
+			}
+			return operations[i];
+		}
+
+		private void completed(Operation operation, int rc, long scheduled) {
+			long now = System.nanoTime();
+			if (rc == Code.OK.intValue()) {
+				histograms.get(operation).record(now - scheduled);
+			} else {
+				errors.get(operation).incrementAndGet();
+			}
+			lastResponse.accumulateAndGet(now, Math::max);
+			pipeline.completed();
+		}
+	}
+
+	/**
+	 * Runs a workload from the command line and prints the report. <br>
+	 * Usage: <tt>ZKWorkload host:port [rate=1000] [duration=10] [sessions=10] [nodes=100] [payload=100-100] [mix=80/10/5/5]</tt> <br>
+	 * The duration is in seconds and the mix is the weights of read/write/exists/getChildren.
+	 * 
+	 * @param args
+	 *            The connect string followed by optional settings
+	 * @throws Throwable
+	 *             If the workload fails
+	 * @since 1.3
+	 */
+	public static void main(String[] args) throws Throwable {
+		if (args.length < 1) {
+			System.err.println("Usage: ZKWorkload host:port [rate=1000] [duration=10] [sessions=10] [nodes=100] [payload=100-100] [mix=80/10/5/5]");
+			System.exit(1);
+		}
+		ZKWorkload workload = apply(args[0]);
+		for (int i = 1; i < args.length; i++) {
+			String[] setting = args[i].split("=", 2);
+			String value = setting.length > 1 ? setting[1] : "";
+			switch (setting[0]) {
+			case "rate":
+				workload.withRate(Integer.parseInt(value));
+				break;
+			case "duration":
+				workload.withDuration(Duration.ofSeconds(Long.parseLong(value)));
+				break;
+			case "sessions":
+				workload.withSessions(Integer.parseInt(value));
+				break;
+			case "nodes":
+				workload.withNodes(Integer.parseInt(value));
+				break;
+			case "payload":
+				String[] size = value.split("-");
+				workload.withPayloadSize(Integer.parseInt(size[0]), Integer.parseInt(size[size.length - 1]));
+				break;
+			case "mix":
+				String[] weights = value.split("/");
+				workload.withMix(Integer.parseInt(weights[0]), Integer.parseInt(weights[1]), Integer.parseInt(weights[2]), Integer.parseInt(weights[3]));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown setting [" + args[i] + "]");
+			}
+		}
+		System.out.println(workload.run().result(workload.duration.plusMinutes(1)));
+	}
+}
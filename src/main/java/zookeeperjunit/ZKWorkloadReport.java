@@ -0,0 +1,121 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import zookeeperjunit.ZKWorkload.Operation;
+
+/**
+ * The outcome of a {@link ZKWorkload} run. <br>
+ * Holds the latency histogram and the number of failed requests for each type of operation. <br>
+ * The latencies are measured from the time each request was scheduled to be sent, i.e. any delay caused by the client or server not keeping up with
+ * the target rate is part of the latency.
+ *
+ * @author Peter Nerg
+ * @since 1.3
+ */
+public final class ZKWorkloadReport {
+
+	private final Duration elapsed;
+	private final Map<Operation, LatencyHistogram> histograms;
+	private final Map<Operation, Long> errors;
+
+	ZKWorkloadReport(Duration elapsed, Map<Operation, LatencyHistogram> histograms, Map<Operation, Long> errors) {
+		this.elapsed = elapsed;
+		this.histograms = Collections.unmodifiableMap(new EnumMap<>(histograms));
+		this.errors = Collections.unmodifiableMap(new EnumMap<>(errors));
+	}
+
+	/**
+	 * The time from the first request being sent until the last response was received.
+	 *
+	 * @return The elapsed time
+	 * @since 1.3
+	 */
+	public Duration elapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * The latency histogram of the successful requests of the provided operation.
+	 *
+	 * @param operation
+	 *            The operation
+	 * @return The histogram, empty if the operation was not part of the workload
+	 * @since 1.3
+	 */
+	public LatencyHistogram histogram(Operation operation) {
+		return histograms.getOrDefault(operation, new LatencyHistogram());
+	}
+
+	/**
+	 * The number of failed requests of the provided operation.
+	 *
+	 * @param operation
+	 *            The operation
+	 * @return The number of failures
+	 * @since 1.3
+	 */
+	public long errors(Operation operation) {
+		return errors.getOrDefault(operation, 0L);
+	}
+
+	/**
+	 * The achieved throughput of successful requests of the provided operation.
+	 *
+	 * @param operation
+	 *            The operation
+	 * @return The throughput in requests per second
+	 * @since 1.3
+	 */
+	public double throughput(Operation operation) {
+		return throughput(histogram(operation).count());
+	}
+
+	/**
+	 * The achieved throughput of successful requests of all operations.
+	 *
+	 * @return The throughput in requests per second
+	 * @since 1.3
+	 */
+	public double throughput() {
+		return throughput(histograms.values().stream().mapToLong(LatencyHistogram::count).sum());
+	}
+
+	private double throughput(long count) {
+		long nanos = elapsed.toNanos();
+		return nanos == 0 ? 0 : count * 1_000_000_000d / nanos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("elapsed=%dms throughput=%.1f/s%n", elapsed.toMillis(), throughput()));
+		histograms.forEach((operation, histogram) -> {
+			sb.append(String.format("%-12s %.1f/s errors=%d %s%n", operation, throughput(operation), errors(operation), histogram));
+		});
+		return sb.toString();
+	}
+}
@@ -15,6 +15,13 @@
  */
 package zookeeperjunit;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.zookeeper.Watcher.Event.EventType;
+
 import javascalautils.Try;
 import junitextensions.TryAssert;
 
@@ -27,34 +34,160 @@ public interface ZooKeeperAssert extends TryAssert {
 
 	/**
 	 * Assert that the provided path exists in ZooKeeper. <br>
-	 * This method will automatically create/close a {@link #connection()} to get access to the ZooKeeper data. 
+	 * This method uses the {@link ZKInstance#session() shared session} of the instance to get access to the ZooKeeper data. 
 	 * 
 	 * @param path
 	 *            The path to assert
 	 * @since 1.1
 	 */
 	default void assertExists(String path) {
-		try (CloseableZooKeeper zookeeper = connection()) {
-			assertSuccess(true, zookeeper.exists(path));
-		}
+		assertSuccess(true, session().flatMap(zookeeper -> zookeeper.exists(path)));
 	}
 
 	/**
 	 * Assert that the provided path not exists in ZooKeeper. <br>
-	 * This method will automatically create/close a {@link #connection()} to get access to the ZooKeeper data. 
+	 * This method uses the {@link ZKInstance#session() shared session} of the instance to get access to the ZooKeeper data. 
 	 * 
 	 * @param path
 	 *            The path to assert
 	 * @since 1.1
 	 */
 	default void assertNotExists(String path) {
-		try (CloseableZooKeeper zookeeper = connection()) {
-			assertSuccess(false, zookeeper.exists(path));
+		assertSuccess(false, session().flatMap(zookeeper -> zookeeper.exists(path)));
+	}
+
+	/**
+	 * Assert that the provided path exists within the provided time. <br>
+	 * The wait is driven by ZooKeeper watches, i.e. it returns as soon as the node is created without polling the server. <br>
+	 * This method uses the {@link ZKInstance#session() shared session} of the instance to get access to the ZooKeeper data. 
+	 * 
+	 * @param path
+	 *            The path to assert
+	 * @param timeout
+	 *            The max time to wait
+	 * @since 1.3
+	 */
+	default void awaitExists(String path, Duration timeout) {
+		assertSuccess(session().flatMap(zookeeper -> zookeeper.awaitExists(path, timeout)));
+	}
+
+	/**
+	 * Assert that the provided path not exists within the provided time. <br>
+	 * The wait is driven by ZooKeeper watches, i.e. it returns as soon as the node is deleted without polling the server. <br>
+	 * This method uses the {@link ZKInstance#session() shared session} of the instance to get access to the ZooKeeper data. 
+	 * 
+	 * @param path
+	 *            The path to assert
+	 * @param timeout
+	 *            The max time to wait
+	 * @since 1.3
+	 */
+	default void awaitNotExists(String path, Duration timeout) {
+		assertSuccess(session().flatMap(zookeeper -> zookeeper.awaitNotExists(path, timeout)));
+	}
+
+	/**
+	 * Assert that the provided path has the provided data within the provided time. <br>
+	 * The wait is driven by ZooKeeper watches, i.e. it returns as soon as the data is set without polling the server. <br>
+	 * This method uses the {@link ZKInstance#session() shared session} of the instance to get access to the ZooKeeper data. 
+	 * 
+	 * @param path
+	 *            The path to assert
+	 * @param data
+	 *            The expected data
+	 * @param timeout
+	 *            The max time to wait
+	 * @since 1.3
+	 */
+	default void awaitData(String path, byte[] data, Duration timeout) {
+		assertSuccess(session().flatMap(zookeeper -> zookeeper.awaitData(path, data, timeout)));
+	}
+
+	/**
+	 * Assert that the provided path has the provided number of children within the provided time. <br>
+	 * The wait is driven by ZooKeeper watches, i.e. it returns as soon as the children are created/deleted without polling the server. <br>
+	 * This method uses the {@link ZKInstance#session() shared session} of the instance to get access to the ZooKeeper data. 
+	 * 
+	 * @param path
+	 *            The path to assert
+	 * @param count
+	 *            The expected number of children
+	 * @param timeout
+	 *            The max time to wait
+	 * @since 1.3
+	 */
+	default void awaitChildCount(String path, int count, Duration timeout) {
+		assertSuccess(session().flatMap(zookeeper -> zookeeper.awaitChildCount(path, count, timeout)));
+	}
+
+	/**
+	 * Assert that the provided path and all of its children equal the expected tree. <br>
+	 * The paths of the expected tree are relative to the provided path, see {@link ZKTree}. <br>
+	 * The data of all nodes is fetched and compared, regardless of where the expected tree comes from. <br>
+	 * The assertion error lists the differences, one line per node. <br>
+	 * This method uses the {@link ZKInstance#session() shared session} of the instance to get access to the ZooKeeper data.
+	 * 
+	 * @param path
+	 *            The path to assert
+	 * @param expected
+	 *            The expected tree
+	 * @since 1.3
+	 */
+	default void assertTreeEquals(String path, ZKTree expected) {
+		Try<ZKTree> actual = session().flatMap(zookeeper -> zookeeper.export(path));
+		assertSuccess(actual);
+		expected.describeDiff(actual.orNull()).forEach(diff -> {
+			throw new AssertionError("The tree [" + path + "] differs in " + diff);
+		});
+	}
+
+	/**
+	 * Assert that the provided recorder has recorded at most the provided number of events since it was started/cleared.
+	 * 
+	 * @param recorder
+	 *            The recorder
+	 * @param max
+	 *            The max number of events
+	 * @since 1.3
+	 */
+	default void assertMaxEvents(ZKWatchRecorder recorder, long max) {
+		long count = recorder.count();
+		if (count > max) {
+			throw new AssertionError("Expected at most [" + max + "] watch events but recorded [" + count + "] " + recorder.events());
 		}
 	}
 
 	/**
-	 * Gets a connection to the ZooKeeper instance. <br>
+	 * Assert that the provided recorder has recorded exactly the provided sequence of node events. <br>
+	 * Events on the connection state ({@link EventType#None}) are not part of the comparison.
+	 * 
+	 * @param recorder
+	 *            The recorder
+	 * @param expected
+	 *            The expected types of events in order
+	 * @since 1.3
+	 */
+	default void assertEventSequence(ZKWatchRecorder recorder, EventType... expected) {
+		List<EventType> actual = recorder.events(event -> event.type() != EventType.None).stream().map(ZKWatchEvent::type).collect(Collectors.toList());
+		if (!actual.equals(Arrays.asList(expected))) {
+			throw new AssertionError("Expected the watch events " + Arrays.toString(expected) + " but recorded " + recorder.events());
+		}
+	}
+
+	/**
+	 * Gets the {@link ZKInstance#session() shared session} of the ZooKeeper instance. <br>
+	 * The session is owned by the instance and must not be closed.
+	 * 
+	 * @return The session or a Failure in case the instance is not running
+	 * @since 1.3
+	 */
+	default Try<CloseableZooKeeper> session() {
+		return instance().session();
+	}
+
+	/**
+	 * Gets a new connection to the ZooKeeper instance. <br>
+	 * The connection is to be closed by the caller. <br>
 	 * Should the instance not be running this will fail with an AssertionError.
 	 * 
 	 * @return The connection
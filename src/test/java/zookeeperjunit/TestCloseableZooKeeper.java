@@ -15,19 +15,51 @@
  */
 package zookeeperjunit;
 
-import static zookeeperjunit.ZKConnectionUtil.createRecursive;
+import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import static org.apache.zookeeper.ZooDefs.Ids.CREATOR_ALL_ACL;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
 import static zookeeperjunit.ZKConnectionUtil.exists;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import javascalautils.Try;
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
 import junitextensions.TryAssert;
 
 /**
@@ -58,7 +90,7 @@ public class TestCloseableZooKeeper extends BaseAssert implements TryAssert {
 	@Before
 	public void before() throws TimeoutException, Throwable {
 		try(CloseableZooKeeper zookeeper = connection()) {
-			createRecursive(zookeeper, rootPath);
+			zookeeper.createRecursive(rootPath, new byte[0]);
 		}		
 	}
 	
@@ -74,7 +106,7 @@ public class TestCloseableZooKeeper extends BaseAssert implements TryAssert {
 		try(CloseableZooKeeper zookeeper = connection()) {
 			//create the path to delete
 			String path = "/tmp/delete_existingPath";
-			createRecursive(zookeeper,path);
+			zookeeper.createRecursive(path, new byte[0]);
 			//assert the path is gone
 			assertTrue(exists(zookeeper, path));
 			
@@ -86,12 +118,370 @@ public class TestCloseableZooKeeper extends BaseAssert implements TryAssert {
 		}
 	}
 	
+	@Test
+	public void deleteRecursively_wideTree() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/wide";
+			zookeeper.createRecursive(path, new byte[0]);
+			for (int i = 0; i < 1200; i++) {
+				zookeeper.create(path + "/child-" + i, new byte[0], OPEN_ACL_UNSAFE, PERSISTENT);
+			}
+			assertSuccess(zookeeper.deleteRecursively(path));
+			assertFalse(exists(zookeeper, path));
+		}
+	}
+
+	@Test
+	public void deleteRecursively_deepTree() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			StringBuilder path = new StringBuilder(rootPath + "/deep");
+			for (int i = 0; i < 100; i++) {
+				path.append("/level-").append(i);
+			}
+			zookeeper.createRecursive(path.toString(), new byte[0]);
+			assertSuccess(zookeeper.deleteRecursively(rootPath + "/deep"));
+			assertFalse(exists(zookeeper, rootPath + "/deep"));
+		}
+	}
+
+	@Test
+	public void deleteRecursively_nonExistingPath() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			assertFailure(zookeeper.deleteRecursively("/no-such-path"));
+		}
+	}
+
+	/**
+	 * Test that failures to delete child nodes are reported. <br>
+	 * A protected node is created by an authenticated session, the unauthenticated session may neither list nor delete its children.
+	 */
+	@Test
+	public void deleteRecursively_reportsFailures() throws TimeoutException, Throwable {
+		String path = "/deleteRecursively_reportsFailures";
+		try(CloseableZooKeeper owner = connection(); CloseableZooKeeper zookeeper = connection()) {
+			owner.addAuthInfo("digest", "owner:secret".getBytes());
+			owner.create(path, new byte[0], OPEN_ACL_UNSAFE, PERSISTENT);
+			owner.create(path + "/protected", new byte[0], CREATOR_ALL_ACL, PERSISTENT);
+			owner.create(path + "/protected/child", new byte[0], CREATOR_ALL_ACL, PERSISTENT);
+			owner.create(path + "/unprotected", new byte[0], OPEN_ACL_UNSAFE, PERSISTENT);
+
+			Try<Unit> result = zookeeper.deleteRecursively(path);
+			assertFailure(result);
+			assertTrue(result.failed().get() instanceof KeeperException.NoAuthException);
+			assertFalse(exists(zookeeper, path + "/unprotected"));
+
+			assertSuccess(owner.deleteRecursively(path));
+		}
+	}
+
+	@Test
+	public void createRecursive() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/createRecursive/a/b";
+			assertSuccess(zookeeper.createRecursive(path, "Peter was here!".getBytes()));
+			assertEquals("Peter was here!", new String(zookeeper.getData(path).get()));
+			assertEquals(0, zookeeper.getData(rootPath + "/createRecursive/a").get().length);
+		}
+	}
+
+	@Test
+	public void createRecursive_existingPath() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/createRecursive_existingPath";
+			assertSuccess(zookeeper.createRecursive(path, "original".getBytes()));
+			// an existing node is left untouched
+			assertSuccess(zookeeper.createRecursive(path, "new".getBytes()));
+			assertEquals("original", new String(zookeeper.getData(path).get()));
+		}
+	}
+
+	@Test
+	public void createAll_map() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			Map<String, byte[]> nodes = new HashMap<>();
+			for (int i = 0; i < 500; i++) {
+				nodes.put(rootPath + "/createAll/parent-" + (i % 10) + "/child-" + i, String.valueOf(i).getBytes());
+			}
+			assertSuccess(zookeeper.createAll(nodes));
+			for (Entry<String, byte[]> node : nodes.entrySet()) {
+				assertEquals(new String(node.getValue()), new String(zookeeper.getData(node.getKey()).get()));
+			}
+			assertEquals(10L, zookeeper.getChildren(rootPath + "/createAll").get().count());
+		}
+	}
+
+	@Test
+	public void createAll_stream() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/createAll_stream";
+			Stream<Entry<String, byte[]>> nodes = IntStream.range(0, 100).mapToObj(i -> new SimpleEntry<>(path + "/node-" + i, new byte[0]));
+			assertSuccess(zookeeper.createAll(nodes, 1));
+			assertEquals(100L, zookeeper.getChildren(path).get().count());
+		}
+	}
+
+	@Test
+	public void createAll_parentAfterChild() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/createAll_parentAfterChild";
+			Map<String, byte[]> nodes = new LinkedHashMap<>();
+			nodes.put(path + "/parent/child", "child".getBytes());
+			nodes.put(path + "/parent", "parent".getBytes());
+			nodes.put(path, "root".getBytes());
+			assertSuccess(zookeeper.createAll(nodes));
+			assertEquals("child", new String(zookeeper.getData(path + "/parent/child").get()));
+			assertEquals("parent", new String(zookeeper.getData(path + "/parent").get()));
+			assertEquals("root", new String(zookeeper.getData(path).get()));
+		}
+	}
+
+	@Test
+	public void createAll_boundedKnownPaths() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/createAll_boundedKnownPaths";
+			int parents = BulkCreate.maxKnownPaths + 2000;
+			BulkCreate bulkCreate = new BulkCreate(zookeeper, 1000);
+			assertSuccess(bulkCreate.execute(IntStream.range(0, parents).mapToObj(i -> new SimpleEntry<>(path + "/parent-" + i + "/leaf", new byte[0]))));
+			// the parents never listed on their own are not kept beyond the cache
+			assertTrue(bulkCreate.knownPathCount() <= BulkCreate.maxKnownPaths);
+			assertEquals(parents, zookeeper.getChildren(path).get().count());
+		}
+	}
+
+	@Test
+	public void createAll_existingParentAfterChild() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/createAll_existingParentAfterChild";
+			assertSuccess(zookeeper.createRecursive(path, "original".getBytes()));
+			Map<String, byte[]> nodes = new LinkedHashMap<>();
+			nodes.put(path + "/child", "child".getBytes());
+			nodes.put(path, "new".getBytes());
+			assertSuccess(zookeeper.createAll(nodes));
+			// an existing node is left untouched
+			assertEquals("original", new String(zookeeper.getData(path).get()));
+		}
+	}
+
+	@Test
+	public void export() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/export";
+			Map<String, byte[]> nodes = new HashMap<>();
+			IntStream.range(0, 100).forEach(i -> nodes.put(path + "/parent-" + (i % 10) + "/node-" + i, ("" + i).getBytes()));
+			assertSuccess(zookeeper.createAll(nodes));
+
+			ZKTree tree = zookeeper.export(path).get();
+			// root + 10 parents + 100 nodes
+			assertEquals(111, tree.size());
+			assertEquals("42", new String(tree.node("/parent-2/node-42").get().data()));
+			assertTrue(tree.node("/").get().stat().isDefined());
+		}
+	}
+
+	@Test
+	public void export_previous() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/export_previous";
+			zookeeper.createRecursive(path + "/unchanged", "unchanged".getBytes()).get();
+			zookeeper.createRecursive(path + "/changed", "original".getBytes()).get();
+			ZKTree previous = zookeeper.export(path).get();
+			zookeeper.setData(path + "/changed", "modified".getBytes(), -1);
+
+			ZKTree tree = zookeeper.export(path, previous).get();
+			// the data of the unchanged node is re-used from the previous export
+			assertSame(previous.node("/unchanged").get().data(), tree.node("/unchanged").get().data());
+			assertEquals("modified", new String(tree.node("/changed").get().data()));
+			assertEquals(1, previous.diff(tree).size());
+		}
+	}
+
+	@Test
+	public void export_previousOfOtherPath() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/export_other";
+			String otherPath = rootPath + "/export_other2";
+			// same mzxid for all nodes
+			zookeeper.multi(Arrays.asList(
+					Op.create(path, new byte[0], OPEN_ACL_UNSAFE, PERSISTENT),
+					Op.create(path + "/node", "data".getBytes(), OPEN_ACL_UNSAFE, PERSISTENT),
+					Op.create(otherPath, new byte[0], OPEN_ACL_UNSAFE, PERSISTENT),
+					Op.create(otherPath + "/node", "other".getBytes(), OPEN_ACL_UNSAFE, PERSISTENT)));
+			ZKTree other = zookeeper.export(otherPath).get();
+
+			// the data of the other tree must not be re-used
+			ZKTree tree = zookeeper.export(path, other).get();
+			assertEquals("data", new String(tree.node("/node").get().data()));
+		}
+	}
+
+	@Test
+	public void export_stream() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/export_stream";
+			zookeeper.createRecursive(path + "/a/b/c", new byte[0]).get();
+			List<String> paths = new ArrayList<>();
+			assertSuccess(zookeeper.export(path, node -> paths.add(node.path())));
+			// level by level
+			assertEquals(Arrays.asList("/", "/a", "/a/b", "/a/b/c"), paths);
+		}
+	}
+
+	@Test
+	public void export_nonExistingPath() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			assertFailure(zookeeper.export("/no-such-path"));
+		}
+	}
+
+	@Test
+	public void awaitExists_timeout() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			Try<Unit> result = zookeeper.awaitExists(rootPath + "/no-such-path", Duration.ofMillis(50));
+			assertFailure(result);
+			assertTrue(result.failed().get() instanceof TimeoutException);
+		}
+	}
+
+	@Test
+	public void awaitExists_alreadyExists() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			assertSuccess(zookeeper.awaitExists(rootPath, Duration.ofMillis(50)));
+			assertSuccess(zookeeper.awaitChildCount(rootPath, 0, Duration.ofMillis(50)));
+		}
+	}
+
+	@Test
+	public void awaitExists_reusesWatcher() throws Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/awaitExists_reusesWatcher";
+			assertSuccess(zookeeper.createRecursive(path, new byte[0]));
+			for (int i = 0; i < 100; i++) {
+				assertSuccess(zookeeper.awaitExists(path, Duration.ofMillis(50)));
+			}
+			// the watch is never triggered, still only one watcher is registered
+			assertEquals(1, dataWatchers(zookeeper, path));
+		}
+	}
+
+	@Test
+	public void seed() throws TimeoutException, Throwable {
+		String path = rootPath + "/seed";
+		Path file = Files.createTempFile(new File("target").toPath(), "seed", ".properties");
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("# a comment\n\n");
+			writer.write(path + "/config/name=with=equals\n");
+			writer.write(path + "/empty\n");
+			for (int i = 0; i < 1000; i++) {
+				writer.write(path + "/nodes/node-" + i + "=" + i + "\n");
+			}
+		}
+		try(CloseableZooKeeper zookeeper = connection()) {
+			ZKSeedReport report = zookeeper.seed(file).get();
+			assertEquals(1002, report.nodeCount());
+			assertTrue(report.throughput() > 0);
+			assertEquals("with=equals", new String(zookeeper.getData(path + "/config/name").get()));
+			assertEquals(0, zookeeper.getData(path + "/empty").get().length);
+			assertEquals("999", new String(zookeeper.getData(path + "/nodes/node-999").get()));
+			assertEquals(1000L, zookeeper.getChildren(path + "/nodes").get().count());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void seed_parentAfterChild() throws TimeoutException, Throwable {
+		String path = rootPath + "/seed_parentAfterChild";
+		Path file = Files.createTempFile(new File("target").toPath(), "seed", ".properties");
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write(path + "/app/config/timeout=5000\n");
+			writer.write(path + "/app/config=config\n");
+			writer.write(path + "/app=app\n");
+		}
+		try(CloseableZooKeeper zookeeper = connection()) {
+			assertEquals(3, zookeeper.seed(file).get().nodeCount());
+			assertEquals("5000", new String(zookeeper.getData(path + "/app/config/timeout").get()));
+			assertEquals("config", new String(zookeeper.getData(path + "/app/config").get()));
+			assertEquals("app", new String(zookeeper.getData(path + "/app").get()));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void seed_invalidLine() throws TimeoutException, Throwable {
+		Path file = Files.createTempFile(new File("target").toPath(), "seed", ".properties");
+		Files.write(file, Arrays.asList("relative/path=data"));
+		try(CloseableZooKeeper zookeeper = connection()) {
+			assertFailure(zookeeper.seed(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void seed_missingFile() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			assertFailure(zookeeper.seed(new File("target/no-such-file").toPath()));
+		}
+	}
+
+	@Test
+	public void createAll_reportsFailures() throws TimeoutException, Throwable {
+		String path = "/createAll_reportsFailures";
+		try(CloseableZooKeeper owner = connection(); CloseableZooKeeper zookeeper = connection()) {
+			owner.addAuthInfo("digest", "owner:secret".getBytes());
+			owner.create(path, new byte[0], CREATOR_ALL_ACL, PERSISTENT);
+
+			Map<String, byte[]> nodes = new HashMap<>();
+			nodes.put(path + "/a", new byte[0]);
+			nodes.put(path + "/b", new byte[0]);
+			Try<Unit> result = zookeeper.createAll(nodes);
+			assertFailure(result);
+			assertTrue(result.failed().get() instanceof KeeperException.NoAuthException);
+			assertEquals(1, result.failed().get().getSuppressed().length);
+
+			assertSuccess(owner.deleteRecursively(path));
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void connect_timeout() throws Throwable {
+		// nothing listens on the port hence the connection can never be established
+		int port = Util.freePort();
+		Future<CloseableZooKeeper> connect = CloseableZooKeeper.connect("127.0.0.1:" + port, Duration.ofMillis(200));
+		connect.ready(duration);
+		assertTrue(connect.value().get().failed().get() instanceof TimeoutException);
+
+		// the client shall have been closed, i.e. no threads trying to connect to the port
+		while (Thread.getAllStackTraces().keySet().stream().anyMatch(t -> t.getName().contains(":" + port + ")"))) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void connect_invalidConnectString() throws Throwable {
+		Future<CloseableZooKeeper> connect = CloseableZooKeeper.connect("127.0.0.1:not-a-port", duration);
+		connect.ready(duration);
+		assertFailure(connect.value().get());
+	}
+
+	@Test
+	public void connect_multiple() throws Throwable {
+		List<CloseableZooKeeper> sessions = CloseableZooKeeper.connect(connectString, 10, duration).result(duration);
+		try {
+			assertEquals(10, sessions.size());
+			assertEquals(10L, sessions.stream().mapToLong(CloseableZooKeeper::getSessionId).distinct().count());
+		} finally {
+			sessions.forEach(CloseableZooKeeper::close);
+		}
+	}
+
 	@Test
 	public void getData_success() throws TimeoutException, Throwable {
 		try(CloseableZooKeeper zookeeper = connection()) {
 			String path = "/tmp/getData_success";
 			String data = "Peter was here!";
-			ZKConnectionUtil.createRecursive(zookeeper, path, data.getBytes());
+			zookeeper.createRecursive(path, data.getBytes());
 			assertTrue(exists(zookeeper, path));
 			
 			assertEquals(data, new String(zookeeper.getData(path).get()));
@@ -119,7 +509,134 @@ public class TestCloseableZooKeeper extends BaseAssert implements TryAssert {
 		}		
 	}
 	
+	@Test
+	public void putLarge_getLarge() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/large/value";
+			// several chunks with a partial last chunk
+			byte[] data = randomBytes(3 * LargeValue.chunkSize + 17);
+			assertSuccess(zookeeper.putLarge(path, new ByteArrayInputStream(data)));
+			assertEquals(4, zookeeper.getChildren(path).get().count());
+
+			try (InputStream stream = zookeeper.getLarge(path).get()) {
+				assertArrayEquals(data, readAll(stream));
+			}
+		}
+	}
+
+	@Test
+	public void putLarge_empty() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/empty";
+			assertSuccess(zookeeper.putLarge(path, new ByteArrayInputStream(new byte[0])));
+			try (InputStream stream = zookeeper.getLarge(path).get()) {
+				assertEquals(-1, stream.read());
+			}
+		}
+	}
+
+	@Test
+	public void putLarge_replace() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/replace";
+			assertSuccess(zookeeper.putLarge(path, new ByteArrayInputStream(randomBytes(2 * LargeValue.chunkSize))));
+			byte[] data = randomBytes(100);
+			assertSuccess(zookeeper.putLarge(path, new ByteArrayInputStream(data)));
+
+			// the chunks of the previous value are deleted
+			assertEquals(1, zookeeper.getChildren(path).get().count());
+			try (InputStream stream = zookeeper.getLarge(path).get()) {
+				assertArrayEquals(data, readAll(stream));
+			}
+		}
+	}
+
+	@Test
+	public void putLarge_failingStream() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/failing";
+			byte[] data = randomBytes(100);
+			assertSuccess(zookeeper.putLarge(path, new ByteArrayInputStream(data)));
+
+			InputStream failing = new SequenceInputStream(new ByteArrayInputStream(randomBytes(3 * LargeValue.chunkSize)), new InputStream() {
+				@Override
+				public int read() throws IOException {
+					throw new IOException("Simulated failure");
+				}
+			});
+			assertFailure(zookeeper.putLarge(path, failing));
+
+			// the previous value is retained and the chunks written before the failure are deleted
+			assertEquals(1, zookeeper.getChildren(path).get().count());
+			try (InputStream stream = zookeeper.getLarge(path).get()) {
+				assertArrayEquals(data, readAll(stream));
+			}
+		}
+	}
+
+	@Test
+	public void getLarge_replacedWhileReading() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			String path = rootPath + "/replaced";
+			assertSuccess(zookeeper.putLarge(path, new ByteArrayInputStream(randomBytes(12 * LargeValue.chunkSize))));
+			try (InputStream stream = zookeeper.getLarge(path).get()) {
+				stream.read();
+				assertSuccess(zookeeper.putLarge(path, new ByteArrayInputStream(randomBytes(100))));
+				// the chunks not yet requested are gone
+				readAll(stream);
+				fail("Expected the read to fail");
+			} catch (IOException ex) {
+				assertTrue(ex.getMessage().contains("replaced"));
+			}
+		}
+	}
+
+	@Test
+	public void getLarge_notLargeValue() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			assertFailure(zookeeper.getLarge(rootPath));
+		}
+	}
+
+	@Test
+	public void getLarge_nonExistingPath() throws TimeoutException, Throwable {
+		try(CloseableZooKeeper zookeeper = connection()) {
+			assertFailure(zookeeper.getLarge("/no-such-path"));
+		}
+	}
+
+	private static byte[] randomBytes(int size) {
+		byte[] data = new byte[size];
+		ThreadLocalRandom.current().nextBytes(data);
+		return data;
+	}
+
+	private static byte[] readAll(InputStream stream) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for (int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+			bytes.write(buffer, 0, read);
+		}
+		return bytes.toByteArray();
+	}
+
 	private CloseableZooKeeper connection() throws TimeoutException, Throwable {
 		return CloseableZooKeeper.blockingConnect(connectString, duration);
 	}
+
+	/**
+	 * The number of data watchers the client has registered on the path, the client offers no public means to inspect them.
+	 */
+	@SuppressWarnings("unchecked")
+	private static int dataWatchers(ZooKeeper zookeeper, String path) throws ReflectiveOperationException {
+		Field managerField = ZooKeeper.class.getDeclaredField("watchManager");
+		managerField.setAccessible(true);
+		Object manager = managerField.get(zookeeper);
+		Field watchesField = manager.getClass().getDeclaredField("dataWatches");
+		watchesField.setAccessible(true);
+		Map<String, Set<Watcher>> watches = (Map<String, Set<Watcher>>) watchesField.get(manager);
+		synchronized (watches) {
+			return watches.getOrDefault(path, Collections.emptySet()).size();
+		}
+	}
 }
@@ -0,0 +1,133 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.zookeeper.ZooDefs.OpCode;
+import org.apache.zookeeper.data.Stat;
+import org.apache.zookeeper.server.DataTree;
+import org.apache.zookeeper.server.Request;
+import org.apache.zookeeper.txn.CreateTxn;
+import org.apache.zookeeper.txn.TxnHeader;
+import org.junit.After;
+import org.junit.Test;
+
+import ioutil.FileUtil;
+
+/**
+ * Test the class {@link InMemoryTxnSnapLog}
+ *
+ * @author Peter Nerg
+ */
+public class TestInMemoryTxnSnapLog extends BaseAssert {
+
+	private final File dir = new File("target/mem-" + System.nanoTime());
+	private final InMemoryTxnSnapLog log;
+
+	public TestInMemoryTxnSnapLog() throws IOException {
+		log = new InMemoryTxnSnapLog(dir);
+	}
+
+	@After
+	public void after() {
+		FileUtil.delete(dir);
+	}
+
+	@Test
+	public void restore_empty() throws IOException {
+		DataTree dataTree = new DataTree();
+		assertEquals(0, log.restore(dataTree, new HashMap<>(), (hdr, txn) -> {}));
+	}
+
+	@Test
+	public void save_restore() throws Exception {
+		DataTree dataTree = new DataTree();
+		dataTree.createNode("/snapshot", "Peter was here!".getBytes(), OPEN_ACL_UNSAFE, 0, 0, 1, 1);
+		dataTree.lastProcessedZxid = 1;
+		log.save(dataTree, new ConcurrentHashMap<>());
+
+		DataTree restored = new DataTree();
+		assertEquals(1, log.restore(restored, new HashMap<>(), (hdr, txn) -> {}));
+		assertEquals("Peter was here!", new String(restored.getData("/snapshot", new Stat(), null)));
+	}
+
+	@Test
+	public void append_restore() throws IOException {
+		assertTrue(log.append(createRequest(1, "/first")));
+		assertTrue(log.append(createRequest(2, "/second")));
+		assertEquals(2, log.getLastLoggedZxid());
+
+		// closing shall not affect the data
+		log.close();
+
+		DataTree restored = new DataTree();
+		assertEquals(2, log.restore(restored, new HashMap<>(), (hdr, txn) -> {}));
+		assertNotNull(restored.getNode("/first"));
+		assertNotNull(restored.getNode("/second"));
+	}
+
+	@Test
+	public void append_readRequest() throws IOException {
+		assertFalse(log.append(new Request(null, 1, 1, OpCode.getData, null, null)));
+	}
+
+	@Test
+	public void save_appendAfter_restore() throws IOException {
+		assertTrue(log.append(createRequest(1, "/first")));
+		DataTree dataTree = new DataTree();
+		log.restore(dataTree, new HashMap<>(), (hdr, txn) -> {});
+		log.save(dataTree, new ConcurrentHashMap<>());
+		assertTrue(log.append(createRequest(2, "/second")));
+
+		DataTree restored = new DataTree();
+		assertEquals(2, log.restore(restored, new HashMap<>(), (hdr, txn) -> {}));
+		assertNotNull(restored.getNode("/first"));
+		assertNotNull(restored.getNode("/second"));
+	}
+
+	@Test
+	public void truncateLog() throws IOException {
+		assertTrue(log.append(createRequest(1, "/first")));
+		assertTrue(log.append(createRequest(2, "/second")));
+		assertTrue(log.truncateLog(1));
+		assertEquals(1, log.getLastLoggedZxid());
+
+		DataTree restored = new DataTree();
+		log.restore(restored, new HashMap<>(), (hdr, txn) -> {});
+		assertNotNull(restored.getNode("/first"));
+		assertNull(restored.getNode("/second"));
+	}
+
+	@Test
+	public void noSnapshotFiles() throws IOException {
+		assertNull(log.findMostRecentSnapshot());
+		assertTrue(log.findNRecentSnapshots(5).isEmpty());
+		assertEquals(0, log.getSnapshotLogs(0).length);
+	}
+
+	private static Request createRequest(long zxid, String path) {
+		Request request = new Request(null, 1, (int) zxid, OpCode.create, null, null);
+		request.hdr = new TxnHeader(1, (int) zxid, zxid, System.currentTimeMillis(), OpCode.create);
+		request.txn = new CreateTxn(path, new byte[0], OPEN_ACL_UNSAFE, false, 1);
+		return request;
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link LatencyHistogram}.
+ * @author Peter Nerg
+ */
+public class TestLatencyHistogram extends BaseAssert {
+
+	private final LatencyHistogram histogram = new LatencyHistogram();
+
+	@Test
+	public void empty() {
+		assertEquals(0, histogram.count());
+		assertEquals(Duration.ZERO, histogram.min());
+		assertEquals(Duration.ZERO, histogram.max());
+		assertEquals(Duration.ZERO, histogram.mean());
+		assertEquals(Duration.ZERO, histogram.percentile(99));
+	}
+
+	@Test
+	public void percentile() {
+		// 1..1000 microseconds
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		assertEquals(1000, histogram.count());
+		assertEquals(Duration.ofNanos(1000), histogram.min());
+		assertEquals(Duration.ofNanos(1000_000), histogram.max());
+		assertEquals(Duration.ofNanos(500_000), histogram.mean());
+		assertWithinPrecision(500, histogram.percentile(50));
+		assertWithinPrecision(990, histogram.percentile(99));
+		assertWithinPrecision(999, histogram.percentile(99.9));
+		assertEquals(histogram.max(), histogram.percentile(100));
+	}
+
+	@Test
+	public void exactBelow128Micros() {
+		histogram.record(5_000);
+		histogram.record(100_000);
+		assertEquals(Duration.ofNanos(5_000), histogram.percentile(50));
+		assertEquals(Duration.ofNanos(100_000), histogram.percentile(100));
+	}
+
+	@Test
+	public void index_highestValue() {
+		// every value shall be within its bucket and the buckets shall be continuous
+		long previous = -1;
+		for (int index = 0; index < 2000; index++) {
+			long highest = LatencyHistogram.highestValue(index);
+			assertEquals(index, LatencyHistogram.index(previous + 1));
+			assertEquals(index, LatencyHistogram.index(highest));
+			previous = highest;
+		}
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.index(Long.MAX_VALUE)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void percentile_illegal() {
+		histogram.percentile(101);
+	}
+
+	private static void assertWithinPrecision(long expectedMicros, Duration actual) {
+		long actualMicros = actual.toNanos() / 1000;
+		assertTrue("Expected ~" + expectedMicros + " was " + actualMicros, Math.abs(actualMicros - expectedMicros) <= expectedMicros * 0.02);
+	}
+}
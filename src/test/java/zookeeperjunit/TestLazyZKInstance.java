@@ -0,0 +1,133 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javascalautils.Option;
+import junitextensions.FutureAssert;
+import junitextensions.OptionAssert;
+import junitextensions.TryAssert;
+
+/**
+ * Test the class {@link LazyZKInstance}.
+ * 
+ * @author Peter Nerg
+ */
+public class TestLazyZKInstance extends BaseAssert implements OptionAssert, FutureAssert, TryAssert {
+
+	private final AtomicInteger created = new AtomicInteger();
+
+	private final LazyZKInstance instance = new LazyZKInstance(() -> {
+		created.incrementAndGet();
+		return new ZKInstanceImpl(ZKServerSettings.defaults.withInMemoryStorage());
+	});
+
+	@After
+	public void after() throws TimeoutException, Throwable {
+		assertSuccess(instance.destroy(), duration);
+	}
+
+	@Test
+	public void start_notUsed() throws TimeoutException, Throwable {
+		assertSuccess(instance.start(), duration);
+		assertFalse(instance.isStarted());
+		assertEquals(0, created.get());
+	}
+
+	@Test
+	public void port_notStarted() {
+		assertNone(instance.port());
+		assertFailure(instance.connect());
+		assertEquals(0, created.get());
+	}
+
+	@Test(timeout = Timeout)
+	public void connect_startFailure() throws Throwable {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			LazyZKInstance occupiedPort = new LazyZKInstance(() -> new ZKInstanceImpl(ZKServerSettings.defaults.withPort(socket.getLocalPort()).withInMemoryStorage()));
+			occupiedPort.start();
+			try {
+				// the reason the start failed is provided as the cause
+				Throwable ex = occupiedPort.connect().failed().get();
+				assertTrue(ex instanceof IllegalStateException);
+				assertNotNull(ex.getCause());
+				assertFalse(occupiedPort.isStarted());
+			} finally {
+				occupiedPort.destroy().ready(duration);
+			}
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void connectString_startsInstance() throws TimeoutException, Throwable {
+		instance.start();
+		assertSome(instance.connectString());
+		assertTrue(instance.isStarted());
+		try (CloseableZooKeeper zookeeper = instance.connect().get()) {
+			assertSuccess(zookeeper.createRecursive("/lazy", new byte[0]));
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void port_concurrentFirstUse() throws Throwable {
+		instance.start();
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<java.util.concurrent.Future<Option<Integer>>> ports = IntStream.range(0, 16).mapToObj(i -> executor.submit(instance::port)).collect(Collectors.toList());
+			int port = ports.get(0).get().get();
+			for (java.util.concurrent.Future<Option<Integer>> future : ports) {
+				assertEquals(port, future.get().get().intValue());
+			}
+			// exactly one instance created and started
+			assertEquals(1, created.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void stop() throws TimeoutException, Throwable {
+		instance.start();
+		assertSome(instance.port());
+		assertSuccess(instance.stop(), duration);
+		assertFalse(instance.isStarted());
+		assertNone(instance.port());
+
+		// a new start is again deferred, using the same instance
+		instance.start();
+		assertSome(instance.port());
+		assertEquals(1, created.get());
+	}
+
+	@Test
+	public void stop_notUsed() throws TimeoutException, Throwable {
+		instance.start();
+		assertSuccess(instance.stop(), duration);
+		assertNone(instance.port());
+		assertEquals(0, created.get());
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import junitextensions.ReflectionAssert;
+
+/**
+ * Test the class {@link PortAllocator}.
+ * @author Peter Nerg
+ */
+public class TestPortAllocator extends BaseAssert implements ReflectionAssert {
+
+	@Test
+	public void assertPrivateConstructor() {
+		assertPrivateConstructor(PortAllocator.class);
+	}
+
+	@Test
+	public void allocate() throws Exception {
+		int port = PortAllocator.allocate();
+		try {
+			assertTrue(port > 0);
+			assertTrue(PortAllocator.isReserved(port));
+		} finally {
+			PortAllocator.release(port);
+		}
+		assertFalse(PortAllocator.isReserved(port));
+	}
+
+	@Test
+	public void reserve() throws Exception {
+		int port = PortAllocator.allocate();
+		try {
+			// already reserved
+			assertFalse(PortAllocator.reserve(port));
+		} finally {
+			PortAllocator.release(port);
+		}
+		assertTrue(PortAllocator.reserve(port));
+		PortAllocator.release(port);
+		assertFalse(PortAllocator.isReserved(port));
+	}
+
+	@Test
+	public void release_notReserved() {
+		PortAllocator.release(1);
+		assertFalse(PortAllocator.isReserved(1));
+	}
+
+	@Test(timeout = Timeout)
+	public void allocate_concurrently() throws Exception {
+		Set<Integer> ports = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<Integer>> futures = IntStream.range(0, 200).mapToObj(i -> executor.submit(PortAllocator::allocate)).collect(Collectors.toList());
+			for (Future<Integer> future : futures) {
+				ports.add(future.get());
+			}
+			// all ports shall be unique
+			assertEquals(200, ports.size());
+		} finally {
+			executor.shutdown();
+			ports.forEach(PortAllocator::release);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import javascalautils.Unit;
+import javascalautils.concurrent.Future;
+import junitextensions.FutureAssert;
+import junitextensions.ReflectionAssert;
+
+/**
+ * Test the class {@link TrashReclaimer}.
+ * @author Peter Nerg
+ */
+public class TestTrashReclaimer extends BaseAssert implements ReflectionAssert, FutureAssert {
+
+	private final File rootDir = Util.createUniqueDir(new File("target"), "trash-test-");
+	private final File trashDir = new File(rootDir, TrashReclaimer.trashDirName);
+
+	@Test
+	public void assertPrivateConstructor() {
+		assertPrivateConstructor(TrashReclaimer.class);
+	}
+
+	@Test(timeout = Timeout)
+	public void discard() throws Throwable {
+		File dir = createData(new File(rootDir, "data"));
+		Future<Unit> future = TrashReclaimer.discard(dir);
+		// moved immediately
+		assertFalse(dir.exists());
+		assertSuccess(future, duration);
+		assertEquals(0, trashDir.list().length);
+	}
+
+	@Test
+	public void discard_notMovable() throws Throwable {
+		// a file in place of the trash directory prevents the move
+		Files.createFile(trashDir.toPath());
+		File dir = createData(new File(rootDir, "data"));
+		Future<Unit> future = TrashReclaimer.discard(dir);
+		// deleted before returning
+		assertFalse(dir.exists());
+		assertTrue(future.isCompleted());
+		assertSuccess(future, duration);
+	}
+
+	@Test
+	public void discard_nonExisting() throws Throwable {
+		assertSuccess(TrashReclaimer.discard(new File(rootDir, "no-such-dir")), duration);
+	}
+
+	@Test(timeout = Timeout)
+	public void reclaim() throws Throwable {
+		createData(new File(trashDir, "leftover-1"));
+		createData(new File(trashDir, "leftover-2"));
+		assertSuccess(TrashReclaimer.reclaim(rootDir), duration);
+		assertEquals(0, trashDir.list().length);
+
+		// only checked once per JVM
+		File leftover = createData(new File(trashDir, "leftover-3"));
+		assertSuccess(TrashReclaimer.reclaim(rootDir), duration);
+		assertTrue(leftover.exists());
+	}
+
+	@Test
+	public void reclaim_noTrash() throws Throwable {
+		assertSuccess(TrashReclaimer.reclaim(rootDir), duration);
+	}
+
+	private static File createData(File dir) throws IOException {
+		Path nested = Files.createDirectories(dir.toPath().resolve("dataDir/version-2"));
+		for (int i = 0; i < 10; i++) {
+			Files.write(nested.resolve("log." + i), new byte[1024]);
+		}
+		return dir;
+	}
+}
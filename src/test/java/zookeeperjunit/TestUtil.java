@@ -15,10 +15,18 @@
  */
 package zookeeperjunit;
 
+import static zookeeperjunit.Util.assertLargerThanZero;
 import static zookeeperjunit.Util.assertPositive;
+import static zookeeperjunit.Util.createUniqueDir;
+import static zookeeperjunit.Util.freePort;
+
+import java.io.File;
+import java.io.IOException;
 
 import org.junit.Test;
 
+import ioutil.FileUtil;
+
 import junitextensions.ReflectionAssert;
 /**
  * Test the class {@link Util}.
@@ -40,4 +48,33 @@ public class TestUtil extends BaseAssert implements ReflectionAssert {
 	public void assertPositive_failure() {
 		assertPositive(-666);
 	}
+
+	@Test
+	public void assertLargerThanZero_success() {
+		assertLargerThanZero(1);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void assertLargerThanZero_failure() {
+		assertLargerThanZero(0);
+	}
+	
+	@Test
+	public void freePort_success() throws IOException {
+		assertTrue(freePort() > 0);
+	}
+
+	@Test
+	public void createUniqueDir_success() {
+		File first = createUniqueDir(new File("target"), "unique-");
+		File second = createUniqueDir(new File("target"), "unique-");
+		try {
+			assertTrue(first.isDirectory());
+			assertTrue(second.isDirectory());
+			assertNotEquals(first, second);
+		} finally {
+			FileUtil.delete(first);
+			FileUtil.delete(second);
+		}
+	}
 }
@@ -0,0 +1,160 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static org.apache.zookeeper.CreateMode.EPHEMERAL;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import junitextensions.FutureAssert;
+import junitextensions.TryAssert;
+
+/**
+ * Test the class {@link ZKClock}.
+ * 
+ * @author Peter Nerg
+ */
+public class TestZKClock extends BaseAssert implements FutureAssert, TryAssert {
+
+	private final ZKClock clock = ZKClock.apply();
+
+	/** Using the default timing, i.e. sessions time out after 10 seconds. */
+	private final ZKInstanceImpl instance = create(ZKTiming.defaults);
+
+	@After
+	public void after() throws TimeoutException, Throwable {
+		assertSuccess(instance.destroy(), duration);
+	}
+
+	@Test
+	public void advance() {
+		assertEquals(Duration.ZERO, clock.elapsed());
+		assertEquals(Duration.ofSeconds(1), clock.advance(Duration.ofSeconds(1)));
+		assertEquals(Duration.ofMinutes(1).plusSeconds(1), clock.advance(Duration.ofMinutes(1)));
+		assertEquals(Duration.ofMinutes(1).plusSeconds(1), clock.elapsed());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void advance_negative() {
+		clock.advance(Duration.ofSeconds(-1));
+	}
+
+	@Test(timeout = Timeout)
+	public void advance_expiresIdleSession() throws TimeoutException, Throwable {
+		assertSuccess(instance.start(), duration);
+		CloseableZooKeeper zookeeper = instance.connect().get();
+		zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+		// the client stops pinging the session, i.e. as if the connection was lost
+		zookeeper.abandon();
+
+		// the session expires 10s after its last ping, rounded up to the next tick (2s)
+		clock.advance(Duration.ofSeconds(9));
+		assertTrue(exists(instance, "/ephemeral"));
+		// the ephemeral is gone once the advance returns
+		clock.advance(Duration.ofSeconds(3));
+		assertFalse(exists(instance, "/ephemeral"));
+	}
+
+	@Test(timeout = Timeout)
+	public void advance_notAdvanced() throws TimeoutException, Throwable {
+		ZKInstanceImpl shortTimeout = create(ZKTiming.defaults.withTickTime(10).withSessionTimeouts(100, 100));
+		try {
+			assertSuccess(shortTimeout.start(), duration);
+			CloseableZooKeeper zookeeper = shortTimeout.connect().get();
+			zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+			zookeeper.abandon();
+
+			// several times the session timeout on the wall clock
+			Thread.sleep(500);
+			assertTrue(exists(shortTimeout, "/ephemeral"));
+		} finally {
+			assertSuccess(shortTimeout.destroy(), duration);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void advance_touchedSessionSurvives() throws TimeoutException, Throwable {
+		assertSuccess(instance.start(), duration);
+		try (CloseableZooKeeper zookeeper = instance.connect().get()) {
+			zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+			// an hour in steps shorter than the session timeout, each request touches the session
+			for (int i = 0; i < 60 * 12; i++) {
+				clock.advance(Duration.ofSeconds(5));
+				assertTrue(zookeeper.exists("/ephemeral").get());
+			}
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void advance_sharedByInstances() throws TimeoutException, Throwable {
+		ZKInstanceImpl other = create(ZKTiming.defaults);
+		try {
+			assertSuccess(instance.start(), duration);
+			assertSuccess(other.start(), duration);
+			CloseableZooKeeper zookeeper = instance.connect().get();
+			CloseableZooKeeper otherZookeeper = other.connect().get();
+			zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+			otherZookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+			zookeeper.abandon();
+			otherZookeeper.abandon();
+
+			clock.advance(Duration.ofMinutes(1));
+			assertFalse(exists(instance, "/ephemeral"));
+			assertFalse(exists(other, "/ephemeral"));
+		} finally {
+			assertSuccess(other.destroy(), duration);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void advance_afterRestart() throws TimeoutException, Throwable {
+		assertSuccess(instance.start(), duration);
+		assertSuccess(instance.stop(), duration);
+		// the stopped server is no longer driven by the clock
+		clock.advance(Duration.ofMinutes(1));
+
+		assertSuccess(instance.start(), duration);
+		CloseableZooKeeper zookeeper = instance.connect().get();
+		zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+		zookeeper.abandon();
+		clock.advance(Duration.ofMinutes(1));
+		assertFalse(exists(instance, "/ephemeral"));
+	}
+
+	@Test(timeout = Timeout)
+	public void session_recreatedWhenExpired() throws TimeoutException, Throwable {
+		assertSuccess(instance.start(), duration);
+		long sessionId = instance.session().get().getSessionId();
+		clock.advance(Duration.ofMinutes(1));
+		assertNotEquals(sessionId, instance.session().get().getSessionId());
+	}
+
+	private ZKInstanceImpl create(ZKTiming timing) {
+		return new ZKInstanceImpl(ZKServerSettings.defaults.withInMemoryStorage().withTiming(timing).withClock(clock));
+	}
+
+	/**
+	 * Checks if the path exists using the shared session of the instance, re-created in case it was expired by the clock.
+	 */
+	private static boolean exists(ZKInstance instance, String path) throws Throwable {
+		return instance.session().flatMap(zk -> zk.exists(path)).get();
+	}
+}
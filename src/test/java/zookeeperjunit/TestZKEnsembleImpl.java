@@ -0,0 +1,141 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javascalautils.Option;
+import javascalautils.Try;
+import junitextensions.FutureAssert;
+import junitextensions.OptionAssert;
+
+/**
+ * Test the class {@link ZKEnsembleImpl}
+ *
+ * @author Peter Nerg
+ */
+public class TestZKEnsembleImpl extends BaseAssert implements OptionAssert, FutureAssert {
+	private static final long EnsembleTimeout = 60000;
+	private static final Duration ensembleDuration = Duration.ofMillis(EnsembleTimeout);
+	private final ZKEnsembleImpl ensemble;
+
+	public TestZKEnsembleImpl() throws Exception {
+		ensemble = new ZKEnsembleImpl(3, ZKServerSettings.defaults.withMaxClientConnections(10));
+	}
+
+	@After
+	public void after() throws TimeoutException, Throwable {
+		ensemble.destroy().result(ensembleDuration);
+	}
+
+	@Test(timeout = EnsembleTimeout)
+	public void start() throws TimeoutException, Throwable {
+		assertSuccess(ensemble.start(), ensembleDuration);
+		assertSome(ensemble.leader());
+		ensemble.members().forEach(member -> assertSome(member.port()));
+		assertEquals(3, ensemble.connectString().get().split(",").length);
+	}
+
+	@Test
+	public void notStarted() {
+		assertNone(ensemble.connectString());
+		assertNone(ensemble.leader());
+		assertFailure(ensemble.connect());
+	}
+
+	@Test(timeout = EnsembleTimeout)
+	public void replication() throws TimeoutException, Throwable {
+		start();
+		String path = "/replication-" + System.currentTimeMillis();
+		try (CloseableZooKeeper zookeeper = ensemble.connect().get()) {
+			ZKConnectionUtil.createRecursive(zookeeper, path, "Peter was here!".getBytes());
+		}
+		// all members shall see the data
+		for (ZKInstance member : ensemble.members()) {
+			try (CloseableZooKeeper zookeeper = member.connect().get()) {
+				zookeeper.sync(path, null, null);
+				assertEquals("Peter was here!", new String(zookeeper.getData(path).get()));
+			}
+		}
+		// all members shall report the same data statistics
+		int nodeCount = ensemble.members().get(0).stats().get().nodeCount();
+		for (ZKInstance member : ensemble.members()) {
+			assertEquals(nodeCount, member.stats().get().nodeCount());
+		}
+	}
+
+	/**
+	 * Test the scenario: <br>
+	 * - Start the ensemble <br>
+	 * - Stop the leader <br>
+	 * - Verify a new leader is elected <br>
+	 * - Start the old leader again <br>
+	 * - Verify the old leader re-joins the ensemble <br>
+	 *
+	 * @throws TimeoutException
+	 * @throws Throwable
+	 */
+	@Test(timeout = EnsembleTimeout)
+	public void stopLeader() throws TimeoutException, Throwable {
+		start();
+		ZKInstance oldLeader = ensemble.leader().get();
+		assertSuccess(oldLeader.stop(), ensembleDuration);
+		assertNone(oldLeader.port());
+
+		ZKInstance newLeader = awaitLeader();
+		assertNotSame(oldLeader, newLeader);
+		assertConnectable(ensemble.connect());
+
+		assertSuccess(oldLeader.start(), ensembleDuration);
+		while (!((ZKEnsembleMember) oldLeader).isServing()) {
+			Thread.sleep(10);
+		}
+		assertConnectable(oldLeader.connect());
+	}
+
+	@Test(timeout = EnsembleTimeout)
+	public void inMemoryStorage() throws TimeoutException, Throwable {
+		ZKEnsembleImpl inMemoryEnsemble = new ZKEnsembleImpl(3, ZKServerSettings.defaults.withMaxClientConnections(10).withInMemoryStorage());
+		try {
+			assertSuccess(inMemoryEnsemble.start(), ensembleDuration);
+			String path = "/inMemoryStorage-" + System.currentTimeMillis();
+			try (CloseableZooKeeper zookeeper = inMemoryEnsemble.connect().get()) {
+				ZKConnectionUtil.createRecursive(zookeeper, path);
+				assertTrue(ZKConnectionUtil.exists(zookeeper, path));
+			}
+		} finally {
+			inMemoryEnsemble.destroy().result(ensembleDuration);
+		}
+	}
+
+	private ZKInstance awaitLeader() throws InterruptedException {
+		Option<ZKInstance> leader = ensemble.leader();
+		while (leader.isEmpty()) {
+			Thread.sleep(10);
+			leader = ensemble.leader();
+		}
+		return leader.get();
+	}
+
+	private void assertConnectable(Try<CloseableZooKeeper> connection) {
+		connection.forEach(CloseableZooKeeper::close);
+		assertTrue(connection.isSuccess());
+	}
+}
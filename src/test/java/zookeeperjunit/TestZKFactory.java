@@ -16,6 +16,7 @@
 package zookeeperjunit;
 
 import java.io.File;
+import java.time.Duration;
 
 import org.junit.Test;
 
@@ -52,6 +53,66 @@ public class TestZKFactory extends BaseAssert {
 		assertNotNull(factory.withMaxClientConnections(69).create());
 	}
 	
+	@Test
+	public void withInMemoryStorage() {
+		assertNotNull(factory.withInMemoryStorage().create());
+	}
+	
+	@Test
+	public void withTickTime() {
+		assertNotNull(factory.withTickTime(Duration.ofMillis(10)).create());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void withTickTime_illegalTime() {
+		factory.withTickTime(Duration.ZERO);
+	}
+
+	@Test
+	public void withSessionTimeouts() {
+		assertNotNull(factory.withSessionTimeouts(Duration.ofMillis(100), Duration.ofMillis(200)).create());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void withSessionTimeouts_maxLessThanMin() {
+		factory.withSessionTimeouts(Duration.ofMillis(200), Duration.ofMillis(100));
+	}
+
+	@Test
+	public void withTransport() {
+		assertNotNull(factory.withTransport(ZKTransport.NETTY).withWorkerThreads(2).withSocketBufferSize(65536).create());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void withWorkerThreads_illegalThreads() {
+		factory.withWorkerThreads(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void withSocketBufferSize_illegalSize() {
+		factory.withSocketBufferSize(0);
+	}
+
+	@Test
+	public void withClock() {
+		assertNotNull(factory.withClock(ZKClock.apply()).create());
+	}
+
+	@Test
+	public void withLazyStart() {
+		assertTrue(factory.withLazyStart().create() instanceof LazyZKInstance);
+	}
+
+	@Test
+	public void ensemble() {
+		assertEquals(3, factory.ensemble(3).members().size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void ensemble_illegalSize() {
+		factory.ensemble(0);
+	}
+	
 	@Test
 	public void withMultipleSettings()  {
 		ZKInstance instance = ZKFactory.apply()
@@ -15,11 +15,28 @@
  */
 package zookeeperjunit;
 
+import static org.apache.zookeeper.CreateMode.EPHEMERAL;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
 import static zookeeperjunit.CloseableZooKeeper.blockingConnect;
 
 import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import org.apache.zookeeper.ClientCnxn;
+import org.apache.zookeeper.Watcher.Event.KeeperState;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.NettyServerCnxnFactory;
+import org.apache.zookeeper.server.ServerCnxnFactory;
 import org.junit.After;
 import org.junit.Test;
 
@@ -29,14 +46,15 @@ import javascalautils.Unit;
 import javascalautils.concurrent.Future;
 import junitextensions.FutureAssert;
 import junitextensions.OptionAssert;
+import junitextensions.TryAssert;
 
 /**
  * Test the class {@link ZKInstanceImpl}
  * 
  * @author Peter Nerg
  */
-public class TestZKInstanceImpl extends BaseAssert implements OptionAssert, FutureAssert {
-	private final ZKInstanceImpl instance = new ZKInstanceImpl(0, new File("target/"), 5);
+public class TestZKInstanceImpl extends BaseAssert implements OptionAssert, FutureAssert, TryAssert {
+	private final ZKInstanceImpl instance = new ZKInstanceImpl(ZKServerSettings.defaults.withMaxClientConnections(5));
 
 	@After
 	public void after() throws TimeoutException, Throwable {
@@ -61,6 +79,16 @@ public class TestZKInstanceImpl extends BaseAssert implements OptionAssert, Futu
 		assertSome(instance.port());
 	}
 
+	@Test(timeout = Timeout)
+	public void port_boundByServer() throws TimeoutException, Throwable {
+		start();
+		int port = value(instance.port());
+		// the port picked when binding is reserved until the instance is destroyed
+		assertTrue(PortAllocator.isReserved(port));
+		assertSuccess(instance.destroy(), duration);
+		assertFalse(PortAllocator.isReserved(port));
+	}
+
 	/**
 	 * Test the scenario: <br>
 	 * - Start ZK <br>
@@ -76,7 +104,103 @@ public class TestZKInstanceImpl extends BaseAssert implements OptionAssert, Futu
 	 */
 	@Test(timeout = Timeout)
 	public void restart() throws TimeoutException, Throwable {
-		start();
+		assertRestart(instance);
+	}
+
+	@Test(timeout = Timeout)
+	public void restart_inMemoryStorage() throws TimeoutException, Throwable {
+		ZKInstanceImpl inMemoryInstance = new ZKInstanceImpl(ZKServerSettings.defaults.withMaxClientConnections(5).withInMemoryStorage());
+		try {
+			assertRestart(inMemoryInstance);
+		} finally {
+			value(inMemoryInstance.destroy());
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void start_concurrently() throws Throwable {
+		List<ZKInstanceImpl> instances = IntStream.range(0, 32).mapToObj(i -> new ZKInstanceImpl(ZKServerSettings.defaults.withMaxClientConnections(5))).collect(Collectors.toList());
+		try {
+			// start all at the same time, each shall get its own port and data directory
+			List<Future<Unit>> starts = instances.stream().map(ZKInstanceImpl::start).collect(Collectors.toList());
+			for (Future<Unit> start : starts) {
+				assertSuccess(start, Duration.ofSeconds(20));
+			}
+			assertEquals(instances.size(), instances.stream().map(i -> i.port().get()).distinct().count());
+			for (ZKInstanceImpl started : instances) {
+				try (CloseableZooKeeper zookeeper = value(started.connect())) {
+					// all instances are empty, i.e. they don't share any data
+					assertTrue(ZKConnectionUtil.createRecursive(zookeeper, "/concurrent"));
+				}
+			}
+		} finally {
+			for (ZKInstanceImpl started : instances) {
+				started.destroy().ready(duration);
+			}
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void restart_nettyTransport() throws TimeoutException, Throwable {
+		ZKServerTransport transport = ZKServerTransport.defaults.withTransport(ZKTransport.NETTY).withWorkerThreads(2).withSocketBufferSize(65536);
+		ZKInstanceImpl nettyInstance = new ZKInstanceImpl(ZKServerSettings.defaults.withMaxClientConnections(5).withInMemoryStorage().withTransport(transport));
+		try {
+			assertRestart(nettyInstance);
+		} finally {
+			value(nettyInstance.destroy());
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void restart_serverCnxnFactoryProperty() throws TimeoutException, Throwable {
+		// no transport chosen, the factory configured for ZooKeeper is used
+		System.setProperty(ServerCnxnFactory.ZOOKEEPER_SERVER_CNXN_FACTORY, NettyServerCnxnFactory.class.getName());
+		ZKInstanceImpl propertyInstance = new ZKInstanceImpl(ZKServerSettings.defaults.withMaxClientConnections(5).withInMemoryStorage());
+		try {
+			assertTrue(ZKServerTransport.defaults.bindsWhenStarted());
+			assertRestart(propertyInstance);
+		} finally {
+			System.clearProperty(ServerCnxnFactory.ZOOKEEPER_SERVER_CNXN_FACTORY);
+			value(propertyInstance.destroy());
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void destroy_inMemoryStorage() throws TimeoutException, Throwable {
+		ZKInstanceImpl inMemoryInstance = new ZKInstanceImpl(ZKServerSettings.defaults.withMaxClientConnections(5).withInMemoryStorage());
+		final String path = "/tmp/destroy-" + System.currentTimeMillis();
+		try {
+			assertSuccess(inMemoryInstance.start(), duration);
+			try (CloseableZooKeeper zookeeper = blockingConnect(inMemoryInstance.connectString().get(),duration)) {
+				ZKConnectionUtil.createRecursive(zookeeper, path);
+			}
+			value(inMemoryInstance.destroy());
+
+			//the data shall be gone after a destroy
+			assertSuccess(inMemoryInstance.start(), duration);
+			try (CloseableZooKeeper zookeeper = blockingConnect(inMemoryInstance.connectString().get(),duration)) {
+				assertFalse(ZKConnectionUtil.exists(zookeeper, path));
+			}
+		} finally {
+			value(inMemoryInstance.destroy());
+		}
+	}
+
+	/**
+	 * Test the scenario: <br>
+	 * - Start ZK <br>
+	 * - Connect to ZK <br>
+	 * - Create data in ZK <br>
+	 * - Stop ZK <br>
+	 * - Start ZK (again) <br>
+	 * - Verify connection is valid <br>
+	 * - Verify data is still there <br>
+	 * 
+	 * @throws TimeoutException
+	 * @throws Throwable
+	 */
+	private void assertRestart(ZKInstanceImpl instance) throws TimeoutException, Throwable {
+		assertSuccess(instance.start(), duration);
 		final Integer port = value(instance.port());
 		final String data = "Peter was here!";
 		final String path = "/tmp/restart-" + System.currentTimeMillis();
@@ -91,7 +215,7 @@ public class TestZKInstanceImpl extends BaseAssert implements OptionAssert, Futu
 		assertNone(instance.port());
 
 		//restart the instance again
-		start();
+		assertSuccess(instance.start(), duration);
 
 		assertEquals(port, value(instance.port()));
 
@@ -100,6 +224,269 @@ public class TestZKInstanceImpl extends BaseAssert implements OptionAssert, Futu
 		}
 	}
 
+	@Test(timeout = Timeout)
+	public void checkpoint_restore() throws TimeoutException, Throwable {
+		start();
+		try (CloseableZooKeeper zookeeper = value(instance.connect())) {
+			ZKConnectionUtil.createRecursive(zookeeper, "/checkpoint/a", "a".getBytes());
+			ZKCheckpoint checkpoint = value(instance.checkpoint());
+
+			// the checkpoint can be restored multiple times
+			for (int i = 0; i < 3; i++) {
+				zookeeper.setData("/checkpoint/a", "modified".getBytes(), -1);
+				ZKConnectionUtil.createRecursive(zookeeper, "/checkpoint/b");
+				assertSuccess(instance.restore(checkpoint));
+
+				assertEquals("a", new String(zookeeper.getData("/checkpoint/a").get()));
+				assertFalse(ZKConnectionUtil.exists(zookeeper, "/checkpoint/b"));
+			}
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void restore_removesEphemerals() throws TimeoutException, Throwable {
+		start();
+		try (CloseableZooKeeper zookeeper = value(instance.connect())) {
+			zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+			ZKCheckpoint checkpoint = value(instance.checkpoint());
+			assertSuccess(instance.restore(checkpoint));
+
+			// the session survives but not its ephemeral node
+			assertFalse(ZKConnectionUtil.exists(zookeeper, "/ephemeral"));
+			zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void expireSession() throws TimeoutException, Throwable {
+		start();
+		try (CloseableZooKeeper zookeeper = value(instance.connect())) {
+			CountDownLatch expired = new CountDownLatch(1);
+			zookeeper.register(event -> {
+				if (event.getState() == KeeperState.Expired) {
+					expired.countDown();
+				}
+			});
+			zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+			assertSuccess(instance.expireSession(zookeeper.getSessionId()));
+
+			// the ephemeral node is gone once the operation returns
+			assertFalse(value(value(instance.session()).exists("/ephemeral")));
+			assertTrue(expired.await(Timeout, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void expireSession_noSuchSession() throws TimeoutException, Throwable {
+		start();
+		assertFailure(instance.expireSession(666));
+	}
+
+	@Test
+	public void expireSession_notStarted() {
+		assertFailure(instance.expireSession(666));
+	}
+
+	@Test(timeout = 10000)
+	public void expireSession_churn() throws TimeoutException, Throwable {
+		ZKInstanceImpl churnInstance = new ZKInstanceImpl(ZKServerSettings.defaults.withMaxClientConnections(1000).withInMemoryStorage());
+		try {
+			assertSuccess(churnInstance.start(), duration);
+			for (int i = 0; i < 100; i++) {
+				CloseableZooKeeper zookeeper = value(churnInstance.connect());
+				zookeeper.create("/churn-" + i, new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+				assertSuccess(churnInstance.expireSession(zookeeper.getSessionId()));
+				// the expired client only learns it's expired once it has reconnected, closing it would block until then
+				zookeeper.abandon();
+			}
+			assertEquals(0, value(churnInstance.stats()).ephemeralCount());
+		} finally {
+			value(churnInstance.destroy());
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void expireAllSessions() throws TimeoutException, Throwable {
+		start();
+		assertSuccess(value(instance.session()).createRecursive("/expireAll", new byte[0]));
+		List<CloseableZooKeeper> sessions = value(instance.connect(3));
+		try {
+			// the shared session plus the three sessions
+			assertEquals(4, value(instance.expireAllSessions()).intValue());
+			assertEquals(0, value(instance.stats()).ephemeralCount());
+			// the shared session is transparently re-created
+			assertTrue(value(value(instance.session()).exists("/expireAll")));
+		} finally {
+			sessions.forEach(CloseableZooKeeper::abandon);
+		}
+	}
+
+	@Test
+	public void expireAllSessions_notStarted() {
+		assertFailure(instance.expireAllSessions());
+	}
+
+	@Test(timeout = Timeout)
+	public void dropConnections() throws TimeoutException, Throwable {
+		start();
+		try (CloseableZooKeeper zookeeper = value(instance.connect())) {
+			CountDownLatch disconnected = new CountDownLatch(1);
+			CountDownLatch reconnected = new CountDownLatch(1);
+			zookeeper.register(event -> {
+				if (event.getState() == KeeperState.Disconnected) {
+					disconnected.countDown();
+				} else if (event.getState() == KeeperState.SyncConnected && disconnected.getCount() == 0) {
+					reconnected.countDown();
+				}
+			});
+			zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+			assertSuccess(instance.dropConnections());
+
+			assertTrue(disconnected.await(Timeout, TimeUnit.MILLISECONDS));
+			assertTrue(reconnected.await(Timeout, TimeUnit.MILLISECONDS));
+			// the session survived
+			assertTrue(value(zookeeper.exists("/ephemeral")));
+		}
+	}
+
+	@Test
+	public void dropConnections_notStarted() {
+		assertFailure(instance.dropConnections());
+	}
+
+	@Test(timeout = Timeout)
+	public void restore_restart() throws TimeoutException, Throwable {
+		start();
+		ZKCheckpoint checkpoint = value(instance.checkpoint());
+		try (CloseableZooKeeper zookeeper = value(instance.connect())) {
+			ZKConnectionUtil.createRecursive(zookeeper, "/restore/restart");
+		}
+		assertSuccess(instance.restore(checkpoint));
+
+		// the restored data shall survive a restart
+		value(instance.stop());
+		start();
+		try (CloseableZooKeeper zookeeper = value(instance.connect())) {
+			assertFalse(ZKConnectionUtil.exists(zookeeper, "/restore"));
+			ZKConnectionUtil.createRecursive(zookeeper, "/restore/restart");
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void session() throws TimeoutException, Throwable {
+		start();
+		CloseableZooKeeper session = value(instance.session());
+		assertSame(session, value(instance.session()));
+
+		// a closed session is replaced
+		session.close();
+		CloseableZooKeeper newSession = value(instance.session());
+		assertNotSame(session, newSession);
+
+		// restarting the instance invalidates the session
+		value(instance.stop());
+		assertFalse(newSession.getState().isAlive());
+		start();
+		assertNotSame(newSession, value(instance.session()));
+	}
+
+	/**
+	 * Test that a session expires and its ephemeral node is removed within a fraction of a second with a fast timing profile. <br>
+	 * The connection of the client is dropped without closing the session, i.e. the session is left to expire.
+	 */
+	@Test(timeout = Timeout)
+	public void sessionExpiry_fastTiming() throws TimeoutException, Throwable {
+		ZKInstanceImpl fastInstance = new ZKInstanceImpl(ZKServerSettings.defaults.withMaxClientConnections(5).withInMemoryStorage().withTiming(new ZKTiming(10, 50, 100)));
+		try {
+			assertSuccess(fastInstance.start(), duration);
+			try (CloseableZooKeeper zookeeper = value(fastInstance.connect()); CloseableZooKeeper observer = value(fastInstance.connect())) {
+				assertEquals(100, zookeeper.getSessionTimeout());
+				zookeeper.create("/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+
+				long start = System.currentTimeMillis();
+				Field cnxn = ZooKeeper.class.getDeclaredField("cnxn");
+				cnxn.setAccessible(true);
+				((ClientCnxn) cnxn.get(zookeeper)).disconnect();
+
+				while (value(observer.exists("/ephemeral"))) {
+					Thread.sleep(10);
+				}
+				assertTrue(System.currentTimeMillis() - start < 1000);
+			}
+		} finally {
+			value(fastInstance.destroy());
+		}
+	}
+
+	@Test
+	public void session_notStarted() {
+		assertFailure(instance.session());
+	}
+
+	@Test
+	public void checkpoint_notStarted() {
+		assertFailure(instance.checkpoint());
+	}
+
+	@Test(timeout = Timeout)
+	public void stats() throws TimeoutException, Throwable {
+		start();
+		int initialNodes = value(instance.stats()).nodeCount();
+		try (CloseableZooKeeper zookeeper = value(instance.connect())) {
+			ZKConnectionUtil.createRecursive(zookeeper, "/stats/a", "data".getBytes());
+			zookeeper.create("/stats/ephemeral", new byte[0], OPEN_ACL_UNSAFE, EPHEMERAL);
+			zookeeper.exists("/stats/a", true);
+
+			ZKStats stats = value(instance.stats());
+			assertEquals(initialNodes + 3, stats.nodeCount());
+			assertEquals(1, stats.ephemeralCount());
+			assertEquals(1, stats.watchCount());
+			assertEquals(1, stats.aliveConnections());
+			assertTrue(stats.packetsReceived() > 0);
+			assertTrue(stats.approximateDataSize() > 0);
+			assertTrue(stats.txnLogSize() > 0);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void resetStats() throws TimeoutException, Throwable {
+		start();
+		try (CloseableZooKeeper zookeeper = value(instance.connect())) {
+			zookeeper.exists("/", false);
+			assertTrue(value(instance.stats()).packetsReceived() > 0);
+
+			assertSuccess(instance.resetStats());
+			ZKStats stats = value(instance.stats());
+			assertEquals(0, stats.packetsReceived());
+			assertEquals(0, stats.packetsSent());
+			assertEquals(0, stats.maxLatency());
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void seed() throws TimeoutException, Throwable {
+		start();
+		Path file = Files.createTempFile(new File("target").toPath(), "seed", ".properties");
+		try {
+			Files.write(file, Arrays.asList("/seed/a=a", "/seed/b=b"));
+			assertEquals(2, value(instance.seed(file)).nodeCount());
+			assertEquals("b", new String(value(value(instance.session()).getData("/seed/b"))));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void seed_notStarted() {
+		assertFailure(instance.seed(new File("target/no-such-file").toPath()));
+	}
+
+	@Test
+	public void stats_notStarted() {
+		assertFailure(instance.stats());
+		assertFailure(instance.resetStats());
+	}
+
 	@Test
 	public void connect_success() throws TimeoutException, Throwable {
 		start();
@@ -108,6 +495,19 @@ public class TestZKInstanceImpl extends BaseAssert implements OptionAssert, Futu
 		assertSuccess(connect);
 	}
 
+	@Test(timeout = Timeout)
+	public void connect_multiple() throws TimeoutException, Throwable {
+		start();
+		List<CloseableZooKeeper> sessions = value(instance.connect(5));
+		sessions.forEach(CloseableZooKeeper::close);
+		assertEquals(5, sessions.size());
+	}
+
+	@Test
+	public void connect_multiple_notStarted() {
+		assertFailure(instance.connect(5));
+	}
+
 	@Test
 	public void connect_failure() throws TimeoutException, Throwable {
 		Try<CloseableZooKeeper> connect = instance.connect(); // no server is running, this should fail
@@ -120,6 +520,11 @@ public class TestZKInstanceImpl extends BaseAssert implements OptionAssert, Futu
 		return option.get();
 	}
 
+	private <T> T value(Try<T> t) {
+		assertSuccess(t);
+		return t.orNull();
+	}
+
 	private <T> T value(Future<T> future) throws Throwable {
 		assertSuccess(future, duration);
 		return future.value().get().get();
@@ -0,0 +1,82 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static zookeeperjunit.ZKConnectionUtil.createRecursive;
+import static zookeeperjunit.ZKConnectionUtil.exists;
+
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import junitextensions.TryAssert;
+
+/**
+ * Test the class {@link ZKLease} using the {@link ZKFactory#shared() shared} instance.
+ *
+ * @author Peter Nerg
+ */
+public class TestZKLease extends BaseAssert implements TryAssert {
+
+	private final ZKInstance instance = ZKFactory.shared();
+
+	@Test
+	public void shared() {
+		assertSame(instance, ZKFactory.shared());
+		assertTrue(instance.port().isDefined());
+	}
+
+	@Test
+	public void lease_unique() {
+		try (ZKLease lease1 = instance.lease().orNull(); ZKLease lease2 = instance.lease().orNull()) {
+			assertNotEquals(lease1.path(), lease2.path());
+			assertTrue(lease1.connectString().endsWith(lease1.path()));
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void lease_isolated() throws TimeoutException, Throwable {
+		try (ZKLease lease1 = instance.lease().orNull(); ZKLease lease2 = instance.lease().orNull()) {
+			try (CloseableZooKeeper zk1 = lease1.connect().get(); CloseableZooKeeper zk2 = lease2.connect().get()) {
+				createRecursive(zk1, "/isolated/path");
+				assertTrue(exists(zk1, "/isolated/path"));
+				assertFalse(exists(zk2, "/isolated"));
+			}
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void close_deletesData() throws TimeoutException, Throwable {
+		ZKLease lease = instance.lease().get();
+		try (CloseableZooKeeper zookeeper = lease.connect().get()) {
+			createRecursive(zookeeper, "/some/data");
+		}
+		lease.close();
+		lease.close(); // shall have no effect
+
+		// the namespace is deleted in the background
+		try (CloseableZooKeeper zookeeper = instance.connect().get()) {
+			while (exists(zookeeper, lease.path())) {
+				Thread.sleep(5);
+			}
+		}
+	}
+
+	@Test
+	public void lease_notStarted() {
+		assertFailure(ZKFactory.apply().create().lease());
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import junitextensions.OptionAssert;
+import junitextensions.TryAssert;
+
+/**
+ * Test the class {@link ZKProxy}.
+ * @author Peter Nerg
+ */
+public class TestZKProxy extends BaseAssert implements TryAssert, OptionAssert {
+
+	private static final ZKInstance instance = ZKFactory.apply().withInMemoryStorage().create();
+
+	private final ZKProxy proxy = ZKProxy.apply(instance);
+
+	@BeforeClass
+	public static void startServer() throws TimeoutException, Throwable {
+		instance.start().result(duration);
+	}
+
+	@AfterClass
+	public static void destroyServer() throws TimeoutException, Throwable {
+		instance.destroy().result(duration);
+	}
+
+	@After
+	public void after() {
+		proxy.close();
+	}
+
+	@Test(timeout = Timeout)
+	public void connect() throws Throwable {
+		assertNone(proxy.connectString());
+		assertFailure(proxy.connect());
+		assertSuccess(proxy.start());
+		assertSome(proxy.connectString());
+		assertNotEquals(instance.port().get(), proxy.port().get());
+		try (CloseableZooKeeper zookeeper = proxy.connect().get()) {
+			assertSuccess(zookeeper.createRecursive("/TestZKProxy/connect", "data".getBytes()));
+			assertEquals("data", new String(zookeeper.getData("/TestZKProxy/connect").get()));
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void close_thenStart() throws Throwable {
+		assertSuccess(proxy.start());
+		proxy.close();
+		assertNone(proxy.port());
+
+		// a closed proxy can be started again
+		assertSuccess(proxy.start());
+		try (CloseableZooKeeper zookeeper = proxy.connect().get()) {
+			assertSuccess(zookeeper.createRecursive("/TestZKProxy/close_thenStart", new byte[0]));
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void withLatency() throws Throwable {
+		proxy.withLatency(Duration.ofMillis(20)).start().get();
+		try (CloseableZooKeeper zookeeper = proxy.connect().get()) {
+			long start = System.nanoTime();
+			for (int i = 0; i < 5; i++) {
+				zookeeper.exists("/");
+			}
+			// each round trip adds twice the latency
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 5 * 40);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void withBandwidth() throws Throwable {
+		proxy.start().get();
+		try (CloseableZooKeeper zookeeper = proxy.connect().get()) {
+			zookeeper.createRecursive("/TestZKProxy/withBandwidth", new byte[200_000]).get();
+			proxy.withBandwidth(1_000_000);
+			long start = System.nanoTime();
+			assertEquals(200_000, zookeeper.getData("/TestZKProxy/withBandwidth").get().length);
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void blackhole() throws Throwable {
+		proxy.start().get();
+		try (CloseableZooKeeper zookeeper = proxy.connect().get()) {
+			proxy.blackhole(true);
+			CountDownLatch response = new CountDownLatch(1);
+			zookeeper.exists("/", false, (rc, path, ctx, stat) -> response.countDown(), null);
+			assertFalse(response.await(200, TimeUnit.MILLISECONDS));
+
+			// once healed the pending request is delivered
+			proxy.blackhole(false);
+			assertTrue(response.await(1, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void withLatency_negative() {
+		proxy.withLatency(Duration.ofMillis(-1));
+	}
+}
@@ -0,0 +1,55 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.io.File;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link ZKServerSettings}.
+ * @author Peter Nerg
+ */
+public class TestZKServerSettings extends BaseAssert {
+
+	@Test
+	public void defaults() {
+		assertEquals(0, ZKServerSettings.defaults.port);
+		assertEquals(50, ZKServerSettings.defaults.maxClientConnections);
+		assertFalse(ZKServerSettings.defaults.inMemoryStorage);
+		assertTrue(ZKServerSettings.defaults.template.isEmpty());
+		assertTrue(ZKServerSettings.defaults.clock.isEmpty());
+	}
+
+	@Test
+	public void copies() {
+		File rootDir = new File("target/settings");
+		ZKServerSettings settings = ZKServerSettings.defaults.withPort(2181).withRootDir(rootDir).withMaxClientConnections(5).withInMemoryStorage();
+		assertEquals(2181, settings.port);
+		assertEquals(rootDir, settings.rootDir);
+		assertEquals(5, settings.maxClientConnections);
+		assertTrue(settings.inMemoryStorage);
+		// the original is left untouched
+		assertEquals(0, ZKServerSettings.defaults.port);
+		assertFalse(ZKServerSettings.defaults.inMemoryStorage);
+	}
+
+	@Test
+	public void withClock() {
+		ZKClock clock = ZKClock.apply();
+		assertTrue(ZKServerSettings.defaults.withClock(clock).clock.exists(c -> c == clock));
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import junitextensions.FutureAssert;
+import junitextensions.TryAssert;
+
+/**
+ * Test the class {@link ZKTemplate}.
+ * @author Peter Nerg
+ */
+public class TestZKTemplate extends BaseAssert implements TryAssert, FutureAssert {
+
+	private static ZKTemplate template;
+
+	@BeforeClass
+	public static void createTemplate() throws Throwable {
+		Path file = Files.createTempFile(new File("target").toPath(), "template", ".properties");
+		try {
+			Files.write(file, Arrays.asList("/app/config/timeout=5000", "/app/config/name=test", "/app/locks"));
+			template = ZKTemplate.of(file).get();
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@AfterClass
+	public static void destroyTemplate() {
+		template.destroy();
+	}
+
+	@Test
+	public void of_seedFile() {
+		// the listed nodes, their parents, /zookeeper + /zookeeper/quota and the root which ZooKeeper counts twice ("" and "/")
+		assertEquals(9, template.nodeCount());
+	}
+
+	@Test
+	public void of_missingFile() {
+		assertFailure(ZKTemplate.of(new File("no-such-file").toPath()));
+	}
+
+	@Test(timeout = Timeout)
+	public void of_parentAfterChild() throws TimeoutException, Throwable {
+		Path file = Files.createTempFile(new File("target").toPath(), "template", ".properties");
+		Files.write(file, Arrays.asList("/app/config/timeout=5000", "/app/config=config", "/app=app"));
+		ZKTemplate parentAfterChild = ZKTemplate.of(file).get();
+		try {
+			assertStartsWith(ZKFactory.apply().fromTemplate(parentAfterChild).create(), "/app/config", "config");
+			assertStartsWith(ZKFactory.apply().fromTemplate(parentAfterChild).create(), "/app", "app");
+		} finally {
+			parentAfterChild.destroy();
+			Files.delete(file);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void of_checkpoint() throws TimeoutException, Throwable {
+		ZKInstance instance = ZKFactory.apply().withInMemoryStorage().create();
+		try {
+			assertSuccess(instance.start(), duration);
+			instance.session().get().createRecursive("/checkpoint/node", "data".getBytes()).get();
+			ZKTemplate fromCheckpoint = ZKTemplate.of(instance.checkpoint().get()).get();
+			try {
+				assertStartsWith(ZKFactory.apply().fromTemplate(fromCheckpoint).create(), "/checkpoint/node", "data");
+			} finally {
+				fromCheckpoint.destroy();
+			}
+		} finally {
+			instance.destroy().ready(duration);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void fromTemplate_disc() throws TimeoutException, Throwable {
+		assertStartsWith(ZKFactory.apply().fromTemplate(template).create(), "/app/config/timeout", "5000");
+	}
+
+	@Test(timeout = Timeout)
+	public void fromTemplate_inMemoryStorage() throws TimeoutException, Throwable {
+		assertStartsWith(ZKFactory.apply().withInMemoryStorage().fromTemplate(template).create(), "/app/config/name", "test");
+	}
+
+	@Test(timeout = 10000)
+	public void fromTemplate_isolated() throws TimeoutException, Throwable {
+		ZKInstance first = ZKFactory.apply().fromTemplate(template).create();
+		ZKInstance second = ZKFactory.apply().fromTemplate(template).create();
+		try {
+			assertSuccess(first.start(), duration);
+			assertSuccess(second.start(), duration);
+			first.session().get().setData("/app/config/timeout", "1".getBytes(), -1);
+			assertEquals("5000", new String(second.session().get().getData("/app/config/timeout").get()));
+
+			// a restart keeps the modified data
+			assertSuccess(first.stop(), duration);
+			assertSuccess(first.start(), duration);
+			assertEquals("1", new String(first.session().get().getData("/app/config/timeout").get()));
+
+			// a destroyed instance starts over from the template
+			assertSuccess(first.destroy(), duration);
+			assertSuccess(first.start(), duration);
+			assertEquals("5000", new String(first.session().get().getData("/app/config/timeout").get()));
+		} finally {
+			first.destroy().ready(duration);
+			second.destroy().ready(duration);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void fromTemplate_restoreBeforeWrite() throws TimeoutException, Throwable {
+		ZKInstance other = ZKFactory.apply().withInMemoryStorage().create();
+		ZKInstance first = ZKFactory.apply().fromTemplate(template).create();
+		ZKInstance second = ZKFactory.apply().fromTemplate(template).create();
+		try {
+			assertSuccess(other.start(), duration);
+			other.session().get().createRecursive("/restored", "data".getBytes()).get();
+			ZKCheckpoint checkpoint = other.checkpoint().get();
+
+			// the restored tree keeps the zxid of the template, stopping snapshots it under the same name as the linked template snapshot
+			assertSuccess(first.start(), duration);
+			assertSuccess(first.restore(checkpoint));
+			assertSuccess(first.stop(), duration);
+			assertSuccess(first.start(), duration);
+			assertTrue(first.session().get().exists("/restored").get());
+
+			// a restarted instance loads the linked snapshot from disc
+			assertSuccess(second.start(), duration);
+			assertSuccess(second.stop(), duration);
+			assertSuccess(second.start(), duration);
+			assertFalse(second.session().get().exists("/restored").get());
+			assertEquals("5000", new String(second.session().get().getData("/app/config/timeout").get()));
+		} finally {
+			other.destroy().ready(duration);
+			first.destroy().ready(duration);
+			second.destroy().ready(duration);
+		}
+	}
+
+	private void assertStartsWith(ZKInstance instance, String path, String data) throws TimeoutException, Throwable {
+		try {
+			assertSuccess(instance.start(), duration);
+			assertEquals(data, new String(instance.session().get().getData(path).get()));
+		} finally {
+			instance.destroy().ready(duration);
+		}
+	}
+}
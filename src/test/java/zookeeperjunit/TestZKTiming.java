@@ -0,0 +1,60 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link ZKTiming}.
+ * @author Peter Nerg
+ */
+public class TestZKTiming extends BaseAssert {
+
+	@Test
+	public void defaults() {
+		assertEquals(2000, ZKTiming.defaults.tickTime);
+		assertEquals(10, ZKTiming.defaults.initLimit());
+		assertEquals(5, ZKTiming.defaults.syncLimit());
+	}
+
+	@Test
+	public void withTickTime() {
+		ZKTiming timing = ZKTiming.defaults.withTickTime(10);
+		assertEquals(10, timing.tickTime);
+		assertEquals(ZKTiming.defaults.maxSessionTimeout, timing.maxSessionTimeout);
+		// the limits shall still give the ensemble enough time to form
+		assertEquals(2000, timing.initLimit());
+		assertEquals(1000, timing.syncLimit());
+	}
+
+	@Test
+	public void withSessionTimeouts() {
+		ZKTiming timing = ZKTiming.defaults.withSessionTimeouts(100, 200);
+		assertEquals(100, timing.minSessionTimeout);
+		assertEquals(200, timing.maxSessionTimeout);
+		assertEquals(ZKTiming.defaults.tickTime, timing.tickTime);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void illegalTickTime() {
+		new ZKTiming(0, 100, 200);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void maxLessThanMin() {
+		new ZKTiming(10, 200, 100);
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test the class {@link ZKTree}.
+ * @author Peter Nerg
+ */
+public class TestZKTree extends BaseAssert {
+
+	@Test
+	public void of_addsParents() {
+		Map<String, byte[]> data = new HashMap<>();
+		data.put("/a/b/c", "c".getBytes());
+		ZKTree tree = ZKTree.of(data);
+		assertEquals(4, tree.size());
+		assertEquals(0, tree.node("/").get().data().length);
+		assertEquals(0, tree.node("/a/b").get().data().length);
+		assertEquals("c", new String(tree.node("/a/b/c").get().data()));
+		assertTrue(tree.node("/a/b/c").get().stat().isEmpty());
+	}
+
+	@Test
+	public void diff_equal() {
+		Map<String, byte[]> data = new HashMap<>();
+		data.put("/a", "a".getBytes());
+		assertTrue(ZKTree.of(data).diff(ZKTree.of(data)).isEmpty());
+	}
+
+	@Test
+	public void diff() {
+		Map<String, byte[]> expected = new HashMap<>();
+		expected.put("/missing", new byte[0]);
+		expected.put("/changed", "expected".getBytes());
+		Map<String, byte[]> actual = new HashMap<>();
+		actual.put("/changed", new String(new char[100]).replace('\0', 'x').getBytes());
+		actual.put("/unexpected", new byte[0]);
+
+		List<String> diff = ZKTree.of(expected).diff(ZKTree.of(actual));
+		assertEquals(3, diff.size());
+		assertEquals("~ /changed [expected] != [xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx...(100 bytes)]", diff.get(0));
+		assertEquals("- /missing", diff.get(1));
+		assertEquals("+ /unexpected", diff.get(2));
+	}
+
+	@Test
+	public void describeDiff_equal() {
+		Map<String, byte[]> data = new HashMap<>();
+		data.put("/a", "a".getBytes());
+		assertTrue(ZKTree.of(data).describeDiff(ZKTree.of(data)).isEmpty());
+	}
+
+	@Test
+	public void describeDiff_truncated() {
+		Map<String, byte[]> expected = new HashMap<>();
+		for (int i = 0; i < ZKTree.maxDiffLines + 5; i++) {
+			expected.put("/missing" + i, new byte[0]);
+		}
+		String description = ZKTree.of(expected).describeDiff(ZKTree.of(new HashMap<>())).get();
+		assertTrue(description.startsWith((ZKTree.maxDiffLines + 5) + " node(s)\n"));
+		assertEquals(ZKTree.maxDiffLines + 2, description.split("\n").length);
+		assertTrue(description.endsWith("\n...and 5 more"));
+	}
+}
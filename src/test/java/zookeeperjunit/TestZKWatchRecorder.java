@@ -0,0 +1,185 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import static org.apache.zookeeper.Watcher.Event.EventType.NodeChildrenChanged;
+import static org.apache.zookeeper.Watcher.Event.EventType.NodeCreated;
+import static org.apache.zookeeper.Watcher.Event.EventType.NodeDataChanged;
+import static org.apache.zookeeper.Watcher.Event.EventType.NodeDeleted;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.apache.zookeeper.ZooDefs.Perms;
+import org.apache.zookeeper.data.ACL;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the class {@link ZKWatchRecorder}.
+ * @author Peter Nerg
+ */
+public class TestZKWatchRecorder extends BaseAssert implements ZooKeeperAssert {
+
+	private static final ZKInstance instance = ZKFactory.apply().withInMemoryStorage().create();
+
+	private static int counter = 0;
+
+	private final String rootPath = "/TestZKWatchRecorder-" + (counter++);
+	private CloseableZooKeeper recording;
+	private CloseableZooKeeper zookeeper;
+
+	@BeforeClass
+	public static void startServer() throws TimeoutException, Throwable {
+		instance.start().result(duration);
+	}
+
+	@AfterClass
+	public static void destroyServer() throws TimeoutException, Throwable {
+		instance.destroy().result(duration);
+	}
+
+	@Before
+	public void before() throws Throwable {
+		recording = instance.connect().get();
+		zookeeper = instance.connect().get();
+	}
+
+	@After
+	public void after() {
+		recording.close();
+		zookeeper.close();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see zookeeperjunit.ZooKeeperAssert#instance()
+	 */
+	@Override
+	public ZKInstance instance() {
+		return instance;
+	}
+
+	@Test(timeout = Timeout)
+	public void record() throws Throwable {
+		zookeeper.createRecursive(rootPath, new byte[0]).get();
+		try (ZKWatchRecorder recorder = recording.recordWatches(rootPath).get()) {
+			zookeeper.createRecursive(rootPath + "/child", new byte[0]).get();
+			recorder.awaitEvents(1, duration).get();
+			zookeeper.setData(rootPath + "/child", "data".getBytes(), -1);
+			recorder.awaitEvents(2, duration).get();
+			zookeeper.delete(rootPath + "/child").get();
+			recorder.awaitEvents(4, duration).get();
+
+			assertEventSequence(recorder, NodeChildrenChanged, NodeDataChanged, NodeDeleted, NodeChildrenChanged);
+			List<ZKWatchEvent> events = recorder.events();
+			assertEquals(rootPath, events.get(0).path());
+			assertEquals(rootPath + "/child", events.get(1).path());
+			assertTrue(events.get(1).nanoTime() >= events.get(0).nanoTime());
+			assertEquals(1, recorder.events(NodeDataChanged).size());
+			assertTrue(recorder.rate() > 0);
+			assertMaxEvents(recorder, 4);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void record_existingSubtree() throws Throwable {
+		zookeeper.createRecursive(rootPath + "/a/b/c", new byte[0]).get();
+		try (ZKWatchRecorder recorder = recording.recordWatches(rootPath).get()) {
+			zookeeper.setData(rootPath + "/a/b/c", new byte[1], -1);
+			recorder.awaitEvents(1, duration).get();
+			assertEventSequence(recorder, NodeDataChanged);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void record_nonExistingRoot() throws Throwable {
+		try (ZKWatchRecorder recorder = recording.recordWatches(rootPath).get()) {
+			zookeeper.createRecursive(rootPath, new byte[0]).get();
+			recorder.awaitEvents(1, duration).get();
+			zookeeper.createRecursive(rootPath + "/child", new byte[0]).get();
+			recorder.awaitEvents(2, duration).get();
+			assertEventSequence(recorder, NodeCreated, NodeChildrenChanged);
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void record_overwritten() throws Throwable {
+		zookeeper.createRecursive(rootPath, new byte[0]).get();
+		try (ZKWatchRecorder recorder = recording.recordWatches(rootPath, 3).get()) {
+			for (int i = 0; i < 6; i++) {
+				zookeeper.setData(rootPath, new byte[i], -1);
+				recorder.awaitEvents(i + 1, duration).get();
+			}
+			// capacity is rounded up to 4
+			assertEquals(6, recorder.count());
+			assertEquals(2, recorder.overwritten());
+			assertEquals(4, recorder.events().size());
+			assertEquals(2, recorder.events().get(0).sequence());
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void clear() throws Throwable {
+		zookeeper.createRecursive(rootPath, new byte[0]).get();
+		try (ZKWatchRecorder recorder = recording.recordWatches(rootPath).get()) {
+			zookeeper.setData(rootPath, new byte[1], -1);
+			recorder.awaitEvents(1, duration).get();
+			recorder.clear();
+			assertEquals(0, recorder.count());
+			assertTrue(recorder.events().isEmpty());
+		}
+	}
+
+	@Test(timeout = Timeout)
+	public void awaitEvents_armFailure() throws Throwable {
+		zookeeper.createRecursive(rootPath, new byte[0]).get();
+		try (ZKWatchRecorder recorder = recording.recordWatches(rootPath).get()) {
+			// the children of a node without read permission cannot be watched
+			zookeeper.create(rootPath + "/unreadable", new byte[0], Arrays.asList(new ACL(Perms.ALL & ~Perms.READ, Ids.ANYONE_ID_UNSAFE)), PERSISTENT);
+			Throwable failure = recorder.awaitEvents(1, duration).failed().get();
+			assertTrue(failure instanceof KeeperException.NoAuthException);
+			// the recording stays failed
+			assertFailure(recorder.awaitEvents(1, duration));
+		}
+	}
+
+	@Test
+	public void awaitEvents_timeout() throws Throwable {
+		try (ZKWatchRecorder recorder = recording.recordWatches(rootPath).get()) {
+			assertFailure(recorder.awaitEvents(1, Duration.ofMillis(50)));
+		}
+	}
+
+	@Test(expected = AssertionError.class)
+	public void assertMaxEvents_exceeded() throws Throwable {
+		zookeeper.createRecursive(rootPath, new byte[0]).get();
+		try (ZKWatchRecorder recorder = recording.recordWatches(rootPath).get()) {
+			zookeeper.setData(rootPath, new byte[1], -1);
+			recorder.awaitEvents(1, duration).get();
+			assertMaxEvents(recorder, 0);
+		}
+	}
+}
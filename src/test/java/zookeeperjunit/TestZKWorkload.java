@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2016 Peter Nerg
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package zookeeperjunit;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import junitextensions.FutureAssert;
+import zookeeperjunit.ZKWorkload.Operation;
+
+/**
+ * Test the class {@link ZKWorkload}.
+ * @author Peter Nerg
+ */
+public class TestZKWorkload extends BaseAssert implements FutureAssert, ZooKeeperAssert {
+
+	private static final Duration duration = Duration.ofSeconds(30);
+	private static final ZKInstance instance = ZKFactory.apply().withInMemoryStorage().create();
+
+	@BeforeClass
+	public static void startServer() throws TimeoutException, Throwable {
+		instance.start().result(duration);
+	}
+
+	@AfterClass
+	public static void destroyServer() throws TimeoutException, Throwable {
+		instance.destroy().result(duration);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see zookeeperjunit.ZooKeeperAssert#instance()
+	 */
+	@Override
+	public ZKInstance instance() {
+		return instance;
+	}
+
+	@Test(timeout = Timeout)
+	public void run() throws TimeoutException, Throwable {
+		ZKWorkloadReport report = ZKWorkload.apply(instance).withRate(2000).withDuration(Duration.ofMillis(500)).withSessions(3).withNodes(10)
+				.withPayloadSize(10, 100).withMix(1, 1, 1, 1).run().result(duration);
+
+		long total = 0;
+		for (Operation operation : Operation.values()) {
+			assertEquals(0, report.errors(operation));
+			assertTrue(report.histogram(operation).count() > 0);
+			total += report.histogram(operation).count();
+		}
+		assertEquals(1000, total);
+		assertTrue(report.throughput() > 0);
+		// the seeded nodes and the parent created for them are removed after the run
+		assertNotExists("/zookeeper-junit");
+	}
+
+	@Test(timeout = Timeout)
+	public void run_existingParent() throws TimeoutException, Throwable {
+		session().get().createRecursive("/TestZKWorkload-parent", new byte[0]).get();
+		ZKWorkload.apply(instance).withRate(1000).withDuration(Duration.ofMillis(100)).withRootPath("/TestZKWorkload-parent/a/b").run().result(duration);
+		assertExists("/TestZKWorkload-parent");
+		assertNotExists("/TestZKWorkload-parent/a");
+	}
+
+	@Test(timeout = Timeout)
+	public void run_onlyReads() throws TimeoutException, Throwable {
+		ZKWorkloadReport report = ZKWorkload.apply(instance.connectString().get()).withRate(1000).withDuration(Duration.ofMillis(100))
+				.withMix(1, 0, 0, 0).withRootPath("/TestZKWorkload").run().result(duration);
+		assertEquals(100, report.histogram(Operation.READ).count());
+		assertEquals(0, report.histogram(Operation.WRITE).count());
+		assertEquals(0, report.throughput(Operation.WRITE), 0);
+	}
+
+	@Test(timeout = Timeout)
+	public void run_notStarted() throws TimeoutException, Throwable {
+		assertFailure(ZKWorkload.apply(ZKFactory.apply().create()).run(), duration);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void withMix_allZero() {
+		ZKWorkload.apply(instance).withMix(0, 0, 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void withPayloadSize_maxLessThanMin() {
+		ZKWorkload.apply(instance).withPayloadSize(100, 10);
+	}
+}
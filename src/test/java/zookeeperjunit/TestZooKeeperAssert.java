@@ -15,12 +15,24 @@
  */
 package zookeeperjunit;
 
+import static javascalautils.concurrent.FutureCompanion.Future;
+import static org.apache.zookeeper.CreateMode.PERSISTENT;
+import static org.apache.zookeeper.ZooDefs.Ids.OPEN_ACL_UNSAFE;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
 
+import org.apache.zookeeper.Op;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import javascalautils.ThrowableFunction1;
+
 /**
  * @author Peter Nerg
  *
@@ -71,5 +83,123 @@ public class TestZooKeeperAssert extends BaseAssert implements ZooKeeperAssert {
 	public void assertNotExists_existsNot() {
 		assertNotExists("/no-such-path");
 	}
+
+	@Test
+	public void assertTreeEquals_equal() throws Throwable {
+		String path = rootPath + "/assertTreeEquals_equal";
+		session().get().createRecursive(path + "/a/b", "b".getBytes()).get();
+		Map<String, byte[]> expected = new HashMap<>();
+		expected.put("/a/b", "b".getBytes());
+		assertTreeEquals(path, ZKTree.of(expected));
+	}
+
+	@Test
+	public void assertTreeEquals_differs() throws Throwable {
+		String path = rootPath + "/assertTreeEquals_differs";
+		session().get().createRecursive(path + "/changed", "actual".getBytes()).get();
+		session().get().createRecursive(path + "/unexpected", new byte[0]).get();
+		Map<String, byte[]> expected = new HashMap<>();
+		expected.put("/changed", "expected".getBytes());
+		expected.put("/missing", new byte[0]);
+		try {
+			assertTreeEquals(path, ZKTree.of(expected));
+			fail("Expected an AssertionError");
+		} catch (AssertionError ex) {
+			assertTrue(ex.getMessage().contains("~ /changed [expected] != [actual]"));
+			assertTrue(ex.getMessage().contains("- /missing"));
+			assertTrue(ex.getMessage().contains("+ /unexpected"));
+		}
+	}
+
+	@Test
+	public void assertTreeEquals_sameMzxidDifferentData() throws Throwable {
+		String expectedPath = rootPath + "/assertTreeEquals_expected";
+		String actualPath = rootPath + "/assertTreeEquals_actual";
+		// all nodes created by the same multi share the same mzxid
+		session().get().multi(Arrays.asList(
+				Op.create(expectedPath, new byte[0], OPEN_ACL_UNSAFE, PERSISTENT),
+				Op.create(expectedPath + "/node", "expected".getBytes(), OPEN_ACL_UNSAFE, PERSISTENT),
+				Op.create(actualPath, new byte[0], OPEN_ACL_UNSAFE, PERSISTENT),
+				Op.create(actualPath + "/node", "actual".getBytes(), OPEN_ACL_UNSAFE, PERSISTENT)));
+		ZKTree expected = session().get().export(expectedPath).get();
+		try {
+			assertTreeEquals(actualPath, expected);
+			fail("Expected an AssertionError");
+		} catch (AssertionError ex) {
+			assertTrue(ex.getMessage().contains("~ /node [expected] != [actual]"));
+		}
+	}
+
+	@Test(expected = AssertionError.class)
+	public void assertTreeEquals_nonExistingPath() {
+		assertTreeEquals("/no-such-path", ZKTree.of(new HashMap<>()));
+	}
+
+	@Test(timeout = Timeout)
+	public void awaitExists() throws Throwable {
+		String path = rootPath + "/awaitExists";
+		later(zookeeper -> zookeeper.createRecursive(path, new byte[0]));
+		awaitExists(path, duration);
+	}
+
+	@Test(expected = AssertionError.class)
+	public void awaitExists_timeout() {
+		awaitExists(rootPath + "/no-such-path", Duration.ofMillis(100));
+	}
+
+	@Test(timeout = Timeout)
+	public void awaitNotExists() throws Throwable {
+		String path = rootPath + "/awaitNotExists";
+		session().get().createRecursive(path, new byte[0]).get();
+		later(zookeeper -> zookeeper.delete(path));
+		awaitNotExists(path, duration);
+	}
+
+	@Test(timeout = Timeout)
+	public void awaitData() throws Throwable {
+		String path = rootPath + "/awaitData";
+		later(zookeeper -> {
+			zookeeper.createRecursive(path, "first".getBytes()).get();
+			return zookeeper.setData(path, "second".getBytes(), -1);
+		});
+		awaitData(path, "second".getBytes(), duration);
+	}
+
+	@Test(timeout = Timeout)
+	public void awaitChildCount() throws Throwable {
+		String path = rootPath + "/awaitChildCount";
+		Map<String, byte[]> children = new HashMap<>();
+		IntStream.range(0, 5).forEach(i -> children.put(path + "/child-" + i, new byte[0]));
+		later(zookeeper -> zookeeper.createAll(children));
+		awaitChildCount(path, 5, duration);
+	}
+
+	@Test(expected = AssertionError.class)
+	public void awaitChildCount_timeout() throws Throwable {
+		awaitChildCount(rootPath, 1000, Duration.ofMillis(100));
+	}
+
+	/**
+	 * Performs the provided operation on a separate connection after a short delay.
+	 */
+	private void later(ThrowableFunction1<CloseableZooKeeper, ?> operation) {
+		Future(() -> {
+			Thread.sleep(100);
+			try (CloseableZooKeeper zookeeper = connection()) {
+				return operation.apply(zookeeper);
+			}
+		});
+	}
+
+	@Test
+	public void assert_reusesSession() throws Throwable {
+		CloseableZooKeeper session = session().get();
+		for (int i = 0; i < 100; i++) {
+			assertExists(rootPath);
+			assertNotExists(rootPath + "/no-such-path-" + i);
+		}
+		assertSame(session, session().get());
+		assertTrue(session.getState().isAlive());
+	}
 	
 }